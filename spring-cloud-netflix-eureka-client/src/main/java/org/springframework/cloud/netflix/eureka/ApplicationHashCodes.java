@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Hash codes of single applications, computed like the
+ * {@link Applications#getReconcileHashCode() reconcile hash code} of the whole registry,
+ * so that a client whose registry does not reconcile with a delta can tell which
+ * applications diverged.
+ * <p>
+ * They are sent along with a delta as a single string field, listing the
+ * {@code NAME=hashCode} pairs of the applications it changes separated by commas, which
+ * decoders not knowing about it skip like any other unknown scalar field.
+ *
+ * @author agent agent
+ */
+public final class ApplicationHashCodes {
+
+	/**
+	 * Field of a delta holding the hash codes of the applications it changes.
+	 */
+	public static final String KEY = "apps__hashcodes";
+
+	private ApplicationHashCodes() {
+		throw new AssertionError("Must not instantiate utility class");
+	}
+
+	/**
+	 * @param application the application to get the hash code of, or null for a missing
+	 * one
+	 * @return the hash code of the application, empty for a missing application or one
+	 * without instances
+	 */
+	public static String of(Application application) {
+		TreeMap<String, AtomicInteger> instanceCountMap = new TreeMap<>();
+		if (application != null) {
+			for (InstanceInfo info : application.getInstancesAsIsFromEureka()) {
+				instanceCountMap.computeIfAbsent(info.getStatus().name(), status -> new AtomicInteger())
+						.incrementAndGet();
+			}
+		}
+		return Applications.getReconcileHashCode(instanceCountMap);
+	}
+
+	/**
+	 * @param hashCodes the hash codes by application name
+	 * @return the value of the {@link #KEY} field
+	 */
+	public static String encode(Map<String, String> hashCodes) {
+		StringBuilder value = new StringBuilder();
+		hashCodes.forEach((name, hashCode) -> {
+			if (value.length() > 0) {
+				value.append(',');
+			}
+			value.append(name).append('=').append(hashCode);
+		});
+		return value.toString();
+	}
+
+	/**
+	 * @param value the value of the {@link #KEY} field, possibly null
+	 * @return the hash codes by application name
+	 */
+	public static Map<String, String> decode(String value) {
+		if (!StringUtils.hasText(value)) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> hashCodes = new LinkedHashMap<>();
+		for (String pair : value.split(",")) {
+			int separator = pair.indexOf('=');
+			if (separator > 0) {
+				hashCodes.put(pair.substring(0, separator), pair.substring(separator + 1));
+			}
+		}
+		return hashCodes;
+	}
+
+}
@@ -17,28 +17,53 @@
 package org.springframework.cloud.netflix.eureka;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
 import com.netflix.appinfo.ApplicationInfoManager;
 import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
 import com.netflix.appinfo.InstanceInfo.InstanceStatus;
 import com.netflix.discovery.AbstractDiscoveryClientOptionalArgs;
 import com.netflix.discovery.DiscoveryClient;
 import com.netflix.discovery.EurekaClientConfig;
+import com.netflix.discovery.endpoint.EndpointUtils;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
 import com.netflix.discovery.shared.transport.EurekaHttpClient;
 import com.netflix.discovery.shared.transport.EurekaHttpResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.netflix.eureka.http.DefaultEurekaClientHttpRequestFactorySupplier;
+import org.springframework.cloud.netflix.eureka.http.EurekaClientHttpRequestFactorySupplier;
+import org.springframework.cloud.netflix.eureka.http.RestTemplateDiscoveryClientOptionalArgs;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.util.ReflectionUtils;
 
 /**
  * Subclass of {@link DiscoveryClient} that sends a {@link HeartbeatEvent} when
  * {@link CloudEurekaClient#onCacheRefreshed()} is called.
+ * <p>
+ * When {@link EurekaClientConfigBean#isRegistryChangeStreamEnabled()}, it also applies
+ * the changes streamed by the server to the local registry as they happen, sending a
+ * {@link HeartbeatEvent} for each burst of changes. The registry is still fetched on
+ * schedule, which keeps it up to date while the stream is disconnected. While it is
+ * connected, the scheduled deltas are not fetched from the server: applied after streamed
+ * changes, their hash codes would not reconcile with the local registry.
+ * <p>
+ * When {@link EurekaClientConfigBean#isRegistryPartialReconciliationEnabled()}, a
+ * registry that does not reconcile with a delta is repaired by only fetching the
+ * applications that diverged from the server, when it sends their hash codes with the
+ * delta, rather than the full registry.
  *
  * @author Spencer Gibb
  */
@@ -56,6 +81,14 @@ public class CloudEurekaClient extends DiscoveryClient {
 
 	private AtomicReference<EurekaHttpClient> eurekaHttpClient = new AtomicReference<>();
 
+	private Lock fetchRegistryUpdateLock;
+
+	private AtomicLong fetchRegistryGeneration;
+
+	private RegistryChangeStreamSubscriber registryChangeStream;
+
+	private volatile boolean registryChangeStreamReset;
+
 	public CloudEurekaClient(ApplicationInfoManager applicationInfoManager, EurekaClientConfig config,
 			ApplicationEventPublisher publisher) {
 		this(applicationInfoManager, config, null, publisher);
@@ -68,6 +101,71 @@ public class CloudEurekaClient extends DiscoveryClient {
 		this.publisher = publisher;
 		this.eurekaTransportField = ReflectionUtils.findField(DiscoveryClient.class, "eurekaTransport");
 		ReflectionUtils.makeAccessible(this.eurekaTransportField);
+		if (config instanceof EurekaClientConfigBean
+				&& ((EurekaClientConfigBean) config).isRegistryChangeStreamEnabled() && config.shouldFetchRegistry()) {
+			this.registryChangeStream = registryChangeStream((EurekaClientConfigBean) config, args);
+			// deltas fetched while changes are streamed would not reconcile
+			decorateQueryClient(queryClient -> new RegistryChangeStreamEurekaHttpClient(queryClient,
+					() -> this.registryChangeStream.isConnected() && !this.registryChangeStreamReset,
+					this::getApplications, this.fetchRegistryUpdateLock));
+			this.registryChangeStream.start();
+		}
+		if (config instanceof EurekaClientConfigBean
+				&& ((EurekaClientConfigBean) config).isRegistryPartialReconciliationEnabled()
+				&& config.shouldFetchRegistry()) {
+			decorateQueryClient(queryClient -> new PartialReconciliationEurekaHttpClient(queryClient,
+					this::getApplications, (Lock) getDiscoveryClientField("fetchRegistryUpdateLock")));
+		}
+	}
+
+	private RegistryChangeStreamSubscriber registryChangeStream(EurekaClientConfigBean config,
+			AbstractDiscoveryClientOptionalArgs<?> args) {
+		// the same lock and generation as the scheduled fetches, so that a delta fetched
+		// before a streamed change is not applied after it
+		this.fetchRegistryUpdateLock = (Lock) getDiscoveryClientField("fetchRegistryUpdateLock");
+		this.fetchRegistryGeneration = (AtomicLong) getDiscoveryClientField("fetchRegistryGeneration");
+		// the request factory of the RestTemplate transport, with its TLS settings
+		EurekaClientHttpRequestFactorySupplier requestFactorySupplier;
+		if (args instanceof RestTemplateDiscoveryClientOptionalArgs) {
+			requestFactorySupplier = ((RestTemplateDiscoveryClientOptionalArgs) args)
+					.getEurekaClientHttpRequestFactorySupplier();
+		}
+		else {
+			requestFactorySupplier = new DefaultEurekaClientHttpRequestFactorySupplier();
+		}
+		ClientHttpRequestFactory requestFactory = requestFactorySupplier.get(
+				args != null ? args.getSSLContext().orElse(null) : null,
+				args != null ? args.getHostnameVerifier().orElse(null) : null);
+		return new RegistryChangeStreamSubscriber(this::getRegistryChangeStreamServiceUrls,
+				new RegistryChangeStreamHandler(),
+				RegistryChangeStreamSubscriber.configure(requestFactory, config,
+						Duration.ofSeconds(config.getEurekaServerConnectTimeoutSeconds()),
+						Duration.ofSeconds(config.getRegistryChangeStreamReadTimeoutSeconds())),
+				Duration.ofSeconds(config.getRegistryFetchIntervalSeconds()));
+	}
+
+	private void decorateQueryClient(Function<EurekaHttpClient, EurekaHttpClient> decorator) {
+		// the client of the scheduled fetches, which reconcile a delta with a full fetch
+		Object eurekaTransport = ReflectionUtils.getField(this.eurekaTransportField, this);
+		Field queryClientField = ReflectionUtils.findField(eurekaTransport.getClass(), "queryClient");
+		ReflectionUtils.makeAccessible(queryClientField);
+		EurekaHttpClient queryClient = (EurekaHttpClient) ReflectionUtils.getField(queryClientField, eurekaTransport);
+		if (queryClient != null) {
+			ReflectionUtils.setField(queryClientField, eurekaTransport, decorator.apply(queryClient));
+		}
+	}
+
+	private Object getDiscoveryClientField(String name) {
+		Field field = ReflectionUtils.findField(DiscoveryClient.class, name);
+		ReflectionUtils.makeAccessible(field);
+		return ReflectionUtils.getField(field, this);
+	}
+
+	private List<String> getRegistryChangeStreamServiceUrls() {
+		EurekaClientConfig config = getEurekaClientConfig();
+		String zone = InstanceInfo.getZone(config.getAvailabilityZones(config.getRegion()),
+				this.applicationInfoManager.getInfo());
+		return EndpointUtils.getServiceUrlsFromConfig(config, zone, config.shouldPreferSameZoneEureka());
 	}
 
 	public ApplicationInfoManager getApplicationInfoManager() {
@@ -108,6 +206,14 @@ public class CloudEurekaClient extends DiscoveryClient {
 		getEurekaHttpClient().statusUpdate(info.getAppName(), info.getId(), newStatus, info);
 	}
 
+	@Override
+	public synchronized void shutdown() {
+		if (this.registryChangeStream != null) {
+			this.registryChangeStream.stop();
+		}
+		super.shutdown();
+	}
+
 	@Override
 	protected void onCacheRefreshed() {
 		super.onCacheRefreshed();
@@ -120,4 +226,65 @@ public class CloudEurekaClient extends DiscoveryClient {
 		}
 	}
 
+	private class RegistryChangeStreamHandler implements RegistryChangeStreamSubscriber.Handler {
+
+		@Override
+		public void changed(ActionType action, InstanceInfo info) {
+			fetchRegistryUpdateLock.lock();
+			try {
+				fetchRegistryGeneration.incrementAndGet();
+				Applications applications = getApplications();
+				Application application = applications.getRegisteredApplications(info.getAppName());
+				if (action == ActionType.DELETED) {
+					if (application != null) {
+						application.removeInstance(info);
+						if (application.getInstancesAsIsFromEureka().isEmpty()) {
+							applications.removeApplication(application);
+						}
+					}
+					return;
+				}
+				if (application == null) {
+					application = new Application(info.getAppName());
+					applications.addApplication(application);
+				}
+				info.setActionType(action);
+				application.addInstance(info);
+			}
+			finally {
+				fetchRegistryUpdateLock.unlock();
+			}
+		}
+
+		@Override
+		public void changesApplied() {
+			fetchRegistryUpdateLock.lock();
+			try {
+				Applications applications = getApplications();
+				applications.shuffleInstances(getEurekaClientConfig().shouldFilterOnlyUpInstances());
+				applications.setAppsHashCode(applications.getReconcileHashCode());
+			}
+			finally {
+				fetchRegistryUpdateLock.unlock();
+			}
+			onCacheRefreshed();
+		}
+
+		@Override
+		public void reset() {
+			// a scheduled fetch, reconciling with a full fetch if the delta is not enough,
+			// which asks the server for the delta even though the stream is connected
+			Method refreshRegistry = ReflectionUtils.findMethod(DiscoveryClient.class, "refreshRegistry");
+			ReflectionUtils.makeAccessible(refreshRegistry);
+			registryChangeStreamReset = true;
+			try {
+				ReflectionUtils.invokeMethod(refreshRegistry, CloudEurekaClient.this);
+			}
+			finally {
+				registryChangeStreamReset = false;
+			}
+		}
+
+	}
+
 }
@@ -406,6 +406,36 @@ public class EurekaClientConfigBean implements EurekaClientConfig, Ordered {
 	 */
 	private boolean shouldEnforceRegistrationAtInit = false;
 
+	/**
+	 * Indicates whether the client should ask the eureka server for registry fetches in
+	 * the Jackson Smile format, when jackson-dataformat-smile is on the classpath. Only
+	 * applies to the RestTemplate and WebClient transports. Defaults to false.
+	 */
+	private boolean jacksonSmileEnabled = false;
+
+	/**
+	 * Indicates whether the client should subscribe to the registry change stream of the
+	 * eureka server, applying changes as they happen. The registry is still fetched every
+	 * registryFetchIntervalSeconds, which keeps it up to date while the stream is
+	 * disconnected.
+	 */
+	private boolean registryChangeStreamEnabled = false;
+
+	/**
+	 * Indicates how long (in seconds) to wait for data from the registry change stream
+	 * before considering the connection lost. Should be longer than the heartbeat
+	 * interval of the stream on the server.
+	 */
+	private int registryChangeStreamReadTimeoutSeconds = 90;
+
+	/**
+	 * Indicates whether the client should only fetch the applications that diverged
+	 * when its registry does not reconcile with a delta, rather than the full registry.
+	 * Requires a eureka server sending the hash codes of applications with deltas, and
+	 * falls back to fetching the full registry otherwise.
+	 */
+	private boolean registryPartialReconciliationEnabled = false;
+
 	/**
 	 * Order of the discovery client used by `CompositeDiscoveryClient` for sorting
 	 * available clients.
@@ -920,6 +950,38 @@ public class EurekaClientConfigBean implements EurekaClientConfig, Ordered {
 		this.shouldEnforceRegistrationAtInit = shouldEnforceRegistrationAtInit;
 	}
 
+	public boolean isJacksonSmileEnabled() {
+		return jacksonSmileEnabled;
+	}
+
+	public void setJacksonSmileEnabled(boolean jacksonSmileEnabled) {
+		this.jacksonSmileEnabled = jacksonSmileEnabled;
+	}
+
+	public boolean isRegistryChangeStreamEnabled() {
+		return registryChangeStreamEnabled;
+	}
+
+	public void setRegistryChangeStreamEnabled(boolean registryChangeStreamEnabled) {
+		this.registryChangeStreamEnabled = registryChangeStreamEnabled;
+	}
+
+	public int getRegistryChangeStreamReadTimeoutSeconds() {
+		return registryChangeStreamReadTimeoutSeconds;
+	}
+
+	public void setRegistryChangeStreamReadTimeoutSeconds(int registryChangeStreamReadTimeoutSeconds) {
+		this.registryChangeStreamReadTimeoutSeconds = registryChangeStreamReadTimeoutSeconds;
+	}
+
+	public boolean isRegistryPartialReconciliationEnabled() {
+		return registryPartialReconciliationEnabled;
+	}
+
+	public void setRegistryPartialReconciliationEnabled(boolean registryPartialReconciliationEnabled) {
+		this.registryPartialReconciliationEnabled = registryPartialReconciliationEnabled;
+	}
+
 	@Override
 	public int getOrder() {
 		return order;
@@ -961,6 +1023,10 @@ public class EurekaClientConfigBean implements EurekaClientConfig, Ordered {
 				&& onDemandUpdateStatusChange == that.onDemandUpdateStatusChange
 				&& shouldUnregisterOnShutdown == that.shouldUnregisterOnShutdown
 				&& shouldEnforceRegistrationAtInit == that.shouldEnforceRegistrationAtInit
+				&& jacksonSmileEnabled == that.jacksonSmileEnabled
+				&& registryChangeStreamEnabled == that.registryChangeStreamEnabled
+				&& registryChangeStreamReadTimeoutSeconds == that.registryChangeStreamReadTimeoutSeconds
+				&& registryPartialReconciliationEnabled == that.registryPartialReconciliationEnabled
 				&& Objects.equals(proxyPort, that.proxyPort) && Objects.equals(proxyHost, that.proxyHost)
 				&& Objects.equals(proxyUserName, that.proxyUserName)
 				&& Objects.equals(proxyPassword, that.proxyPassword)
@@ -992,7 +1058,9 @@ public class EurekaClientConfigBean implements EurekaClientConfig, Ordered {
 				registerWithEureka, preferSameZoneEureka, logDeltaDiff, disableDelta, fetchRemoteRegionsRegistry,
 				availabilityZones, filterOnlyUpInstances, fetchRegistry, dollarReplacement, escapeCharReplacement,
 				allowRedirects, onDemandUpdateStatusChange, encoderName, decoderName, clientDataAccept,
-				shouldUnregisterOnShutdown, shouldEnforceRegistrationAtInit, order);
+				shouldUnregisterOnShutdown, shouldEnforceRegistrationAtInit, jacksonSmileEnabled,
+				registryChangeStreamEnabled,
+				registryChangeStreamReadTimeoutSeconds, registryPartialReconciliationEnabled, order);
 	}
 
 	@Override
@@ -1037,6 +1105,11 @@ public class EurekaClientConfigBean implements EurekaClientConfig, Ordered {
 				.append("', ").append("clientDataAccept='").append(clientDataAccept).append("', ")
 				.append("shouldUnregisterOnShutdown='").append(shouldUnregisterOnShutdown)
 				.append("shouldEnforceRegistrationAtInit='").append(shouldEnforceRegistrationAtInit).append("', ")
+				.append("jacksonSmileEnabled=").append(jacksonSmileEnabled).append(", ")
+				.append("registryChangeStreamEnabled=").append(registryChangeStreamEnabled).append(", ")
+				.append("registryChangeStreamReadTimeoutSeconds=").append(registryChangeStreamReadTimeoutSeconds)
+				.append(", ").append("registryPartialReconciliationEnabled=")
+				.append(registryPartialReconciliationEnabled).append(", ")
 				.append("order='").append(order).append("'}").toString();
 	}
 
@@ -28,6 +28,12 @@ public final class EurekaConstants {
 	 */
 	public static final String DEFAULT_PREFIX = "/eureka";
 
+	/**
+	 * Header giving the registry version a registry view was taken at, as
+	 * {@code <epoch>:<version>} in delta fetches made with a version.
+	 */
+	public static final String REGISTRY_VERSION_HEADER = "X-Eureka-Registry-Version";
+
 	private EurekaConstants() {
 		throw new AssertionError("Must not instantiate constant utility class");
 	}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.discovery.shared.transport.decorator.EurekaHttpClientDecorator;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.netflix.eureka.http.EurekaApplications;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+
+/**
+ * Query client of a {@link CloudEurekaClient} answering the full fetch made when the
+ * local registry does not reconcile with the last delta by only fetching the
+ * applications whose {@link ApplicationHashCodes hash codes} differ from the ones sent
+ * with the delta.
+ * <p>
+ * The full registry is still fetched when the delta came without hash codes, when
+ * remote regions are fetched, or when the registry does not reconcile once the diverged
+ * applications have been fetched, as when applications missing from the delta diverged.
+ *
+ * @author agent agent
+ */
+class PartialReconciliationEurekaHttpClient extends EurekaHttpClientDecorator {
+
+	private static final Log log = LogFactory.getLog(PartialReconciliationEurekaHttpClient.class);
+
+	private final EurekaHttpClient delegate;
+
+	private final Supplier<Applications> localApplications;
+
+	private final Lock localApplicationsLock;
+
+	private final AtomicReference<EurekaApplications> lastDelta = new AtomicReference<>();
+
+	/**
+	 * @param delegate the client to send requests with
+	 * @param localApplications the applications of the local region of the registry
+	 * @param localApplicationsLock the lock held while they are updated
+	 */
+	PartialReconciliationEurekaHttpClient(EurekaHttpClient delegate, Supplier<Applications> localApplications,
+			Lock localApplicationsLock) {
+		this.delegate = delegate;
+		this.localApplications = localApplications;
+		this.localApplicationsLock = localApplicationsLock;
+	}
+
+	@Override
+	protected <R> EurekaHttpResponse<R> execute(RequestExecutor<R> requestExecutor) {
+		return requestExecutor.execute(this.delegate);
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getDelta(String... regions) {
+		EurekaHttpResponse<Applications> response = this.delegate.getDelta(regions);
+		Applications delta = response.getEntity();
+		boolean reconcilable = isLocalRegion(regions) && delta instanceof EurekaApplications
+				&& !((EurekaApplications) delta).getAppHashCodes().isEmpty();
+		this.lastDelta.set(reconcilable ? (EurekaApplications) delta : null);
+		return response;
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getApplications(String... regions) {
+		// only the fetch following the delta reconciles from it
+		EurekaApplications delta = this.lastDelta.getAndSet(null);
+		if (delta != null && isLocalRegion(regions)) {
+			Applications applications = reconcile(delta);
+			if (applications != null) {
+				return anEurekaHttpResponse(HttpStatus.OK.value(), applications).build();
+			}
+		}
+		return this.delegate.getApplications(regions);
+	}
+
+	@Override
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+	private Applications reconcile(EurekaApplications delta) {
+		Map<String, String> hashCodes = delta.getAppHashCodes();
+		Applications applications = new Applications();
+		List<String> diverged = new ArrayList<>();
+		this.localApplicationsLock.lock();
+		try {
+			for (Application application : this.localApplications.get().getRegisteredApplications()) {
+				Application copy = new Application(application.getName());
+				for (InstanceInfo info : application.getInstancesAsIsFromEureka()) {
+					copy.addInstance(info);
+				}
+				applications.addApplication(copy);
+			}
+		}
+		finally {
+			this.localApplicationsLock.unlock();
+		}
+		hashCodes.forEach((name, hashCode) -> {
+			if (!hashCode.equals(ApplicationHashCodes.of(applications.getRegisteredApplications(name)))) {
+				diverged.add(name);
+			}
+		});
+		if (diverged.isEmpty()) {
+			return null;
+		}
+
+		for (String name : diverged) {
+			EurekaHttpResponse<Application> response = this.delegate.getApplication(name);
+			if (response.getStatusCode() != HttpStatus.OK.value()
+					&& response.getStatusCode() != HttpStatus.NOT_FOUND.value()) {
+				return null;
+			}
+			Application existing = applications.getRegisteredApplications(name);
+			if (existing != null) {
+				applications.removeApplication(existing);
+			}
+			Application application = response.getEntity();
+			if (application != null && !application.getInstancesAsIsFromEureka().isEmpty()) {
+				applications.addApplication(application);
+			}
+		}
+
+		String reconcileHashCode = applications.getReconcileHashCode();
+		if (!reconcileHashCode.equals(delta.getAppsHashCode())) {
+			log.debug("Registry still does not reconcile after fetching " + diverged + ", fetching it all");
+			return null;
+		}
+		log.debug("Registry reconciled by fetching " + diverged);
+		applications.setAppsHashCode(reconcileHashCode);
+		applications.setVersion(delta.getVersion());
+		return applications;
+	}
+
+	static boolean isLocalRegion(String[] regions) {
+		// the discovery client passes a null region when not fetching remote regions
+		if (regions != null) {
+			for (String region : regions) {
+				if (StringUtils.hasText(region)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+}
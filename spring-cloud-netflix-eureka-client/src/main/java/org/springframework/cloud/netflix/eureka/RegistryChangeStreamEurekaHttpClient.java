@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.discovery.shared.transport.decorator.EurekaHttpClientDecorator;
+
+import org.springframework.http.HttpStatus;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+
+/**
+ * Query client of a {@link CloudEurekaClient} answering the scheduled deltas of the
+ * local region with an empty delta while the registry change stream is connected.
+ * <p>
+ * A delta fetched while the stream applies changes describes a registry behind the
+ * local one, so its hash code would not reconcile and the full registry would be
+ * fetched again and again. The empty delta reconciles with the local registry instead,
+ * which the stream keeps up to date. Deltas are fetched from the server again as soon as
+ * the stream is lost, or when the stream asks for them after missed changes.
+ *
+ * @author agent agent
+ */
+class RegistryChangeStreamEurekaHttpClient extends EurekaHttpClientDecorator {
+
+	private final EurekaHttpClient delegate;
+
+	private final BooleanSupplier streaming;
+
+	private final Supplier<Applications> localApplications;
+
+	private final Lock localApplicationsLock;
+
+	/**
+	 * @param delegate the client to send requests with
+	 * @param streaming whether the stream keeps the local registry up to date
+	 * @param localApplications the applications of the local region of the registry
+	 * @param localApplicationsLock the lock held while they are updated
+	 */
+	RegistryChangeStreamEurekaHttpClient(EurekaHttpClient delegate, BooleanSupplier streaming,
+			Supplier<Applications> localApplications, Lock localApplicationsLock) {
+		this.delegate = delegate;
+		this.streaming = streaming;
+		this.localApplications = localApplications;
+		this.localApplicationsLock = localApplicationsLock;
+	}
+
+	@Override
+	protected <R> EurekaHttpResponse<R> execute(RequestExecutor<R> requestExecutor) {
+		return requestExecutor.execute(this.delegate);
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getDelta(String... regions) {
+		if (!this.streaming.getAsBoolean() || !PartialReconciliationEurekaHttpClient.isLocalRegion(regions)) {
+			return this.delegate.getDelta(regions);
+		}
+		Applications delta = new Applications();
+		this.localApplicationsLock.lock();
+		try {
+			Applications applications = this.localApplications.get();
+			delta.setAppsHashCode(applications.getReconcileHashCode());
+			delta.setVersion(applications.getVersion());
+		}
+		finally {
+			this.localApplicationsLock.unlock();
+		}
+		return anEurekaHttpResponse(HttpStatus.OK.value(), delta).build();
+	}
+
+	@Override
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+}
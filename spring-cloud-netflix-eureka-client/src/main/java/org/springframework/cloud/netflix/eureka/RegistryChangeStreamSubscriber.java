@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.discovery.EurekaClientConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.protocol.HttpContext;
+
+import org.springframework.cloud.netflix.eureka.http.RestTemplateTransportClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Subscribes to the registry change stream of a Eureka server, served as server-sent
+ * events at {@code <serviceUrl>/stream}, and hands each change to a {@link Handler} as
+ * it arrives.
+ * <p>
+ * The stream is read on a dedicated thread. When the connection is lost, the subscriber
+ * tries the next service URL after a pause, resuming from the last event it saw when it
+ * reconnects to the same server. Event ids carry the epoch of the registry of each
+ * server, so subscriptions to another server, or to one that restarted, start over.
+ *
+ * @author agent agent
+ */
+class RegistryChangeStreamSubscriber {
+
+	/**
+	 * Path of the stream, relative to a service URL.
+	 */
+	static final String PATH = "stream";
+
+	/**
+	 * Name of the event telling subscribers they missed changes.
+	 */
+	static final String RESET = "RESET";
+
+	private static final Log log = LogFactory.getLog(RegistryChangeStreamSubscriber.class);
+
+	private final Supplier<List<String>> serviceUrls;
+
+	private final Handler handler;
+
+	private final RestTemplate restTemplate;
+
+	private final ObjectMapper objectMapper;
+
+	private final long retryInterval;
+
+	private final Thread thread;
+
+	private volatile boolean stopped;
+
+	private volatile boolean connected;
+
+	// only accessed by the subscriber thread
+	private String serviceUrl;
+
+	private String lastEventId;
+
+	/**
+	 * @param serviceUrls the service URLs of the servers to subscribe to, in order of
+	 * preference
+	 * @param handler the handler of the changes
+	 * @param requestFactory the factory of the requests to the servers, typically
+	 * {@link #configure configured} for the stream
+	 * @param retryInterval the time to wait before connecting again
+	 */
+	RegistryChangeStreamSubscriber(Supplier<List<String>> serviceUrls, Handler handler,
+			ClientHttpRequestFactory requestFactory, Duration retryInterval) {
+		this.serviceUrls = serviceUrls;
+		this.handler = handler;
+		this.restTemplate = new RestTemplate(requestFactory);
+		this.objectMapper = new RestTemplateTransportClientFactory().mappingJacksonHttpMessageConverter()
+				.getObjectMapper();
+		this.retryInterval = retryInterval.toMillis();
+		this.thread = new Thread(this::run, "DiscoveryClient-RegistryChangeStream");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Apply the timeouts of the stream and the proxy of the client to a request factory
+	 * like the ones of the {@code RestTemplate} transport, which keeps its TLS settings.
+	 * Request factories other than the Apache HttpClient and JDK ones of Spring are used
+	 * as they are.
+	 * @param requestFactory the request factory to configure
+	 * @param config the configuration of the client, for its proxy
+	 * @param connectTimeout the connect timeout
+	 * @param readTimeout the time without data after which the connection is considered
+	 * lost, which should be longer than the heartbeat interval of the servers
+	 * @return the request factory to subscribe with
+	 */
+	static ClientHttpRequestFactory configure(ClientHttpRequestFactory requestFactory, EurekaClientConfig config,
+			Duration connectTimeout, Duration readTimeout) {
+		boolean proxy = StringUtils.hasText(config.getProxyHost()) && StringUtils.hasText(config.getProxyPort());
+		if (requestFactory instanceof HttpComponentsClientHttpRequestFactory) {
+			RequestConfig.Builder requestConfig = RequestConfig.custom()
+					.setConnectTimeout((int) connectTimeout.toMillis())
+					.setSocketTimeout((int) readTimeout.toMillis());
+			CredentialsProvider credentials = new BasicCredentialsProvider();
+			if (proxy) {
+				HttpHost proxyHost = new HttpHost(config.getProxyHost(), Integer.parseInt(config.getProxyPort()));
+				requestConfig.setProxy(proxyHost);
+				if (StringUtils.hasText(config.getProxyUserName())) {
+					credentials.setCredentials(new AuthScope(proxyHost),
+							new UsernamePasswordCredentials(config.getProxyUserName(), config.getProxyPassword()));
+				}
+			}
+			RequestConfig streamConfig = requestConfig.build();
+			return new HttpComponentsClientHttpRequestFactory(
+					((HttpComponentsClientHttpRequestFactory) requestFactory).getHttpClient()) {
+				@Override
+				protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+					HttpClientContext context = HttpClientContext.create();
+					context.setRequestConfig(streamConfig);
+					context.setCredentialsProvider(credentials);
+					return context;
+				}
+			};
+		}
+		if (requestFactory instanceof SimpleClientHttpRequestFactory) {
+			SimpleClientHttpRequestFactory simpleRequestFactory = (SimpleClientHttpRequestFactory) requestFactory;
+			simpleRequestFactory.setConnectTimeout((int) connectTimeout.toMillis());
+			simpleRequestFactory.setReadTimeout((int) readTimeout.toMillis());
+			if (proxy) {
+				simpleRequestFactory.setProxy(new Proxy(Proxy.Type.HTTP,
+						new InetSocketAddress(config.getProxyHost(), Integer.parseInt(config.getProxyPort()))));
+			}
+		}
+		return requestFactory;
+	}
+
+	void start() {
+		this.thread.start();
+	}
+
+	void stop() {
+		this.stopped = true;
+		this.thread.interrupt();
+	}
+
+	/**
+	 * @return whether changes are currently streamed from a server
+	 */
+	boolean isConnected() {
+		return this.connected;
+	}
+
+	private void run() {
+		int index = 0;
+		while (!this.stopped) {
+			List<String> urls = this.serviceUrls.get();
+			if (!urls.isEmpty()) {
+				String url = urls.get(index % urls.size());
+				try {
+					subscribe(url);
+				}
+				catch (RuntimeException ex) {
+					if (this.connected) {
+						log.info("Lost the registry change stream of " + url + ", polling until reconnected");
+					}
+					else if (log.isDebugEnabled()) {
+						log.debug("Cannot subscribe to the registry change stream of " + url, ex);
+					}
+					// the next server might be healthier
+					index++;
+				}
+				this.connected = false;
+			}
+			try {
+				Thread.sleep(this.retryInterval);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void subscribe(String url) {
+		if (!url.equals(this.serviceUrl)) {
+			this.serviceUrl = url;
+			this.lastEventId = null;
+		}
+		String resumeFrom = this.lastEventId;
+		URI uri = URI.create(url + (url.endsWith("/") ? "" : "/") + PATH);
+		this.restTemplate.execute(uri, HttpMethod.GET, request -> {
+			HttpHeaders headers = request.getHeaders();
+			headers.setAccept(Collections.singletonList(MediaType.TEXT_EVENT_STREAM));
+			if (resumeFrom != null) {
+				headers.set("Last-Event-ID", resumeFrom);
+			}
+			String userInfo = uri.getUserInfo();
+			if (userInfo != null && userInfo.indexOf(':') > 0) {
+				headers.setBasicAuth(userInfo.substring(0, userInfo.indexOf(':')),
+						userInfo.substring(userInfo.indexOf(':') + 1));
+			}
+		}, response -> {
+			this.connected = true;
+			if (resumeFrom == null) {
+				// changes made since the last fetch are not streamed
+				this.handler.reset();
+			}
+			read(new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)));
+			return null;
+		});
+	}
+
+	/**
+	 * Read events until the end of the stream. Changes are handed to the handler one at a
+	 * time, and the handler is told they were applied once no more are buffered, so that
+	 * bursts of changes are applied together.
+	 * @param reader the stream to read
+	 * @throws IOException if the stream cannot be read
+	 */
+	void read(BufferedReader reader) throws IOException {
+		String id = null;
+		String event = null;
+		StringBuilder data = new StringBuilder();
+		boolean pending = false;
+		String line;
+		while (!this.stopped && (line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				if (event != null) {
+					pending |= dispatch(event, data.toString());
+				}
+				if (id != null) {
+					this.lastEventId = id;
+				}
+				id = null;
+				event = null;
+				data.setLength(0);
+				if (pending && !reader.ready()) {
+					this.handler.changesApplied();
+					pending = false;
+				}
+			}
+			else if (!line.startsWith(":")) {
+				int colon = line.indexOf(':');
+				String field = colon < 0 ? line : line.substring(0, colon);
+				String value = colon < 0 ? "" : line.substring(colon + (line.startsWith(": ", colon) ? 2 : 1));
+				if ("id".equals(field)) {
+					id = value;
+				}
+				else if ("event".equals(field)) {
+					event = value;
+				}
+				else if ("data".equals(field)) {
+					data.append(data.length() > 0 ? "\n" : "").append(value);
+				}
+			}
+		}
+		if (pending) {
+			this.handler.changesApplied();
+		}
+	}
+
+	private boolean dispatch(String event, String data) throws IOException {
+		if (RESET.equals(event)) {
+			this.handler.reset();
+			return false;
+		}
+		ActionType action;
+		try {
+			action = ActionType.valueOf(event);
+		}
+		catch (IllegalArgumentException ex) {
+			log.debug("Ignoring unknown registry change " + event);
+			return false;
+		}
+		this.handler.changed(action, this.objectMapper.readValue(data, InstanceInfo.class));
+		return true;
+	}
+
+	/**
+	 * Handler of the streamed changes, called on the subscriber thread.
+	 */
+	interface Handler {
+
+		/**
+		 * Apply a change to the local registry.
+		 * @param action the change
+		 * @param info the instance that changed
+		 */
+		void changed(ActionType action, InstanceInfo info);
+
+		/**
+		 * Called once the changes received so far were handed to
+		 * {@link #changed(ActionType, InstanceInfo)}.
+		 */
+		void changesApplied();
+
+		/**
+		 * Called when changes may have been missed and the local registry has to be
+		 * fetched again.
+		 */
+		void reset();
+
+	}
+
+}
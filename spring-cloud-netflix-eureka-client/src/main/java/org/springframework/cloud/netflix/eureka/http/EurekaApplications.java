@@ -16,13 +16,18 @@
 
 package org.springframework.cloud.netflix.eureka.http;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.netflix.discovery.shared.Application;
 import com.netflix.discovery.shared.Applications;
 
+import org.springframework.cloud.netflix.eureka.ApplicationHashCodes;
+
 /**
  * A simple wrapper class for {@link Applications} that insure proprer Jackson
  * serialization through the JsonPropert overwrites.
@@ -31,6 +36,8 @@ import com.netflix.discovery.shared.Applications;
  */
 public class EurekaApplications extends com.netflix.discovery.shared.Applications {
 
+	private Map<String, String> appHashCodes = Collections.emptyMap();
+
 	@JsonCreator
 	public EurekaApplications(@JsonProperty("apps__hashcode") String appsHashCode,
 			@JsonProperty("versions__delta") Long versionDelta,
@@ -38,4 +45,19 @@ public class EurekaApplications extends com.netflix.discovery.shared.Application
 		super(appsHashCode, versionDelta, registeredApplications);
 	}
 
+	/**
+	 * @return the hash codes of the applications changed by a delta, by application
+	 * name, empty if the server did not send them
+	 * @see ApplicationHashCodes
+	 */
+	@JsonIgnore
+	public Map<String, String> getAppHashCodes() {
+		return appHashCodes;
+	}
+
+	@JsonProperty(ApplicationHashCodes.KEY)
+	public void setAppHashCodes(String appHashCodes) {
+		this.appHashCodes = ApplicationHashCodes.decode(appHashCodes);
+	}
+
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Support for fetching registries in the Jackson Smile format, used when
+ * {@code jackson-dataformat-smile} is on the classpath. The Smile factory is only
+ * referenced from here, so that the transport client factories load without it.
+ *
+ * @author agent agent
+ */
+final class JacksonSmileSupport {
+
+	/**
+	 * The media type of the Smile format.
+	 */
+	static final MediaType MEDIA_TYPE = new MediaType("application", "x-jackson-smile");
+
+	private static final boolean PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory",
+			JacksonSmileSupport.class.getClassLoader());
+
+	private JacksonSmileSupport() {
+	}
+
+	static boolean isPresent() {
+		return PRESENT;
+	}
+
+	static ObjectMapper objectMapper() {
+		return new ObjectMapper(new SmileFactory());
+	}
+
+}
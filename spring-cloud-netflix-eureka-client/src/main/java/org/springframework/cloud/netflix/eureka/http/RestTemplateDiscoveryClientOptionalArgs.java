@@ -31,6 +31,13 @@ public class RestTemplateDiscoveryClientOptionalArgs extends AbstractDiscoveryCl
 		setTransportClientFactories(new RestTemplateTransportClientFactories(this));
 	}
 
+	/**
+	 * @return the supplier of the request factories of the transport
+	 */
+	public EurekaClientHttpRequestFactorySupplier getEurekaClientHttpRequestFactorySupplier() {
+		return this.eurekaClientHttpRequestFactorySupplier;
+	}
+
 	/**
 	 * @deprecated - use
 	 * {@link RestTemplateDiscoveryClientOptionalArgs#RestTemplateDiscoveryClientOptionalArgs(EurekaClientHttpRequestFactorySupplier)}
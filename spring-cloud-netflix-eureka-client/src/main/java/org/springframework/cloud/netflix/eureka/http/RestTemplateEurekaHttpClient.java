@@ -33,6 +33,7 @@ import com.netflix.discovery.util.StringUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -155,6 +156,25 @@ public class RestTemplateEurekaHttpClient implements EurekaHttpClient {
 		return getApplicationsInternal("apps/delta", regions);
 	}
 
+	/**
+	 * Get the recent changes of the local region once the registry has changed since the
+	 * given version. Requires a server with long polling or the change journal enabled.
+	 * With long polling, the server holds the fetch until then or until its timeout. With
+	 * the change journal, it answers with exactly the changes made after the version.
+	 * @param version the registry epoch and version the client is up to date with, as
+	 * given by the {@link EurekaConstants#REGISTRY_VERSION_HEADER} header of the previous
+	 * response
+	 * @return the changes with a 200 status, or no entity with a 304 status if the
+	 * registry did not change in time or a 410 status if the changes made after the
+	 * version are no longer kept, or the version is of another server or of a previous
+	 * run of the server, and the full registry has to be fetched, all with the current
+	 * registry epoch and version in a {@link EurekaConstants#REGISTRY_VERSION_HEADER}
+	 * header
+	 */
+	public EurekaHttpResponse<Applications> getDeltaSince(String version) {
+		return getApplicationsInternal("apps/delta?since=" + version, null);
+	}
+
 	@Override
 	public EurekaHttpResponse<Applications> getVip(String vipAddress, String... regions) {
 		return getApplicationsInternal("vips/" + vipAddress, regions);
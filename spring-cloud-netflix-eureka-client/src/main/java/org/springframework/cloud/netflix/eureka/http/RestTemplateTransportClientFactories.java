@@ -28,6 +28,8 @@ import com.netflix.discovery.shared.transport.TransportClientFactory;
 import com.netflix.discovery.shared.transport.jersey.EurekaJerseyClient;
 import com.netflix.discovery.shared.transport.jersey.TransportClientFactories;
 
+import org.springframework.cloud.netflix.eureka.EurekaClientConfigBean;
+
 /**
  * @author Daniel Lavoie
  */
@@ -48,16 +50,27 @@ public class RestTemplateTransportClientFactories implements TransportClientFact
 	@Override
 	public TransportClientFactory newTransportClientFactory(EurekaClientConfig clientConfig,
 			Collection<Void> additionalFilters, InstanceInfo myInstanceInfo) {
-		return new RestTemplateTransportClientFactory(this.args.getSSLContext(), this.args.getHostnameVerifier(),
+		RestTemplateTransportClientFactory factory = new RestTemplateTransportClientFactory(
+				this.args.getSSLContext(), this.args.getHostnameVerifier(),
 				this.args.eurekaClientHttpRequestFactorySupplier);
+		factory.setJacksonSmileEnabled(isJacksonSmileEnabled(clientConfig));
+		return factory;
 	}
 
 	@Override
 	public TransportClientFactory newTransportClientFactory(final EurekaClientConfig clientConfig,
 			final Collection<Void> additionalFilters, final InstanceInfo myInstanceInfo,
 			final Optional<SSLContext> sslContext, final Optional<HostnameVerifier> hostnameVerifier) {
-		return new RestTemplateTransportClientFactory(this.args.getSSLContext(), this.args.getHostnameVerifier(),
+		RestTemplateTransportClientFactory factory = new RestTemplateTransportClientFactory(
+				this.args.getSSLContext(), this.args.getHostnameVerifier(),
 				this.args.eurekaClientHttpRequestFactorySupplier);
+		factory.setJacksonSmileEnabled(isJacksonSmileEnabled(clientConfig));
+		return factory;
+	}
+
+	private static boolean isJacksonSmileEnabled(EurekaClientConfig clientConfig) {
+		return clientConfig instanceof EurekaClientConfigBean
+				&& ((EurekaClientConfigBean) clientConfig).isJacksonSmileEnabled();
 	}
 
 }
@@ -48,6 +48,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
@@ -66,6 +67,8 @@ public class RestTemplateTransportClientFactory implements TransportClientFactor
 
 	private final EurekaClientHttpRequestFactorySupplier eurekaClientHttpRequestFactorySupplier;
 
+	private boolean jacksonSmileEnabled;
+
 	public RestTemplateTransportClientFactory(TlsProperties tlsProperties,
 			EurekaClientHttpRequestFactorySupplier eurekaClientHttpRequestFactorySupplier) {
 		this.sslContext = context(tlsProperties);
@@ -99,6 +102,16 @@ public class RestTemplateTransportClientFactory implements TransportClientFactor
 		this.eurekaClientHttpRequestFactorySupplier = new DefaultEurekaClientHttpRequestFactorySupplier();
 	}
 
+	/**
+	 * Ask for registry fetches in the Jackson Smile format, when
+	 * {@code jackson-dataformat-smile} is on the classpath. Servers that do not support it
+	 * still answer in JSON.
+	 * @param jacksonSmileEnabled whether to ask for registry fetches in Smile
+	 */
+	public void setJacksonSmileEnabled(boolean jacksonSmileEnabled) {
+		this.jacksonSmileEnabled = jacksonSmileEnabled;
+	}
+
 	@Override
 	public EurekaHttpClient newClient(EurekaEndpoint serviceUrl) {
 		return new RestTemplateEurekaHttpClient(restTemplate(serviceUrl.getServiceUrl()), serviceUrl.getServiceUrl());
@@ -122,6 +135,10 @@ public class RestTemplateTransportClientFactory implements TransportClientFactor
 		}
 
 		restTemplate.getMessageConverters().add(0, mappingJacksonHttpMessageConverter());
+		if (this.jacksonSmileEnabled && JacksonSmileSupport.isPresent()) {
+			// lets the server answer registry fetches in Smile rather than JSON
+			restTemplate.getMessageConverters().add(0, mappingJacksonSmileHttpMessageConverter());
+		}
 		restTemplate.setErrorHandler(new ErrorHandler());
 
 		return restTemplate;
@@ -145,17 +162,7 @@ public class RestTemplateTransportClientFactory implements TransportClientFactor
 	 */
 	public MappingJackson2HttpMessageConverter mappingJacksonHttpMessageConverter() {
 		MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
-		converter.setObjectMapper(new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE));
-
-		SimpleModule jsonModule = new SimpleModule();
-		jsonModule.setSerializerModifier(createJsonSerializerModifier()); // keyFormatter,
-		// compact));
-		converter.getObjectMapper().registerModule(jsonModule);
-
-		converter.getObjectMapper().configure(SerializationFeature.WRAP_ROOT_VALUE, true);
-		converter.getObjectMapper().configure(DeserializationFeature.UNWRAP_ROOT_VALUE, true);
-		converter.getObjectMapper().addMixIn(Applications.class, ApplicationsJsonMixIn.class);
-		converter.getObjectMapper().addMixIn(InstanceInfo.class, InstanceInfoJsonMixIn.class);
+		converter.setObjectMapper(configure(new ObjectMapper()));
 
 		// converter.getObjectMapper().addMixIn(DataCenterInfo.class,
 		// DataCenterInfoXmlMixIn.class);
@@ -169,6 +176,32 @@ public class RestTemplateTransportClientFactory implements TransportClientFactor
 		return converter;
 	}
 
+	/**
+	 * Provides the same serialization configurations as
+	 * {@link #mappingJacksonHttpMessageConverter()} for the Jackson Smile format. Requires
+	 * {@code jackson-dataformat-smile} on the classpath.
+	 * @return a {@link MappingJackson2SmileHttpMessageConverter} object
+	 */
+	public MappingJackson2SmileHttpMessageConverter mappingJacksonSmileHttpMessageConverter() {
+		return new MappingJackson2SmileHttpMessageConverter(configure(JacksonSmileSupport.objectMapper()));
+	}
+
+	private ObjectMapper configure(ObjectMapper objectMapper) {
+		objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+
+		SimpleModule jsonModule = new SimpleModule();
+		jsonModule.setSerializerModifier(createJsonSerializerModifier()); // keyFormatter,
+		// compact));
+		objectMapper.registerModule(jsonModule);
+
+		objectMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, true);
+		objectMapper.configure(DeserializationFeature.UNWRAP_ROOT_VALUE, true);
+		objectMapper.addMixIn(Applications.class, ApplicationsJsonMixIn.class);
+		objectMapper.addMixIn(InstanceInfo.class, InstanceInfoJsonMixIn.class);
+
+		return objectMapper;
+	}
+
 	public static BeanSerializerModifier createJsonSerializerModifier() { // final
 		// KeyFormatter
 		// keyFormatter,
@@ -31,6 +31,7 @@ import com.netflix.discovery.util.StringUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -50,8 +51,21 @@ public class WebClientEurekaHttpClient implements EurekaHttpClient {
 
 	private WebClient webClient;
 
+	private MediaType[] registryMediaTypes;
+
 	public WebClientEurekaHttpClient(WebClient webClient) {
+		this(webClient, MediaType.APPLICATION_JSON);
+	}
+
+	/**
+	 * Create a client accepting registries in the given media types, in order of
+	 * preference.
+	 * @param webClient the {@link WebClient} to use
+	 * @param registryMediaTypes the media types to accept for registry fetches
+	 */
+	public WebClientEurekaHttpClient(WebClient webClient, MediaType... registryMediaTypes) {
 		this.webClient = webClient;
+		this.registryMediaTypes = registryMediaTypes;
 	}
 
 	@Override
@@ -126,12 +140,13 @@ public class WebClientEurekaHttpClient implements EurekaHttpClient {
 		}
 
 		ClientResponse response = webClient.get().uri(url, Applications.class)
-				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-				.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE).exchange().block();
+				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).accept(registryMediaTypes)
+				.exchange().block();
 
 		int statusCode = statusCodeValueOf(response);
 
-		Applications body = response.toEntity(Applications.class).block().getBody();
+		// like the RestTemplate client, so that the hash codes of the applications are kept
+		Applications body = response.toEntity(EurekaApplications.class).block().getBody();
 
 		return anEurekaHttpResponse(statusCode, statusCode == HttpStatus.OK.value() && body != null ? body : null)
 				.headers(headersOf(response)).build();
@@ -142,6 +157,25 @@ public class WebClientEurekaHttpClient implements EurekaHttpClient {
 		return getApplicationsInternal("apps/delta", regions);
 	}
 
+	/**
+	 * Get the recent changes of the local region once the registry has changed since the
+	 * given version. Requires a server with long polling or the change journal enabled.
+	 * With long polling, the server holds the fetch until then or until its timeout. With
+	 * the change journal, it answers with exactly the changes made after the version.
+	 * @param version the registry epoch and version the client is up to date with, as
+	 * given by the {@link EurekaConstants#REGISTRY_VERSION_HEADER} header of the previous
+	 * response
+	 * @return the changes with a 200 status, or no entity with a 304 status if the
+	 * registry did not change in time or a 410 status if the changes made after the
+	 * version are no longer kept, or the version is of another server or of a previous
+	 * run of the server, and the full registry has to be fetched, all with the current
+	 * registry epoch and version in a {@link EurekaConstants#REGISTRY_VERSION_HEADER}
+	 * header
+	 */
+	public EurekaHttpResponse<Applications> getDeltaSince(String version) {
+		return getApplicationsInternal("apps/delta?since=" + version, null);
+	}
+
 	@Override
 	public EurekaHttpResponse<Applications> getVip(String vipAddress, String... regions) {
 		return getApplicationsInternal("vips/" + vipAddress, regions);
@@ -29,6 +29,7 @@ import com.netflix.discovery.shared.transport.TransportClientFactory;
 import com.netflix.discovery.shared.transport.jersey.EurekaJerseyClient;
 import com.netflix.discovery.shared.transport.jersey.TransportClientFactories;
 
+import org.springframework.cloud.netflix.eureka.EurekaClientConfigBean;
 import org.springframework.web.reactive.function.client.WebClient;
 
 /**
@@ -52,14 +53,23 @@ public class WebClientTransportClientFactories implements TransportClientFactori
 	@Override
 	public TransportClientFactory newTransportClientFactory(EurekaClientConfig clientConfig,
 			Collection<Void> additionalFilters, InstanceInfo myInstanceInfo) {
-		return new WebClientTransportClientFactory(builder);
+		WebClientTransportClientFactory factory = new WebClientTransportClientFactory(builder);
+		factory.setJacksonSmileEnabled(isJacksonSmileEnabled(clientConfig));
+		return factory;
 	}
 
 	@Override
 	public TransportClientFactory newTransportClientFactory(final EurekaClientConfig clientConfig,
 			final Collection<Void> additionalFilters, final InstanceInfo myInstanceInfo,
 			final Optional<SSLContext> sslContext, final Optional<HostnameVerifier> hostnameVerifier) {
-		return new WebClientTransportClientFactory(builder);
+		WebClientTransportClientFactory factory = new WebClientTransportClientFactory(builder);
+		factory.setJacksonSmileEnabled(isJacksonSmileEnabled(clientConfig));
+		return factory;
+	}
+
+	private static boolean isJacksonSmileEnabled(EurekaClientConfig clientConfig) {
+		return clientConfig instanceof EurekaClientConfigBean
+				&& ((EurekaClientConfigBean) clientConfig).isJacksonSmileEnabled();
 	}
 
 }
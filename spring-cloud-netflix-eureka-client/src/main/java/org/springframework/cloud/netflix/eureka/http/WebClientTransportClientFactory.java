@@ -45,6 +45,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.codec.ClientCodecConfigurer;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunctions;
@@ -62,10 +64,22 @@ public class WebClientTransportClientFactory implements TransportClientFactory {
 
 	private final Supplier<WebClient.Builder> builderSupplier;
 
+	private boolean jacksonSmileEnabled;
+
 	public WebClientTransportClientFactory(Supplier<WebClient.Builder> builderSupplier) {
 		this.builderSupplier = builderSupplier;
 	}
 
+	/**
+	 * Ask for registry fetches in the Jackson Smile format, when
+	 * {@code jackson-dataformat-smile} is on the classpath. Servers that do not support it
+	 * still answer in JSON.
+	 * @param jacksonSmileEnabled whether to ask for registry fetches in Smile
+	 */
+	public void setJacksonSmileEnabled(boolean jacksonSmileEnabled) {
+		this.jacksonSmileEnabled = jacksonSmileEnabled;
+	}
+
 	@Override
 	public EurekaHttpClient newClient(EurekaEndpoint endpoint) {
 		// we want a copy to modify. Don't change the original
@@ -73,9 +87,17 @@ public class WebClientTransportClientFactory implements TransportClientFactory {
 		setUrl(builder, endpoint.getServiceUrl());
 		setCodecs(builder);
 		builder.filter(http4XxErrorExchangeFilterFunction());
+		if (isJacksonSmile()) {
+			return new WebClientEurekaHttpClient(builder.build(), JacksonSmileSupport.MEDIA_TYPE,
+					MediaType.APPLICATION_JSON);
+		}
 		return new WebClientEurekaHttpClient(builder.build());
 	}
 
+	private boolean isJacksonSmile() {
+		return this.jacksonSmileEnabled && JacksonSmileSupport.isPresent();
+	}
+
 	private WebClient.Builder setUrl(WebClient.Builder builder, String serviceUrl) {
 		String url = serviceUrl;
 		try {
@@ -107,11 +129,18 @@ public class WebClientTransportClientFactory implements TransportClientFactory {
 	}
 
 	private void setCodecs(WebClient.Builder builder) {
-		ObjectMapper objectMapper = objectMapper();
+		ObjectMapper objectMapper = objectMapper(new ObjectMapper());
+		ObjectMapper smileObjectMapper = isJacksonSmile() ? objectMapper(JacksonSmileSupport.objectMapper()) : null;
 		builder.codecs(configurer -> {
 			ClientCodecConfigurer.ClientDefaultCodecs defaults = configurer.defaultCodecs();
 			defaults.jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON));
 			defaults.jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, MediaType.APPLICATION_JSON));
+			if (smileObjectMapper != null) {
+				defaults.jackson2SmileEncoder(
+						new Jackson2SmileEncoder(smileObjectMapper, JacksonSmileSupport.MEDIA_TYPE));
+				defaults.jackson2SmileDecoder(
+						new Jackson2SmileDecoder(smileObjectMapper, JacksonSmileSupport.MEDIA_TYPE));
+			}
 
 		});
 	}
@@ -124,10 +153,10 @@ public class WebClientTransportClientFactory implements TransportClientFactory {
 	 * {@link DeserializationFeature#UNWRAP_ROOT_VALUE}.
 	 * {@link PropertyNamingStrategy.SnakeCaseStrategy} is applied to the underlying
 	 * {@link ObjectMapper}.
-	 * @return a {@link ObjectMapper} object
+	 * @param objectMapper the {@link ObjectMapper} to configure
+	 * @return the configured {@link ObjectMapper}
 	 */
-	private ObjectMapper objectMapper() {
-		ObjectMapper objectMapper = new ObjectMapper();
+	private ObjectMapper objectMapper(ObjectMapper objectMapper) {
 		objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
 
 		SimpleModule jsonModule = new SimpleModule();
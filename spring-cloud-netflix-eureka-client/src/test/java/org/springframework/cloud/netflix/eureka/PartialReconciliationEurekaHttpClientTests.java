@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.http.EurekaApplications;
+import org.springframework.cloud.netflix.eureka.http.RestTemplateTransportClientFactory;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link PartialReconciliationEurekaHttpClient}.
+ *
+ * @author agent agent
+ */
+public class PartialReconciliationEurekaHttpClientTests {
+
+	private final ObjectMapper objectMapper = new RestTemplateTransportClientFactory()
+			.mappingJacksonHttpMessageConverter().getObjectMapper();
+
+	private final EurekaHttpClient delegate = mock(EurekaHttpClient.class);
+
+	private final Applications local = new Applications();
+
+	private final PartialReconciliationEurekaHttpClient client = new PartialReconciliationEurekaHttpClient(
+			this.delegate, () -> this.local, new ReentrantLock());
+
+	private final Applications full = new Applications();
+
+	@Before
+	public void setup() {
+		this.local.addApplication(application("FOO", "foo-1"));
+		this.local.addApplication(application("BAR", "bar-1"));
+		when(this.delegate.getApplication("FOO"))
+				.thenReturn(anEurekaHttpResponse(200, application("FOO", "foo-1", "foo-2")).build());
+		when(this.delegate.getApplications()).thenReturn(anEurekaHttpResponse(200, this.full).build());
+	}
+
+	@Test
+	public void fetchesDivergedApplicationsOnly() throws Exception {
+		fetchDelta("{\"applications\":{\"versions__delta\":\"7\",\"apps__hashcode\":\"UP_3_\","
+				+ "\"application\":[],\"apps__hashcodes\":\"FOO=UP_2_,BAR=UP_1_\"}}");
+
+		Applications applications = this.client.getApplications().getEntity();
+
+		assertThat(applications).isNotSameAs(this.full);
+		assertThat(applications.getAppsHashCode()).isEqualTo("UP_3_");
+		assertThat(applications.getVersion()).isEqualTo(7L);
+		assertThat(applications.getRegisteredApplications("FOO").getInstancesAsIsFromEureka())
+				.extracting(InstanceInfo::getId).containsExactlyInAnyOrder("foo-1", "foo-2");
+		assertThat(applications.getRegisteredApplications("BAR")).isNotNull();
+		verify(this.delegate, never()).getApplications();
+		verify(this.delegate, never()).getApplication("BAR");
+	}
+
+	@Test
+	public void fetchesFullRegistryWhenStillNotReconciled() throws Exception {
+		fetchDelta("{\"applications\":{\"versions__delta\":\"7\",\"apps__hashcode\":\"UP_4_\","
+				+ "\"application\":[],\"apps__hashcodes\":\"FOO=UP_2_\"}}");
+
+		assertThat(this.client.getApplications().getEntity()).isSameAs(this.full);
+	}
+
+	@Test
+	public void fetchesFullRegistryWithoutAppHashCodes() throws Exception {
+		fetchDelta("{\"applications\":{\"versions__delta\":\"7\",\"apps__hashcode\":\"UP_3_\","
+				+ "\"application\":[]}}");
+
+		assertThat(this.client.getApplications().getEntity()).isSameAs(this.full);
+		verify(this.delegate, never()).getApplication("FOO");
+	}
+
+	private void fetchDelta(String json) throws Exception {
+		Applications delta = this.objectMapper.readValue(json, EurekaApplications.class);
+		EurekaHttpResponse<Applications> response = anEurekaHttpResponse(200, delta).build();
+		when(this.delegate.getDelta()).thenReturn(response);
+		assertThat(this.client.getDelta().getEntity()).isSameAs(delta);
+	}
+
+	private static Application application(String name, String... ids) {
+		Application application = new Application(name);
+		for (String id : ids) {
+			application.addInstance(InstanceInfo.Builder.newBuilder().setAppName(name).setInstanceId(id)
+					.setHostName(id).setStatus(InstanceInfo.InstanceStatus.UP).build());
+		}
+		return application;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegistryChangeStreamEurekaHttpClient}.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeStreamEurekaHttpClientTests {
+
+	private final EurekaHttpClient delegate = mock(EurekaHttpClient.class);
+
+	private final Applications local = new Applications();
+
+	private final AtomicBoolean streaming = new AtomicBoolean();
+
+	private final RegistryChangeStreamEurekaHttpClient client = new RegistryChangeStreamEurekaHttpClient(
+			this.delegate, this.streaming::get, () -> this.local, new ReentrantLock());
+
+	private final Applications remote = new Applications();
+
+	@Before
+	public void setup() {
+		Application application = new Application("FOO");
+		application.addInstance(InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+				.setHostName("foo-1").setStatus(InstanceInfo.InstanceStatus.UP).build());
+		this.local.addApplication(application);
+		this.local.setVersion(7L);
+		when(this.delegate.getDelta()).thenReturn(anEurekaHttpResponse(200, this.remote).build());
+		when(this.delegate.getDelta("us-west")).thenReturn(anEurekaHttpResponse(200, this.remote).build());
+	}
+
+	@Test
+	public void answersEmptyDeltaWhileStreaming() {
+		this.streaming.set(true);
+
+		Applications delta = this.client.getDelta().getEntity();
+
+		assertThat(delta).isNotSameAs(this.remote);
+		assertThat(delta.getRegisteredApplications()).isEmpty();
+		assertThat(delta.getAppsHashCode()).isEqualTo("UP_1_");
+		assertThat(delta.getVersion()).isEqualTo(7L);
+		verify(this.delegate, never()).getDelta();
+	}
+
+	@Test
+	public void fetchesDeltaWhenNotStreaming() {
+		assertThat(this.client.getDelta().getEntity()).isSameAs(this.remote);
+	}
+
+	@Test
+	public void fetchesDeltaOfRemoteRegions() {
+		this.streaming.set(true);
+
+		assertThat(this.client.getDelta("us-west").getEntity()).isSameAs(this.remote);
+	}
+
+}
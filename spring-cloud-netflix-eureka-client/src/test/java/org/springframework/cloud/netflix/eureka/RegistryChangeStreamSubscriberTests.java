@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.http.RestTemplateTransportClientFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RegistryChangeStreamSubscriber}.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeStreamSubscriberTests {
+
+	private final ObjectMapper objectMapper = new RestTemplateTransportClientFactory()
+			.mappingJacksonHttpMessageConverter().getObjectMapper();
+
+	private final List<String> calls = new ArrayList<>();
+
+	private final RegistryChangeStreamSubscriber subscriber = new RegistryChangeStreamSubscriber(
+			Collections::emptyList, new RegistryChangeStreamSubscriber.Handler() {
+				@Override
+				public void changed(ActionType action, InstanceInfo info) {
+					calls.add(action + " " + info.getId());
+				}
+
+				@Override
+				public void changesApplied() {
+					calls.add("applied");
+				}
+
+				@Override
+				public void reset() {
+					calls.add("reset");
+				}
+			}, new SimpleClientHttpRequestFactory(), Duration.ofSeconds(1));
+
+	@Test
+	public void appliesBufferedChangesTogether() throws Exception {
+		read(":\n\n" + event(1, "ADDED", "foo-1") + event(2, "MODIFIED", "foo-1") + event(3, "DELETED", "foo-2"));
+
+		assertThat(this.calls).containsExactly("ADDED foo-1", "MODIFIED foo-1", "DELETED foo-2", "applied");
+	}
+
+	@Test
+	public void resetsOnReset() throws Exception {
+		read(event(1, "ADDED", "foo-1") + "id: 5\nevent: RESET\ndata: {}\n\n" + "event: UNKNOWN\ndata: {}\n\n");
+
+		assertThat(this.calls).containsExactly("ADDED foo-1", "reset", "applied");
+	}
+
+	private void read(String stream) throws Exception {
+		this.subscriber.read(new BufferedReader(new StringReader(stream)));
+	}
+
+	private String event(long id, String action, String instanceId) throws Exception {
+		InstanceInfo info = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId(instanceId)
+				.setHostName(instanceId).build();
+		return "id: " + id + "\nevent: " + action + "\ndata: " + this.objectMapper.writeValueAsString(info) + "\n\n";
+	}
+
+}
@@ -19,8 +19,10 @@ package org.springframework.cloud.netflix.eureka.http;
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.discovery.shared.Applications;
 import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
 import org.junit.Test;
 
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
 import org.springframework.http.HttpStatus;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,6 +38,8 @@ public abstract class AbstractEurekaHttpClientTest {
 
 	abstract public void setup();
 
+	protected abstract EurekaHttpResponse<Applications> getDeltaSince(String version);
+
 	@Test
 	public void testRegister() {
 		assertThat(eurekaHttpClient.register(info).getStatusCode()).isEqualTo(HttpStatus.OK.value());
@@ -83,6 +87,18 @@ public abstract class AbstractEurekaHttpClientTest {
 		eurekaHttpClient.getDelta("us", "eu").getEntity();
 	}
 
+	@Test
+	public void testGetDeltaSince() {
+		EurekaHttpResponse<Applications> changed = getDeltaSince("a1:41");
+		assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK.value());
+		assertThat(changed.getEntity()).isNotNull();
+		assertThat(changed.getHeaders()).containsEntry(EurekaConstants.REGISTRY_VERSION_HEADER, "a1:42");
+
+		EurekaHttpResponse<Applications> unchanged = getDeltaSince("a1:42");
+		assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+		assertThat(unchanged.getEntity()).isNull();
+	}
+
 	@Test
 	public void testGetVips() {
 		eurekaHttpClient.getVip("test");
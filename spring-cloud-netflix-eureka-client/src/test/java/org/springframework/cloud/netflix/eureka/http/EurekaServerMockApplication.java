@@ -27,6 +27,7 @@ import com.netflix.discovery.shared.Application;
 import com.netflix.discovery.shared.Applications;
 
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
@@ -34,6 +35,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.userdetails.User;
@@ -93,6 +95,15 @@ public class EurekaServerMockApplication {
 		return new RestTemplateTransportClientFactory().mappingJacksonHttpMessageConverter();
 	}
 
+	/**
+	 * Simulates Eureka Server own's serialization in the Smile format.
+	 * @return
+	 */
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter mappingJacksonSmileHttpMessageConverter() {
+		return new RestTemplateTransportClientFactory().mappingJacksonSmileHttpMessageConverter();
+	}
+
 	@ResponseStatus(HttpStatus.OK)
 	@PostMapping("/apps/{appName}")
 	public void register(@PathVariable String appName, @RequestBody InstanceInfo instanceInfo) {
@@ -143,6 +154,16 @@ public class EurekaServerMockApplication {
 		return applications;
 	}
 
+	@GetMapping(value = "/apps/delta", params = "since")
+	public ResponseEntity<Applications> getDeltaSince(@RequestParam String since) {
+		if ("a1:42".equals(since)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+					.header(EurekaConstants.REGISTRY_VERSION_HEADER, "a1:42").build();
+		}
+		return ResponseEntity.ok().header(EurekaConstants.REGISTRY_VERSION_HEADER, "a1:42")
+				.body(getApplications(null, null));
+	}
+
 	@GetMapping("/apps/{appName}")
 	public Application getApplication(@PathVariable String appName) {
 		return new Application();
@@ -17,7 +17,9 @@
 package org.springframework.cloud.netflix.eureka.http;
 
 import com.netflix.appinfo.providers.EurekaConfigBasedInstanceInfoProvider;
+import com.netflix.discovery.shared.Applications;
 import com.netflix.discovery.shared.resolver.DefaultEndpoint;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
 import org.junit.Before;
 import org.junit.runner.RunWith;
 
@@ -64,4 +66,9 @@ public class RestTemplateEurekaHttpClientTest extends AbstractEurekaHttpClientTe
 		info = new EurekaConfigBasedInstanceInfoProvider(config).get();
 	}
 
+	@Override
+	protected EurekaHttpResponse<Applications> getDeltaSince(String version) {
+		return ((RestTemplateEurekaHttpClient) eurekaHttpClient).getDeltaSince(version);
+	}
+
 }
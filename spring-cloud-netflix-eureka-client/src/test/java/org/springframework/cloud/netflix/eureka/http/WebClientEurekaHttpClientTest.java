@@ -17,7 +17,9 @@
 package org.springframework.cloud.netflix.eureka.http;
 
 import com.netflix.appinfo.providers.EurekaConfigBasedInstanceInfoProvider;
+import com.netflix.discovery.shared.Applications;
 import com.netflix.discovery.shared.resolver.DefaultEndpoint;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
 import org.junit.Before;
 import org.junit.runner.RunWith;
 
@@ -67,4 +69,9 @@ public class WebClientEurekaHttpClientTest extends AbstractEurekaHttpClientTest
 		info = new EurekaConfigBasedInstanceInfoProvider(config).get();
 	}
 
+	@Override
+	protected EurekaHttpResponse<Applications> getDeltaSince(String version) {
+		return ((WebClientEurekaHttpClient) eurekaHttpClient).getDeltaSince(version);
+	}
+
 }
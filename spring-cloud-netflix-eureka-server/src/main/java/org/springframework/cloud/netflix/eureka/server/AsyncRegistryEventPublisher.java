@@ -0,0 +1,236 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ApplicationEventPublisher} that hands registry events to a bounded queue which
+ * is drained in batches by dedicated worker threads, so that slow listeners do not add
+ * latency to registrations, heartbeats and replication.
+ *
+ * @author agent agent
+ */
+public class AsyncRegistryEventPublisher implements ApplicationEventPublisher, MeterBinder, DisposableBean {
+
+	private static final Log log = LogFactory.getLog(AsyncRegistryEventPublisher.class);
+
+	private final ApplicationEventPublisher delegate;
+
+	private final BlockingQueue<Object> queue;
+
+	private final int batchSize;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final Set<String> pendingRenewals = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong dispatched = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	private final ExecutorService workers;
+
+	public AsyncRegistryEventPublisher(ApplicationEventPublisher delegate, int queueCapacity, int batchSize,
+			int workerThreads, OverflowPolicy overflowPolicy) {
+		Assert.notNull(delegate, "delegate must not be null");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		Assert.isTrue(workerThreads > 0, "workerThreads must be positive");
+		Assert.notNull(overflowPolicy, "overflowPolicy must not be null");
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.overflowPolicy = overflowPolicy;
+		this.workers = Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory());
+		for (int i = 0; i < workerThreads; i++) {
+			this.workers.execute(this::drain);
+		}
+	}
+
+	@Override
+	public void publishEvent(Object event) {
+		if (this.overflowPolicy == OverflowPolicy.COALESCE && event instanceof EurekaInstanceRenewedEvent) {
+			String key = renewalKey((EurekaInstanceRenewedEvent) event);
+			if (!this.pendingRenewals.add(key)) {
+				this.coalesced.incrementAndGet();
+				return;
+			}
+			if (!this.queue.offer(event)) {
+				this.pendingRenewals.remove(key);
+				this.dropped.incrementAndGet();
+			}
+			return;
+		}
+		if (this.overflowPolicy == OverflowPolicy.DROP) {
+			if (!this.queue.offer(event)) {
+				this.dropped.incrementAndGet();
+			}
+			return;
+		}
+		try {
+			this.queue.put(event);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of events waiting to be dispatched
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return the number of events handed to the delegate publisher
+	 */
+	public long getDispatchedCount() {
+		return this.dispatched.get();
+	}
+
+	/**
+	 * @return the number of events discarded because the queue was full
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return the number of renewed events merged into an already pending renewal
+	 */
+	public long getCoalescedCount() {
+		return this.coalesced.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("eureka.server.events.queue.depth", this, AsyncRegistryEventPublisher::getQueueDepth)
+				.description("Registry events waiting to be dispatched").register(registry);
+		FunctionCounter
+				.builder("eureka.server.events.dispatched", this, AsyncRegistryEventPublisher::getDispatchedCount)
+				.description("Registry events dispatched to listeners").register(registry);
+		FunctionCounter.builder("eureka.server.events.dropped", this, AsyncRegistryEventPublisher::getDroppedCount)
+				.description("Registry events dropped because the queue was full").register(registry);
+		FunctionCounter.builder("eureka.server.events.coalesced", this, AsyncRegistryEventPublisher::getCoalescedCount)
+				.description("Renewed events merged into a pending renewal").register(registry);
+	}
+
+	@Override
+	public void destroy() {
+		this.workers.shutdownNow();
+	}
+
+	private void drain() {
+		List<Object> batch = new ArrayList<>(this.batchSize);
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				batch.add(this.queue.take());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			this.queue.drainTo(batch, this.batchSize - 1);
+			for (Object event : batch) {
+				dispatch(event);
+			}
+			batch.clear();
+		}
+	}
+
+	private void dispatch(Object event) {
+		if (this.overflowPolicy == OverflowPolicy.COALESCE && event instanceof EurekaInstanceRenewedEvent) {
+			this.pendingRenewals.remove(renewalKey((EurekaInstanceRenewedEvent) event));
+		}
+		try {
+			this.delegate.publishEvent(event);
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed to dispatch registry event " + event, e);
+		}
+		this.dispatched.incrementAndGet();
+	}
+
+	private static String renewalKey(EurekaInstanceRenewedEvent event) {
+		return event.getAppName() + "/" + event.getServerId();
+	}
+
+	/**
+	 * What happens to an event published while the queue is full.
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Discard the event.
+		 */
+		DROP,
+
+		/**
+		 * Wait for space in the queue.
+		 */
+		BLOCK,
+
+		/**
+		 * Merge renewed events into a renewal of the same instance that is still waiting
+		 * to be dispatched, and drop renewed events that do not fit. Registered and
+		 * canceled events wait for space in the queue and are never lost.
+		 */
+		COALESCE
+
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Eureka-RegistryEventDispatcher-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
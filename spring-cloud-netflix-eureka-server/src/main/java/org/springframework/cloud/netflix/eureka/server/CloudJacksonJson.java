@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -31,18 +32,21 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.netflix.appinfo.DataCenterInfo;
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.appinfo.LeaseInfo;
 import com.netflix.discovery.converters.EurekaJacksonCodec;
+import com.netflix.discovery.converters.EurekaJacksonCodec.ApplicationsSerializer;
 import com.netflix.discovery.converters.EurekaJacksonCodec.InstanceInfoDeserializer;
 import com.netflix.discovery.converters.EurekaJacksonCodec.InstanceInfoSerializer;
 import com.netflix.discovery.converters.wrappers.CodecWrappers.LegacyJacksonJson;
 import com.netflix.discovery.shared.Application;
 import com.netflix.discovery.shared.Applications;
 
+import org.springframework.cloud.netflix.eureka.ApplicationHashCodes;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
@@ -53,7 +57,15 @@ import static com.netflix.discovery.converters.wrappers.CodecWrappers.getCodecNa
  */
 public class CloudJacksonJson extends LegacyJacksonJson {
 
-	protected final CloudJacksonCodec codec = new CloudJacksonCodec();
+	protected final CloudJacksonCodec codec;
+
+	public CloudJacksonJson() {
+		this(new CloudJacksonCodec());
+	}
+
+	CloudJacksonJson(CloudJacksonCodec codec) {
+		this.codec = codec;
+	}
 
 	public CloudJacksonCodec getCodec() {
 		return codec;
@@ -84,6 +96,41 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 		return this.codec.readValue(type, inputStream);
 	}
 
+	/**
+	 * Encode applications to a stream one application at a time, flushing the stream
+	 * regularly, rather than encoding them all before writing the first byte. The output
+	 * is the same as the one of {@link #encode(Object, OutputStream)}.
+	 * @param applications the applications to encode
+	 * @param outputStream the stream to write to, left open
+	 * @param flushInterval the number of applications to write between two flushes
+	 * @throws IOException if the applications cannot be written
+	 */
+	public void encodeStreaming(Applications applications, OutputStream outputStream, int flushInterval)
+			throws IOException {
+		this.codec.writeApplicationsTo(applications, outputStream, flushInterval);
+	}
+
+	/**
+	 * Encode a delta along with the hash codes of the applications it changes, in the
+	 * {@link ApplicationHashCodes#KEY} field.
+	 * @param delta the delta to encode
+	 * @param appHashCodes the hash codes of the applications, by application name
+	 * @param outputStream the stream to write to
+	 * @throws IOException if the delta cannot be written
+	 */
+	public void encode(Applications delta, Map<String, String> appHashCodes, OutputStream outputStream)
+			throws IOException {
+		this.codec.writeTo(delta, appHashCodes, outputStream);
+	}
+
+	/**
+	 * Apply the legacy {@code instanceId} metadata to an instance without an instance
+	 * id. The instance is updated in place, so this only has an effect the first time it
+	 * is called for a given instance. It is called when instances are registered and
+	 * decoded, so that encoding the registry does not have to update shared instances.
+	 * @param info the instance to update
+	 * @return the given instance
+	 */
 	static InstanceInfo updateIfNeeded(final InstanceInfo info) {
 		if (info.getInstanceId() == null && info.getMetadata() != null) {
 			String instanceId = info.getMetadata().get("instanceId");
@@ -92,6 +139,7 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 				if (StringUtils.hasText(info.getHostName()) && !instanceId.startsWith(info.getHostName())) {
 					instanceId = info.getHostName() + ":" + instanceId;
 				}
+				// the builder wraps the given instance rather than copying it
 				return new InstanceInfo.Builder(info).setInstanceId(instanceId).build();
 			}
 		}
@@ -102,11 +150,25 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 
 		private static final Version VERSION = new Version(1, 1, 0, null, null, null);
 
-		@SuppressWarnings("deprecation")
+		private final ObjectMapper objectMapper;
+
+		private final ObjectWriter applicationWriter;
+
+		private final ObjectWriter applicationsWriter;
+
 		CloudJacksonCodec() {
+			this(new ObjectMapper());
+		}
+
+		/**
+		 * Create a codec registering the Eureka serializers with the given mapper, so
+		 * that binary formats can be used through a mapper created with their factory.
+		 * @param mapper the mapper to use
+		 */
+		@SuppressWarnings("deprecation")
+		CloudJacksonCodec(ObjectMapper mapper) {
 			super();
 
-			ObjectMapper mapper = new ObjectMapper();
 			mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
 			SimpleModule module = new SimpleModule("eureka1.x", VERSION);
@@ -114,7 +176,7 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 			module.addSerializer(InstanceInfo.class, new CloudInstanceInfoSerializer());
 			module.addSerializer(Application.class, new ApplicationSerializer());
 			module.addSerializer(Applications.class,
-					new ApplicationsSerializer(this.getVersionDeltaKey(), this.getAppHashCodeKey()));
+					new CloudApplicationsSerializer(this.getVersionDeltaKey(), this.getAppHashCodeKey()));
 
 			// TODO: Watch if this causes problems
 			// module.addDeserializer(DataCenterInfo.class,
@@ -139,10 +201,45 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 			HashMap<Class<?>, ObjectWriter> writers = new HashMap<>();
 			writers.put(InstanceInfo.class, mapper.writer().withType(InstanceInfo.class).withRootName("instance"));
 			writers.put(Application.class, mapper.writer().withType(Application.class).withRootName("application"));
-			writers.put(Applications.class, mapper.writer().withType(Applications.class).withRootName("applications"));
+			this.applicationsWriter = mapper.writer().withType(Applications.class).withRootName("applications");
+			writers.put(Applications.class, this.applicationsWriter);
 			setField("objectWriterByClass", writers);
 
 			setField("mapper", mapper);
+
+			this.objectMapper = mapper;
+			this.applicationWriter = mapper.writerFor(Application.class)
+					.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		}
+
+		/*
+		 * Writes the same document as ApplicationsSerializer, wrapped in its root name.
+		 */
+		void writeApplicationsTo(Applications applications, OutputStream out, int flushInterval) throws IOException {
+			try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(out)) {
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.writeStartObject();
+				generator.writeObjectFieldStart("applications");
+				generator.writeStringField(getVersionDeltaKey(), applications.getVersion().toString());
+				generator.writeStringField(getAppHashCodeKey(), applications.getAppsHashCode());
+				generator.writeArrayFieldStart("application");
+				int written = 0;
+				for (Application application : applications.getRegisteredApplications()) {
+					this.applicationWriter.writeValue(generator, application);
+					if (++written % flushInterval == 0) {
+						generator.flush();
+					}
+				}
+				generator.writeEndArray();
+				generator.writeEndObject();
+				generator.writeEndObject();
+			}
+		}
+
+		void writeTo(Applications applications, Map<String, String> appHashCodes, OutputStream out)
+				throws IOException {
+			this.applicationsWriter.withAttribute(ApplicationHashCodes.KEY, appHashCodes).writeValue(out,
+					applications);
 		}
 
 		void setField(String name, Object value) {
@@ -153,14 +250,51 @@ public class CloudJacksonJson extends LegacyJacksonJson {
 
 	}
 
+	/*
+	 * Also writes the hash codes of the applications when given them as an attribute, as
+	 * a string field skipped by decoders not knowing about it.
+	 */
+	static class CloudApplicationsSerializer extends ApplicationsSerializer {
+
+		private final String versionDeltaKey;
+
+		private final String appHashCodeKey;
+
+		CloudApplicationsSerializer(String versionDeltaKey, String appHashCodeKey) {
+			super(versionDeltaKey, appHashCodeKey);
+			this.versionDeltaKey = versionDeltaKey;
+			this.appHashCodeKey = appHashCodeKey;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void serialize(Applications applications, JsonGenerator jgen, SerializerProvider provider)
+				throws IOException {
+			Object appHashCodes = provider.getAttribute(ApplicationHashCodes.KEY);
+			if (!(appHashCodes instanceof Map)) {
+				super.serialize(applications, jgen, provider);
+				return;
+			}
+			jgen.writeStartObject();
+			jgen.writeStringField(this.versionDeltaKey, applications.getVersion().toString());
+			jgen.writeStringField(this.appHashCodeKey, applications.getAppsHashCode());
+			jgen.writeObjectField("application", applications.getRegisteredApplications());
+			jgen.writeStringField(ApplicationHashCodes.KEY,
+					ApplicationHashCodes.encode((Map<String, String>) appHashCodes));
+			jgen.writeEndObject();
+		}
+
+	}
+
 	static class CloudInstanceInfoSerializer extends InstanceInfoSerializer {
 
 		@Override
 		public void serialize(final InstanceInfo info, JsonGenerator jgen, SerializerProvider provider)
 				throws IOException {
 
-			InstanceInfo updated = updateIfNeeded(info);
-			super.serialize(updated, jgen, provider);
+			// registered and decoded instances already have their instance id, so that
+			// this is a no-op unless encoding an instance created otherwise
+			super.serialize(info.getInstanceId() != null ? info : updateIfNeeded(info), jgen, provider);
 		}
 
 	}
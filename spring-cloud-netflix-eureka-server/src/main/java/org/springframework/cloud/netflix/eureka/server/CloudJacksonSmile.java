@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import static com.netflix.discovery.converters.wrappers.CodecWrappers.getCodecName;
+
+/**
+ * Binary counterpart of {@link CloudJacksonJson}, encoding the same documents in the
+ * Jackson Smile format. Being binary, documents encoded to and decoded from a
+ * {@link String} map each byte to the character of the same ISO-8859-1 code point.
+ *
+ * @author agent agent
+ */
+public class CloudJacksonSmile extends CloudJacksonJson {
+
+	/**
+	 * The media type of the Smile format.
+	 */
+	public static final String MEDIA_TYPE = "application/x-jackson-smile";
+
+	private static final MediaType SMILE_TYPE = MediaType.valueOf(MEDIA_TYPE);
+
+	public CloudJacksonSmile() {
+		super(new CloudJacksonCodec(new ObjectMapper(new SmileFactory())));
+	}
+
+	@Override
+	public String codecName() {
+		return getCodecName(CloudJacksonSmile.class);
+	}
+
+	@Override
+	public boolean support(MediaType mediaType) {
+		return SMILE_TYPE.isCompatible(mediaType);
+	}
+
+	@Override
+	public <T> String encode(T object) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encode(object, out);
+		return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public <T> T decode(String textValue, Class<T> type) throws IOException {
+		return decode(new ByteArrayInputStream(textValue.getBytes(StandardCharsets.ISO_8859_1)), type);
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.netflix.appinfo.AmazonInfo;
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.shared.Application;
+import com.netflix.eureka.EurekaServerConfig;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * The applications shown by the dashboard, as of a version of the registry. Both the
+ * model of the status page and the pages of the dashboard API are built from it, so
+ * that the registry is only walked once per version.
+ *
+ * @author agent agent
+ */
+public class DashboardModel {
+
+	private final long version;
+
+	private final long timestamp = System.currentTimeMillis();
+
+	private final List<App> apps = new ArrayList<>();
+
+	private final int instanceCount;
+
+	private volatile List<Map<String, Object>> statusModel;
+
+	/**
+	 * @param version the version of the registry the applications were read at
+	 * @param sortedApplications the applications of the registry, sorted by name
+	 */
+	public DashboardModel(long version, List<Application> sortedApplications) {
+		this.version = version;
+		int instanceCount = 0;
+		for (Application application : sortedApplications) {
+			List<Instance> instances = new ArrayList<>();
+			for (InstanceInfo info : application.getInstances()) {
+				instances.add(new Instance(info));
+			}
+			this.apps.add(new App(application.getName(), instances));
+			instanceCount += instances.size();
+		}
+		this.instanceCount = instanceCount;
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @param version the current version of the registry
+	 * @param serverConfig the server configuration, or null if unknown
+	 * @return whether the model still shows the applications of the registry
+	 */
+	public boolean isCurrent(long version, EurekaServerConfig serverConfig) {
+		if (this.version != version) {
+			return false;
+		}
+		// changes of remote regions do not affect the registry version
+		return serverConfig == null || serverConfig.getRemoteRegionUrlsWithName().isEmpty()
+				|| System.currentTimeMillis() - this.timestamp < serverConfig.getResponseCacheUpdateIntervalMs();
+	}
+
+	/**
+	 * @return the applications in the form expected by the {@code eureka/status} page
+	 */
+	public List<Map<String, Object>> getApps() {
+		List<Map<String, Object>> statusModel = this.statusModel;
+		if (statusModel == null) {
+			List<Map<String, Object>> apps = new ArrayList<>();
+			for (App app : this.apps) {
+				apps.add(app.toModel(app.instances, true));
+			}
+			statusModel = Collections.unmodifiableList(apps);
+			this.statusModel = statusModel;
+		}
+		return statusModel;
+	}
+
+	/**
+	 * Get a page of the applications with instances matching the given filters, with
+	 * only their matching instances.
+	 * @param name a prefix of the application names, case insensitive, or null for all
+	 * applications
+	 * @param status the status of the instances, or null for all statuses
+	 * @param zone the availability zone of the instances, or null for all zones
+	 * @param page the index of the page, starting at 0
+	 * @param size the maximum number of applications in a page
+	 * @return the page, with the total number of matching applications and instances
+	 */
+	public Map<String, Object> page(String name, InstanceStatus status, String zone, int page, int size) {
+		String prefix = StringUtils.hasText(name) ? name.toUpperCase(Locale.ROOT) : null;
+		boolean filtered = prefix != null || status != null || zone != null;
+		int first = page * size;
+		int total = 0;
+		int instances = 0;
+		List<Map<String, Object>> apps = new ArrayList<>();
+		for (App app : this.apps) {
+			if (prefix != null && !app.name.toUpperCase(Locale.ROOT).startsWith(prefix)) {
+				continue;
+			}
+			List<Instance> matching = app.instances;
+			if (filtered) {
+				matching = new ArrayList<>();
+				for (Instance instance : app.instances) {
+					if ((status == null || instance.status == status)
+							&& (zone == null || zone.equals(instance.zone))) {
+						matching.add(instance);
+					}
+				}
+				if (matching.isEmpty()) {
+					continue;
+				}
+			}
+			if (total >= first && apps.size() < size) {
+				apps.add(app.toModel(matching, false));
+			}
+			total++;
+			instances += matching.size();
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("version", this.version);
+		result.put("page", page);
+		result.put("size", size);
+		result.put("totalApps", total);
+		result.put("totalInstances", filtered ? instances : this.instanceCount);
+		result.put("apps", apps);
+		return result;
+	}
+
+	private static final class App {
+
+		private final String name;
+
+		private final List<Instance> instances;
+
+		private App(String name, List<Instance> instances) {
+			this.name = name;
+			this.instances = instances;
+		}
+
+		/*
+		 * The status page iterates over the entries of the counts, the API serializes
+		 * them as objects.
+		 */
+		private Map<String, Object> toModel(List<Instance> instances, boolean entries) {
+			Map<String, Integer> amiCounts = new LinkedHashMap<>();
+			Map<String, Integer> zoneCounts = new LinkedHashMap<>();
+			Map<InstanceStatus, List<Instance>> instancesByStatus = new LinkedHashMap<>();
+			for (Instance instance : instances) {
+				amiCounts.merge(instance.ami, 1, Integer::sum);
+				zoneCounts.merge(instance.zone, 1, Integer::sum);
+				instancesByStatus.computeIfAbsent(instance.status, k -> new ArrayList<>()).add(instance);
+			}
+			Map<String, Object> appData = new LinkedHashMap<>();
+			appData.put("name", this.name);
+			appData.put("amiCounts", entries ? amiCounts.entrySet() : amiCounts);
+			appData.put("zoneCounts", entries ? zoneCounts.entrySet() : zoneCounts);
+			List<Map<String, Object>> instanceInfos = new ArrayList<>();
+			appData.put("instanceInfos", instanceInfos);
+			for (Map.Entry<InstanceStatus, List<Instance>> entry : instancesByStatus.entrySet()) {
+				Map<String, Object> instanceData = new LinkedHashMap<>();
+				instanceInfos.add(instanceData);
+				instanceData.put("status", entry.getKey());
+				List<Map<String, Object>> statusInstances = new ArrayList<>();
+				instanceData.put("instances", statusInstances);
+				instanceData.put("isNotUp", entry.getKey() != InstanceStatus.UP);
+				for (Instance instance : entry.getValue()) {
+					Map<String, Object> instanceModel = new LinkedHashMap<>();
+					statusInstances.add(instanceModel);
+					instanceModel.put("id", instance.id);
+					instanceModel.put("url", instance.url);
+					instanceModel.put("isHref", instance.url != null && instance.url.startsWith("http"));
+				}
+			}
+			return appData;
+		}
+
+	}
+
+	private static final class Instance {
+
+		private final String id;
+
+		private final String url;
+
+		private final InstanceStatus status;
+
+		private final String ami;
+
+		private final String zone;
+
+		private Instance(InstanceInfo info) {
+			this.id = info.getId();
+			this.url = info.getStatusPageUrl();
+			this.status = info.getStatus();
+			if (info.getDataCenterInfo().getName() == DataCenterInfo.Name.Amazon) {
+				AmazonInfo dcInfo = (AmazonInfo) info.getDataCenterInfo();
+				String ami = dcInfo.get(AmazonInfo.MetaDataKey.amiId);
+				String zone = dcInfo.get(AmazonInfo.MetaDataKey.availabilityZone);
+				this.ami = ami != null ? ami : "n/a";
+				this.zone = zone != null ? zone : "";
+			}
+			else {
+				this.ami = "n/a";
+				this.zone = "";
+			}
+		}
+
+	}
+
+}
@@ -30,8 +30,8 @@ import com.netflix.appinfo.AmazonInfo;
 import com.netflix.appinfo.ApplicationInfoManager;
 import com.netflix.appinfo.DataCenterInfo;
 import com.netflix.appinfo.InstanceInfo;
-import com.netflix.discovery.shared.Application;
 import com.netflix.discovery.shared.Pair;
+import com.netflix.eureka.EurekaServerConfig;
 import com.netflix.eureka.EurekaServerContext;
 import com.netflix.eureka.EurekaServerContextHolder;
 import com.netflix.eureka.cluster.PeerEurekaNode;
@@ -41,9 +41,13 @@ import com.netflix.eureka.resources.StatusResource;
 import com.netflix.eureka.util.StatusInfo;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  * @author Spencer Gibb
@@ -53,11 +57,15 @@ import org.springframework.web.bind.annotation.RequestMethod;
 @RequestMapping("${eureka.dashboard.path:/}")
 public class EurekaController {
 
+	private static final int MAX_PAGE_SIZE = 500;
+
 	@Value("${eureka.dashboard.path:/}")
 	private String dashboardPath = "";
 
 	private ApplicationInfoManager applicationInfoManager;
 
+	private volatile DashboardModel dashboardModel;
+
 	public EurekaController(ApplicationInfoManager applicationInfoManager) {
 		this.applicationInfoManager = applicationInfoManager;
 	}
@@ -79,6 +87,27 @@ public class EurekaController {
 		return "eureka/status";
 	}
 
+	/**
+	 * A page of the applications shown by the dashboard, for the status page to load
+	 * them incrementally.
+	 * @param name a prefix of the application names, case insensitive
+	 * @param status the status of the instances to show
+	 * @param zone the availability zone of the instances to show
+	 * @param page the index of the page, starting at 0
+	 * @param size the maximum number of applications in the page
+	 * @return the page, with the total number of matching applications and instances
+	 * @see DashboardModel#page(String, InstanceInfo.InstanceStatus, String, int, int)
+	 */
+	@RequestMapping(value = "/api/apps", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public Map<String, Object> apps(@RequestParam(required = false) String name,
+			@RequestParam(required = false) InstanceInfo.InstanceStatus status,
+			@RequestParam(required = false) String zone, @RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "50") int size) {
+		return getDashboardModel().page(name, status, StringUtils.hasText(zone) ? zone : null, Math.max(page, 0),
+				Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+	}
+
 	@RequestMapping(value = "/lastn", method = RequestMethod.GET)
 	public String lastn(HttpServletRequest request, Map<String, Object> model) {
 		populateBase(request, model);
@@ -156,89 +185,36 @@ public class EurekaController {
 	}
 
 	private void populateApps(Map<String, Object> model) {
-		List<Application> sortedApplications = getRegistry().getSortedApplications();
-		ArrayList<Map<String, Object>> apps = new ArrayList<>();
-		for (Application app : sortedApplications) {
-			LinkedHashMap<String, Object> appData = new LinkedHashMap<>();
-			apps.add(appData);
-			appData.put("name", app.getName());
-			Map<String, Integer> amiCounts = new HashMap<>();
-			Map<InstanceInfo.InstanceStatus, List<Pair<String, String>>> instancesByStatus = new HashMap<>();
-			Map<String, Integer> zoneCounts = new HashMap<>();
-			for (InstanceInfo info : app.getInstances()) {
-				String id = info.getId();
-				String url = info.getStatusPageUrl();
-				InstanceInfo.InstanceStatus status = info.getStatus();
-				String ami = "n/a";
-				String zone = "";
-				if (info.getDataCenterInfo().getName() == DataCenterInfo.Name.Amazon) {
-					AmazonInfo dcInfo = (AmazonInfo) info.getDataCenterInfo();
-					ami = dcInfo.get(AmazonInfo.MetaDataKey.amiId);
-					zone = dcInfo.get(AmazonInfo.MetaDataKey.availabilityZone);
-				}
-				Integer count = amiCounts.get(ami);
-				if (count != null) {
-					amiCounts.put(ami, count + 1);
-				}
-				else {
-					amiCounts.put(ami, 1);
-				}
-				count = zoneCounts.get(zone);
-				if (count != null) {
-					zoneCounts.put(zone, count + 1);
-				}
-				else {
-					zoneCounts.put(zone, 1);
-				}
-				List<Pair<String, String>> list = instancesByStatus.computeIfAbsent(status, k -> new ArrayList<>());
-				list.add(new Pair<>(id, url));
-			}
-			appData.put("amiCounts", amiCounts.entrySet());
-			appData.put("zoneCounts", zoneCounts.entrySet());
-			ArrayList<Map<String, Object>> instanceInfos = new ArrayList<>();
-			appData.put("instanceInfos", instanceInfos);
-			for (Map.Entry<InstanceInfo.InstanceStatus, List<Pair<String, String>>> entry : instancesByStatus
-					.entrySet()) {
-				List<Pair<String, String>> value = entry.getValue();
-				InstanceInfo.InstanceStatus status = entry.getKey();
-				LinkedHashMap<String, Object> instanceData = new LinkedHashMap<>();
-				instanceInfos.add(instanceData);
-				instanceData.put("status", entry.getKey());
-				ArrayList<Map<String, Object>> instances = new ArrayList<>();
-				instanceData.put("instances", instances);
-				instanceData.put("isNotUp", status != InstanceInfo.InstanceStatus.UP);
-
-				// TODO
-
-				/*
-				 * if(status != InstanceInfo.InstanceStatus.UP){
-				 * buf.append("<font color=red size=+1><b>"); }
-				 * buf.append("<b>").append(status
-				 * .name()).append("</b> (").append(value.size()).append(") - ");
-				 * if(status != InstanceInfo.InstanceStatus.UP){
-				 * buf.append("</font></b>"); }
-				 */
+		model.put("apps", getDashboardModel().getApps());
+	}
 
-				for (Pair<String, String> p : value) {
-					LinkedHashMap<String, Object> instance = new LinkedHashMap<>();
-					instances.add(instance);
-					instance.put("id", p.first());
-					String url = p.second();
-					instance.put("url", url);
-					boolean isHref = url != null && url.startsWith("http");
-					instance.put("isHref", isHref);
-					/*
-					 * String id = p.first(); String url = p.second(); if(url != null &&
-					 * url.startsWith("http")){
-					 * buf.append("<a href=\"").append(url).append("\">"); }else { url =
-					 * null; } buf.append(id); if(url != null){ buf.append("</a>"); }
-					 * buf.append(", ");
-					 */
-				}
+	/**
+	 * The applications shown by the dashboard, read once per
+	 * {@link InstanceRegistry#getRegistryVersion() registry version} and shared by all
+	 * page views and API calls. When the registry includes remote regions, whose changes
+	 * do not affect the registry version, they are also read again once
+	 * {@link EurekaServerConfig#getResponseCacheUpdateIntervalMs()} has elapsed.
+	 * @return the model of the applications of the registry
+	 */
+	protected DashboardModel getDashboardModel() {
+		PeerAwareInstanceRegistry registry = getRegistry();
+		if (!(registry instanceof InstanceRegistry)) {
+			return new DashboardModel(-1, registry.getSortedApplications());
+		}
+		DashboardModel model = this.dashboardModel;
+		if (model != null && model.isCurrent(((InstanceRegistry) registry).getRegistryVersion(),
+				getServerContext().getServerConfig())) {
+			return model;
+		}
+		synchronized (this) {
+			model = this.dashboardModel;
+			long version = ((InstanceRegistry) registry).getRegistryVersion();
+			if (model == null || !model.isCurrent(version, getServerContext().getServerConfig())) {
+				model = new DashboardModel(version, registry.getSortedApplications());
+				this.dashboardModel = model;
 			}
-			// out.println("<td>" + buf.toString() + "</td></tr>");
+			return model;
 		}
-		model.put("apps", apps);
 	}
 
 	private void populateInstanceInfo(Map<String, Object> model, StatusInfo statusInfo) {
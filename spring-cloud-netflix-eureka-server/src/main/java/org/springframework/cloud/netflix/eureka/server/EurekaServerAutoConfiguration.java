@@ -16,11 +16,20 @@
 
 package org.springframework.cloud.netflix.eureka.server;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import javax.servlet.Filter;
 import javax.ws.rs.Path;
@@ -36,35 +45,45 @@ import com.netflix.discovery.converters.wrappers.CodecWrappers;
 import com.netflix.eureka.DefaultEurekaServerContext;
 import com.netflix.eureka.EurekaServerConfig;
 import com.netflix.eureka.EurekaServerContext;
+import com.netflix.eureka.cluster.HttpReplicationClient;
 import com.netflix.eureka.cluster.PeerEurekaNode;
 import com.netflix.eureka.cluster.PeerEurekaNodes;
 import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
 import com.netflix.eureka.resources.DefaultServerCodecs;
 import com.netflix.eureka.resources.ServerCodecs;
-import com.netflix.eureka.transport.JerseyReplicationClient;
 import com.sun.jersey.api.core.DefaultResourceConfig;
 import com.sun.jersey.spi.container.servlet.ServletContainer;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.cloud.client.actuator.HasFeatures;
 import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.util.ClassUtils;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -106,6 +125,11 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 	 */
 	public static final CloudJacksonJson JACKSON_JSON = new CloudJacksonJson();
 
+	/**
+	 * A {@link CloudJacksonSmile} instance.
+	 */
+	public static final CloudJacksonSmile JACKSON_SMILE = new CloudJacksonSmile();
+
 	@Bean
 	public HasFeatures eurekaServerFeature() {
 		return HasFeatures.namedFeature("Eureka Server", EurekaServerAutoConfiguration.class);
@@ -119,6 +143,7 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 
 	static {
 		CodecWrappers.registerWrapper(JACKSON_JSON);
+		CodecWrappers.registerWrapper(JACKSON_SMILE);
 		EurekaJacksonCodec.setInstance(JACKSON_JSON.getCodec());
 	}
 
@@ -144,19 +169,134 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 	}
 
 	@Bean
-	public PeerAwareInstanceRegistry peerAwareInstanceRegistry(ServerCodecs serverCodecs) {
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "async-events.enabled")
+	public AsyncRegistryEventPublisher asyncRegistryEventPublisher(ApplicationEventPublisher publisher) {
+		InstanceRegistryProperties.AsyncEvents asyncEvents = this.instanceRegistryProperties.getAsyncEvents();
+		return new AsyncRegistryEventPublisher(publisher, asyncEvents.getQueueCapacity(),
+				asyncEvents.getBatchSize(), asyncEvents.getWorkerThreads(), asyncEvents.getOverflowPolicy());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "change-stream.enabled")
+	public RegistryChangeStream registryChangeStream(ServerCodecs serverCodecs,
+			ObjectProvider<PeerAwareInstanceRegistry> registry) {
+		InstanceRegistryProperties.ChangeStream changeStream = this.instanceRegistryProperties.getChangeStream();
+		RegistryChangeStream stream = new RegistryChangeStream(serverCodecs.getFullJsonCodec(),
+				changeStream.getQueueCapacity(), changeStream.getHistory(), changeStream.getHeartbeatInterval());
+		stream.setSubscriberBufferSize(changeStream.getSubscriberBufferSize());
+		// looked up lazily, the registry is created with the stream as a listener
+		stream.setRegistryEpoch(() -> ((InstanceRegistry) registry.getObject()).getRegistryEpoch());
+		return stream;
+	}
+
+	/**
+	 * Register the filter serving the stream of registry changes ahead of the Jersey
+	 * filter.
+	 * @param registryChangeStream the stream of registry changes
+	 * @return a {@link RegistryChangeStream} {@link FilterRegistrationBean}
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "change-stream.enabled")
+	public FilterRegistrationBean<?> registryChangeStreamRegistration(RegistryChangeStream registryChangeStream) {
+		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
+		bean.setFilter(registryChangeStream);
+		bean.setAsyncSupported(true);
+		bean.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+		bean.setUrlPatterns(Collections.singletonList(RegistryChangeStream.PATH));
+
+		return bean;
+	}
+
+	@Bean
+	public PeerAwareInstanceRegistry peerAwareInstanceRegistry(ServerCodecs serverCodecs,
+			ObjectProvider<AsyncRegistryEventPublisher> asyncRegistryEventPublisher,
+			ObjectProvider<RegistryChangeListener> registryChangeListeners) {
 		this.eurekaClient.getApplications(); // force initialization
-		return new InstanceRegistry(this.eurekaServerConfig, this.eurekaClientConfig, serverCodecs, this.eurekaClient,
+		InstanceRegistry registry = new InstanceRegistry(this.eurekaServerConfig, this.eurekaClientConfig,
+				serverCodecs, this.eurekaClient,
 				this.instanceRegistryProperties.getExpectedNumberOfClientsSendingRenews(),
 				this.instanceRegistryProperties.getDefaultOpenForTrafficCount());
+		asyncRegistryEventPublisher.ifAvailable(registry::setEventPublisher);
+		registryChangeListeners.orderedStream().forEach(registry::addRegistryChangeListener);
+		InstanceRegistryProperties.RenewedEvents renewedEvents = this.instanceRegistryProperties.getRenewedEvents();
+		switch (renewedEvents.getMode()) {
+		case SAMPLED:
+			registry.setRenewedEventSampleRate(renewedEvents.getSampleRate());
+			break;
+		case SUMMARY:
+			registry.setRenewalSummaryInterval(renewedEvents.getSummaryInterval());
+			break;
+		default:
+			break;
+		}
+		if (this.instanceRegistryProperties.getLeaseExpiryWheel().isEnabled()) {
+			registry.setLeaseExpiryWheelTick(this.instanceRegistryProperties.getLeaseExpiryWheel().getTick());
+		}
+		return registry;
 	}
 
 	@Bean
 	@ConditionalOnMissingBean
-	public PeerEurekaNodes peerEurekaNodes(PeerAwareInstanceRegistry registry, ServerCodecs serverCodecs,
+	public ReplicationClientFactory replicationClientFactory(ServerCodecs serverCodecs,
 			ReplicationClientAdditionalFilters replicationClientAdditionalFilters) {
-		return new RefreshablePeerEurekaNodes(registry, this.eurekaServerConfig, this.eurekaClientConfig, serverCodecs,
-				this.applicationInfoManager, replicationClientAdditionalFilters);
+		JerseyReplicationClientFactory factory = new JerseyReplicationClientFactory(this.eurekaServerConfig,
+				serverCodecs, replicationClientAdditionalFilters);
+		factory.setEncodingFilters(
+				replicationEncodingFilters(this.instanceRegistryProperties.getReplication(), serverCodecs));
+		return factory;
+	}
+
+	/**
+	 * Resolve the {@link ReplicationEncodingFilter} of each peer from the replication
+	 * settings, overridden by the ones of the peer host if any.
+	 * @param replication the replication settings
+	 * @param serverCodecs the codecs of the server
+	 * @return the encoding filter to use for the URL of a peer, or null for the one of
+	 * Eureka
+	 */
+	static Function<String, ReplicationEncodingFilter> replicationEncodingFilters(
+			InstanceRegistryProperties.Replication replication, ServerCodecs serverCodecs) {
+		CodecWrapper codec = replication.isCompactBodies() ? serverCodecs.getCompactJsonCodec()
+				: serverCodecs.getFullJsonCodec();
+		InstanceRegistryProperties.Replication.Compression compression = replication.getCompression();
+		return peerEurekaNodeUrl -> {
+			InstanceRegistryProperties.Replication.PeerCompression peer = compression.getPeers()
+					.get(PeerEurekaNodes.hostFromUrl(peerEurekaNodeUrl));
+			ReplicationEncodingFilter.Compression algorithm = peer != null && peer.getAlgorithm() != null
+					? peer.getAlgorithm() : compression.getAlgorithm();
+			int minSize = peer != null && peer.getMinSize() != null ? peer.getMinSize() : compression.getMinSize();
+			if (algorithm == ReplicationEncodingFilter.Compression.NONE && !replication.isCompactBodies()) {
+				return null;
+			}
+			return new ReplicationEncodingFilter(codec, algorithm, minSize);
+		};
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "replication.circuit-breaker.enabled")
+	public PeerCircuitBreaker peerCircuitBreaker(PeerAwareInstanceRegistry registry) {
+		InstanceRegistryProperties.Replication.CircuitBreaker circuitBreaker = this.instanceRegistryProperties
+				.getReplication().getCircuitBreaker();
+		return new PeerCircuitBreaker(registry, circuitBreaker.getFailureThreshold(),
+				circuitBreaker.getSlowCallThreshold(), circuitBreaker.getOpenDuration());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PeerEurekaNodes peerEurekaNodes(PeerAwareInstanceRegistry registry, ServerCodecs serverCodecs,
+			ReplicationClientAdditionalFilters replicationClientAdditionalFilters,
+			ReplicationClientFactory replicationClientFactory,
+			ObjectProvider<PeerCircuitBreaker> peerCircuitBreaker) {
+		RefreshablePeerEurekaNodes peerEurekaNodes = new RefreshablePeerEurekaNodes(registry, this.eurekaServerConfig,
+				this.eurekaClientConfig, serverCodecs, this.applicationInfoManager, replicationClientAdditionalFilters,
+				replicationClientFactory);
+		peerCircuitBreaker.ifAvailable(peerEurekaNodes::setCircuitBreaker);
+		InstanceRegistryProperties.Replication.PriorityLanes priorityLanes = this.instanceRegistryProperties
+				.getReplication().getPriorityLanes();
+		if (priorityLanes.isEnabled()) {
+			peerEurekaNodes.setPriorityLanes(priorityLanes.getMembershipWeight(), priorityLanes.getRenewalWeight());
+		}
+		return peerEurekaNodes;
 	}
 
 	@Bean
@@ -167,11 +307,53 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 				this.applicationInfoManager);
 	}
 
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "snapshot.enabled")
+	public RegistrySnapshotStore registrySnapshotStore() {
+		return new RegistrySnapshotStore(Paths.get(this.instanceRegistryProperties.getSnapshot().getFile()),
+				JACKSON_JSON);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "parallel-sync.enabled")
+	public ParallelRegistrySync parallelRegistrySync(PeerAwareInstanceRegistry registry,
+			ReplicationClientFactory replicationClientFactory) {
+		return new ParallelRegistrySync(registry, replicationClientFactory::create,
+				this.instanceRegistryProperties.getParallelSync().getTimeout());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "anti-entropy.enabled")
+	public RegistryAntiEntropy registryAntiEntropy(PeerAwareInstanceRegistry registry,
+			PeerEurekaNodes peerEurekaNodes, ReplicationClientAdditionalFilters replicationClientAdditionalFilters,
+			ReplicationClientFactory replicationClientFactory) {
+		RegistryAntiEntropy antiEntropy = new RegistryAntiEntropy(registry, peerEurekaNodes, this.eurekaServerConfig,
+				replicationClientAdditionalFilters, replicationClientFactory::create,
+				this.instanceRegistryProperties.getAntiEntropy().getInterval());
+		if (registry instanceof InstanceRegistry) {
+			((InstanceRegistry) registry).addRegistryChangeListener(antiEntropy::registryChanged);
+		}
+		return antiEntropy;
+	}
+
 	@Bean
 	public EurekaServerBootstrap eurekaServerBootstrap(PeerAwareInstanceRegistry registry,
-			EurekaServerContext serverContext) {
-		return new EurekaServerBootstrap(this.applicationInfoManager, this.eurekaClientConfig, this.eurekaServerConfig,
-				registry, serverContext);
+			EurekaServerContext serverContext, ObjectProvider<RegistrySnapshotStore> registrySnapshotStore,
+			ObjectProvider<ParallelRegistrySync> parallelRegistrySync,
+			ObjectProvider<RegistryAntiEntropy> registryAntiEntropy) {
+		EurekaServerBootstrap bootstrap = new EurekaServerBootstrap(this.applicationInfoManager,
+				this.eurekaClientConfig, this.eurekaServerConfig, registry, serverContext);
+		parallelRegistrySync.ifAvailable(bootstrap::setParallelRegistrySync);
+		registryAntiEntropy.ifAvailable(bootstrap::setRegistryAntiEntropy);
+		registrySnapshotStore.ifAvailable(store -> {
+			bootstrap.setRegistrySnapshotStore(store);
+			bootstrap.setRegistrySnapshotInterval(this.instanceRegistryProperties.getSnapshot().getInterval());
+			bootstrap.setRegistrySnapshotMaxAge(this.instanceRegistryProperties.getSnapshot().getMaxAge());
+		});
+		return bootstrap;
 	}
 
 	/**
@@ -189,6 +371,112 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 		return bean;
 	}
 
+	/**
+	 * Register the filter decoding compressed request bodies, like the ones of
+	 * replication requests, ahead of the Jersey filter.
+	 * @return a {@link RequestContentDecodingFilter} {@link FilterRegistrationBean}
+	 */
+	@Bean
+	@Conditional(OnReplicationCompressionCondition.class)
+	public FilterRegistrationBean<?> requestContentDecodingFilterRegistration() {
+		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
+		bean.setFilter(new RequestContentDecodingFilter());
+		bean.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+		bean.setUrlPatterns(Collections.singletonList(EurekaConstants.DEFAULT_PREFIX + "/*"));
+
+		return bean;
+	}
+
+	@Bean
+	@Conditional(OnRegistryPayloadCondition.class)
+	public RegistryPayloadCache registryPayloadCache(PeerAwareInstanceRegistry registry, ServerCodecs serverCodecs) {
+		RegistryPayloadCache payloadCache = new RegistryPayloadCache((InstanceRegistry) registry,
+				this.eurekaServerConfig, serverCodecs, JACKSON_SMILE);
+		payloadCache.setMaxEntries(this.instanceRegistryProperties.getPayloadCache().getMaxEntries());
+		payloadCache.setAppHashCodes(this.instanceRegistryProperties.getAppHashCodes().isEnabled());
+		return payloadCache;
+	}
+
+	/**
+	 * Register the filter serving registry fetches from the payload cache ahead of the
+	 * Jersey filter.
+	 * @param registry the registry to serve
+	 * @param payloadCache the cache of encoded registry views
+	 * @return a {@link RegistryPayloadFilter} {@link FilterRegistrationBean}
+	 */
+	@Bean
+	@Conditional(OnRegistryPayloadCondition.class)
+	public FilterRegistrationBean<?> registryPayloadFilterRegistration(PeerAwareInstanceRegistry registry,
+			RegistryPayloadCache payloadCache) {
+		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
+		RegistryPayloadFilter filter = new RegistryPayloadFilter((InstanceRegistry) registry, this.eurekaServerConfig,
+				payloadCache, this.instanceRegistryProperties.getPayloadCache().isEnabled());
+		filter.setSmile(this.instanceRegistryProperties.getSmile().isEnabled());
+		InstanceRegistryProperties.StreamingFetches streamingFetches = this.instanceRegistryProperties
+				.getStreamingFetches();
+		if (streamingFetches.isEnabled()) {
+			filter.setStreamingFlushInterval(streamingFetches.getFlushInterval());
+		}
+		bean.setFilter(filter);
+		bean.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+		bean.setUrlPatterns(Arrays.asList(EurekaConstants.DEFAULT_PREFIX + "/apps",
+				EurekaConstants.DEFAULT_PREFIX + "/apps/*", EurekaConstants.DEFAULT_PREFIX + "/vips/*",
+				EurekaConstants.DEFAULT_PREFIX + "/svips/*"));
+
+		return bean;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "journal.enabled")
+	public RegistryChangeJournal registryChangeJournal() {
+		return new RegistryChangeJournal(this.instanceRegistryProperties.getJournal().getCapacity());
+	}
+
+	/**
+	 * Register the filter answering delta fetches made with a registry version, holding
+	 * them until the registry changes, ahead of the payload and Jersey filters.
+	 * @param registry the registry to serve the delta of
+	 * @param serverCodecs the codecs to encode the delta with
+	 * @param journal the journal to take exact changes from, if enabled
+	 * @return a {@link RegistryDeltaLongPollFilter} {@link FilterRegistrationBean}
+	 */
+	@Bean
+	@Conditional(OnDeltaSinceCondition.class)
+	public FilterRegistrationBean<?> registryDeltaLongPollFilterRegistration(PeerAwareInstanceRegistry registry,
+			ServerCodecs serverCodecs, ObjectProvider<RegistryChangeJournal> journal) {
+		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
+		InstanceRegistryProperties.LongPoll longPoll = this.instanceRegistryProperties.getLongPoll();
+		RegistryDeltaLongPollFilter filter = new RegistryDeltaLongPollFilter((InstanceRegistry) registry,
+				this.eurekaServerConfig, serverCodecs, longPoll.isEnabled() ? longPoll.getTimeout() : Duration.ZERO);
+		journal.ifAvailable(filter::setJournal);
+		filter.setAppHashCodes(this.instanceRegistryProperties.getAppHashCodes().isEnabled());
+		// added after the journal, which has then recorded the changes the filter is told of
+		((InstanceRegistry) registry).addRegistryChangeListener(filter);
+		bean.setFilter(filter);
+		bean.setAsyncSupported(true);
+		bean.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+		bean.setUrlPatterns(Collections.singletonList(RegistryDeltaLongPollFilter.PATH));
+
+		return bean;
+	}
+
+	/**
+	 * Register the filter serving the registry digests the peers repair their registry
+	 * from.
+	 * @param registry the registry to serve the digests of
+	 * @return a {@link RegistryDigestFilter} {@link FilterRegistrationBean}
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "anti-entropy.enabled")
+	public FilterRegistrationBean<?> registryDigestFilterRegistration(PeerAwareInstanceRegistry registry) {
+		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
+		bean.setFilter(new RegistryDigestFilter((InstanceRegistry) registry));
+		bean.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+		bean.setUrlPatterns(Collections.singletonList(RegistryDigestFilter.PATH));
+
+		return bean;
+	}
+
 	/**
 	 * Construct a Jersey {@link javax.ws.rs.core.Application} with all the resources
 	 * required by the Eureka server.
@@ -240,6 +528,27 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 		return bean;
 	}
 
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(name = { "org.springframework.web.reactive.function.client.WebClient",
+			"reactor.netty.http.client.HttpClient" })
+	@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "replication.client",
+			havingValue = "webclient")
+	protected static class WebClientReplicationConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public ReplicationClientFactory webClientReplicationClientFactory(EurekaServerConfig serverConfig,
+				ServerCodecs serverCodecs, ReplicationClientAdditionalFilters replicationClientAdditionalFilters,
+				InstanceRegistryProperties instanceRegistryProperties) {
+			WebClientReplicationClientFactory factory = new WebClientReplicationClientFactory(serverConfig,
+					serverCodecs, replicationClientAdditionalFilters);
+			factory.setEncodingFilters(
+					replicationEncodingFilters(instanceRegistryProperties.getReplication(), serverCodecs));
+			return factory;
+		}
+
+	}
+
 	@Configuration(proxyBeanMethods = false)
 	protected static class EurekaServerConfigBeanConfiguration {
 
@@ -273,26 +582,72 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 
 		private ReplicationClientAdditionalFilters replicationClientAdditionalFilters;
 
+		private ReplicationClientFactory replicationClientFactory;
+
+		private PeerCircuitBreaker circuitBreaker;
+
+		private int membershipWeight;
+
+		private int renewalWeight;
+
 		RefreshablePeerEurekaNodes(final PeerAwareInstanceRegistry registry, final EurekaServerConfig serverConfig,
 				final EurekaClientConfig clientConfig, final ServerCodecs serverCodecs,
 				final ApplicationInfoManager applicationInfoManager,
 				final ReplicationClientAdditionalFilters replicationClientAdditionalFilters) {
+			this(registry, serverConfig, clientConfig, serverCodecs, applicationInfoManager,
+					replicationClientAdditionalFilters, new JerseyReplicationClientFactory(serverConfig, serverCodecs,
+							replicationClientAdditionalFilters));
+		}
+
+		RefreshablePeerEurekaNodes(final PeerAwareInstanceRegistry registry, final EurekaServerConfig serverConfig,
+				final EurekaClientConfig clientConfig, final ServerCodecs serverCodecs,
+				final ApplicationInfoManager applicationInfoManager,
+				final ReplicationClientAdditionalFilters replicationClientAdditionalFilters,
+				final ReplicationClientFactory replicationClientFactory) {
 			super(registry, serverConfig, clientConfig, serverCodecs, applicationInfoManager);
 			this.replicationClientAdditionalFilters = replicationClientAdditionalFilters;
+			this.replicationClientFactory = replicationClientFactory;
+		}
+
+		/**
+		 * Stop replicating to failing peers until they recover.
+		 * @param circuitBreaker the circuit breaker to send replication batches through
+		 */
+		void setCircuitBreaker(PeerCircuitBreaker circuitBreaker) {
+			this.circuitBreaker = circuitBreaker;
+		}
+
+		/**
+		 * Replicate heartbeats and membership changes to peers through separate lanes.
+		 * @param membershipWeight the weight of the lane of membership changes
+		 * @param renewalWeight the weight of the lane of heartbeats
+		 * @see PrioritizedPeerEurekaNode
+		 */
+		void setPriorityLanes(int membershipWeight, int renewalWeight) {
+			this.membershipWeight = membershipWeight;
+			this.renewalWeight = renewalWeight;
 		}
 
 		@Override
 		protected PeerEurekaNode createPeerEurekaNode(String peerEurekaNodeUrl) {
-			JerseyReplicationClient replicationClient = JerseyReplicationClient.createReplicationClient(serverConfig,
-					serverCodecs, peerEurekaNodeUrl);
-
-			this.replicationClientAdditionalFilters.getFilters().forEach(replicationClient::addReplicationClientFilter);
+			HttpReplicationClient replicationClient = this.replicationClientFactory.create(peerEurekaNodeUrl);
+			AtomicReference<PeerEurekaNode> node = new AtomicReference<>();
+			if (this.circuitBreaker != null) {
+				replicationClient = this.circuitBreaker.guarding(peerEurekaNodeUrl, replicationClient, node::get);
+			}
 
 			String targetHost = hostFromUrl(peerEurekaNodeUrl);
 			if (targetHost == null) {
 				targetHost = "host";
 			}
-			return new PeerEurekaNode(registry, targetHost, peerEurekaNodeUrl, replicationClient, serverConfig);
+			if (this.membershipWeight > 0) {
+				node.set(new PrioritizedPeerEurekaNode(registry, targetHost, peerEurekaNodeUrl, replicationClient,
+						serverConfig, this.membershipWeight, this.renewalWeight));
+			}
+			else {
+				node.set(new PeerEurekaNode(registry, targetHost, peerEurekaNodeUrl, replicationClient, serverConfig));
+			}
+			return node.get();
 		}
 
 		@Override
@@ -302,6 +657,47 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 			}
 		}
 
+		/*
+		 * Peer nodes are only created and shut down for the URLs added to or removed
+		 * from the peer set, so URLs equivalent to the one of an existing node are
+		 * resolved to it, for the node to keep its connections and queued tasks.
+		 */
+		@Override
+		protected List<String> resolvePeerUrls() {
+			Map<String, String> existingUrls = new HashMap<>();
+			for (PeerEurekaNode node : getPeerEurekaNodes()) {
+				existingUrls.put(normalizePeerUrl(node.getServiceUrl()), node.getServiceUrl());
+			}
+			List<String> peerUrls = new ArrayList<>();
+			for (String peerUrl : super.resolvePeerUrls()) {
+				peerUrls.add(existingUrls.getOrDefault(normalizePeerUrl(peerUrl), peerUrl));
+			}
+			return peerUrls;
+		}
+
+		/*
+		 * Lower case scheme and host, no default port and a trailing slash.
+		 */
+		static String normalizePeerUrl(String peerUrl) {
+			try {
+				URI uri = new URI(peerUrl.trim());
+				String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : null;
+				String host = uri.getHost() != null ? uri.getHost().toLowerCase() : null;
+				int port = uri.getPort();
+				if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+					port = -1;
+				}
+				String path = uri.getPath();
+				if (path == null || !path.endsWith("/")) {
+					path = (path != null ? path : "") + "/";
+				}
+				return new URI(scheme, uri.getUserInfo(), host, port, path, uri.getQuery(), null).toString();
+			}
+			catch (URISyntaxException ex) {
+				return peerUrl;
+			}
+		}
+
 		/*
 		 * Check whether specific properties have changed.
 		 */
@@ -330,6 +726,65 @@ public class EurekaServerAutoConfiguration implements WebMvcConfigurer {
 
 	}
 
+	private static class OnReplicationCompressionCondition extends SpringBootCondition {
+
+		@Override
+		public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+			Binder binder = Binder.get(context.getEnvironment());
+			// any setting counts, algorithm none included, to decode before compressing
+			if (binder.bind(InstanceRegistryProperties.PREFIX + ".replication.compression",
+					InstanceRegistryProperties.Replication.Compression.class).isBound()) {
+				return ConditionOutcome.match("replication compression is configured");
+			}
+			if (binder.bind("eureka.server.enable-replicated-request-compression", Boolean.class).orElse(false)) {
+				return ConditionOutcome.match("replicated request compression is enabled");
+			}
+			return ConditionOutcome.noMatch("replication compression is not configured");
+		}
+
+	}
+
+	private static class OnRegistryPayloadCondition extends AnyNestedCondition {
+
+		OnRegistryPayloadCondition() {
+			super(ConfigurationPhase.REGISTER_BEAN);
+		}
+
+		@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "payload-cache.enabled")
+		static class PayloadCache {
+
+		}
+
+		@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "smile.enabled")
+		static class Smile {
+
+		}
+
+		@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "streaming-fetches.enabled")
+		static class StreamingFetches {
+
+		}
+
+	}
+
+	private static class OnDeltaSinceCondition extends AnyNestedCondition {
+
+		OnDeltaSinceCondition() {
+			super(ConfigurationPhase.REGISTER_BEAN);
+		}
+
+		@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "long-poll.enabled")
+		static class LongPoll {
+
+		}
+
+		@ConditionalOnProperty(prefix = InstanceRegistryProperties.PREFIX, name = "journal.enabled")
+		static class Journal {
+
+		}
+
+	}
+
 	class CloudServerCodecs extends DefaultServerCodecs {
 
 		CloudServerCodecs(EurekaServerConfig serverConfig) {
@@ -16,11 +16,20 @@
 
 package org.springframework.cloud.netflix.eureka.server;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 import javax.servlet.ServletContext;
 
 import com.netflix.appinfo.ApplicationInfoManager;
 import com.netflix.appinfo.DataCenterInfo;
 import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.LeaseInfo;
 import com.netflix.discovery.EurekaClientConfig;
 import com.netflix.discovery.converters.JsonXStream;
 import com.netflix.discovery.converters.XmlXStream;
@@ -30,6 +39,7 @@ import com.netflix.eureka.EurekaServerContextHolder;
 import com.netflix.eureka.V1AwareInstanceInfoConverter;
 import com.netflix.eureka.aws.AwsBinder;
 import com.netflix.eureka.aws.AwsBinderDelegate;
+import com.netflix.eureka.cluster.PeerEurekaNode;
 import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
 import com.netflix.eureka.util.EurekaMonitors;
 import com.thoughtworks.xstream.XStream;
@@ -55,6 +65,18 @@ public class EurekaServerBootstrap {
 
 	protected volatile AwsBinder awsBinder;
 
+	protected RegistrySnapshotStore registrySnapshotStore;
+
+	protected Duration registrySnapshotInterval = Duration.ofSeconds(30);
+
+	protected Duration registrySnapshotMaxAge = Duration.ofMinutes(10);
+
+	private ScheduledExecutorService registrySnapshotScheduler;
+
+	protected ParallelRegistrySync parallelRegistrySync;
+
+	protected RegistryAntiEntropy registryAntiEntropy;
+
 	public EurekaServerBootstrap(ApplicationInfoManager applicationInfoManager, EurekaClientConfig eurekaClientConfig,
 			EurekaServerConfig eurekaServerConfig, PeerAwareInstanceRegistry registry,
 			EurekaServerContext serverContext) {
@@ -65,6 +87,40 @@ public class EurekaServerBootstrap {
 		this.serverContext = serverContext;
 	}
 
+	/**
+	 * Keep a snapshot of the local registry in the given store and start from it when no
+	 * peer has a registry to copy.
+	 * @param registrySnapshotStore the store of registry snapshots
+	 */
+	public void setRegistrySnapshotStore(RegistrySnapshotStore registrySnapshotStore) {
+		this.registrySnapshotStore = registrySnapshotStore;
+	}
+
+	public void setRegistrySnapshotInterval(Duration registrySnapshotInterval) {
+		this.registrySnapshotInterval = registrySnapshotInterval;
+	}
+
+	public void setRegistrySnapshotMaxAge(Duration registrySnapshotMaxAge) {
+		this.registrySnapshotMaxAge = registrySnapshotMaxAge;
+	}
+
+	/**
+	 * Copy the registry from all peers at once on startup instead of using
+	 * {@link PeerAwareInstanceRegistry#syncUp()}.
+	 * @param parallelRegistrySync the parallel registry sync
+	 */
+	public void setParallelRegistrySync(ParallelRegistrySync parallelRegistrySync) {
+		this.parallelRegistrySync = parallelRegistrySync;
+	}
+
+	/**
+	 * Periodically repair the registry from the ones of the peers once open for traffic.
+	 * @param registryAntiEntropy the registry anti-entropy task
+	 */
+	public void setRegistryAntiEntropy(RegistryAntiEntropy registryAntiEntropy) {
+		this.registryAntiEntropy = registryAntiEntropy;
+	}
+
 	public void contextInitialized(ServletContext context) {
 		try {
 			initEurekaEnvironment();
@@ -114,8 +170,15 @@ public class EurekaServerBootstrap {
 		log.info("Initialized server context");
 
 		// Copy registry from neighboring eureka node
-		int registryCount = this.registry.syncUp();
+		int registryCount = this.parallelRegistrySync != null ? syncUpInParallel() : this.registry.syncUp();
+		if (registryCount == 0 && this.registrySnapshotStore != null) {
+			registryCount = restoreRegistrySnapshot();
+		}
 		this.registry.openForTraffic(this.applicationInfoManager, registryCount);
+		startRegistrySnapshots();
+		if (this.registryAntiEntropy != null) {
+			this.registryAntiEntropy.start();
+		}
 
 		// Register all monitoring statistics.
 		EurekaMonitors.registerAllStats();
@@ -127,6 +190,13 @@ public class EurekaServerBootstrap {
 	 * {@link EurekaServerContext#shutdown()} may result in an exception
 	 */
 	protected void destroyEurekaServerContext() throws Exception {
+		if (this.parallelRegistrySync != null) {
+			this.parallelRegistrySync.shutdown();
+		}
+		if (this.registryAntiEntropy != null) {
+			this.registryAntiEntropy.stop();
+		}
+		stopRegistrySnapshots();
 		EurekaMonitors.shutdown();
 		if (this.awsBinder != null) {
 			this.awsBinder.shutdown();
@@ -136,6 +206,85 @@ public class EurekaServerBootstrap {
 		}
 	}
 
+	protected int syncUpInParallel() throws InterruptedException {
+		List<String> peerUrls = this.serverContext.getPeerEurekaNodes().getPeerEurekaNodes().stream()
+				.map(PeerEurekaNode::getServiceUrl).collect(Collectors.toList());
+		return this.parallelRegistrySync.syncUp(peerUrls);
+	}
+
+	/**
+	 * Register the instances of the stored registry snapshot the way instances copied
+	 * from a peer are registered. Their leases are provisional: an instance that does not
+	 * renew its lease within one lease duration is evicted as usual, and registrations
+	 * replicated by peers replace instances with an older dirty timestamp.
+	 * @return the number of restored instances
+	 */
+	protected int restoreRegistrySnapshot() {
+		RegistrySnapshotStore.Snapshot snapshot;
+		try {
+			snapshot = this.registrySnapshotStore.read();
+		}
+		catch (IOException ex) {
+			log.warn("Cannot read registry snapshot", ex);
+			return 0;
+		}
+		if (snapshot == null) {
+			return 0;
+		}
+		long age = System.currentTimeMillis() - snapshot.getTimestamp();
+		if (this.registrySnapshotMaxAge != null && age > this.registrySnapshotMaxAge.toMillis()) {
+			log.info("Ignoring registry snapshot taken " + age + "ms ago");
+			return 0;
+		}
+		int count = 0;
+		for (InstanceInfo info : snapshot.getInstances()) {
+			LeaseInfo leaseInfo = info.getLeaseInfo();
+			int leaseDuration = leaseInfo != null ? leaseInfo.getDurationInSecs() : LeaseInfo.DEFAULT_LEASE_DURATION;
+			this.registry.register(info, leaseDuration, true);
+			count++;
+		}
+		log.info("Restored " + count + " instances from registry snapshot " + this.registrySnapshotStore.getFile());
+		return count;
+	}
+
+	protected void startRegistrySnapshots() {
+		if (this.registrySnapshotStore == null) {
+			return;
+		}
+		this.registrySnapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Eureka-RegistrySnapshotWriter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = this.registrySnapshotInterval.toMillis();
+		this.registrySnapshotScheduler.scheduleWithFixedDelay(this::writeRegistrySnapshot, interval, interval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	protected void stopRegistrySnapshots() throws InterruptedException {
+		if (this.registrySnapshotScheduler == null) {
+			return;
+		}
+		this.registrySnapshotScheduler.shutdownNow();
+		this.registrySnapshotScheduler.awaitTermination(5, TimeUnit.SECONDS);
+		this.registrySnapshotScheduler = null;
+		// the registry is about to be cleared, keep its final state
+		writeRegistrySnapshot();
+	}
+
+	protected void writeRegistrySnapshot() {
+		try {
+			int count = this.registrySnapshotStore.write(this.registry.getApplicationsFromLocalRegionOnly(),
+					System.currentTimeMillis());
+			if (log.isDebugEnabled()) {
+				log.debug("Wrote " + count + " instances to registry snapshot " + this.registrySnapshotStore.getFile());
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			log.warn("Cannot write registry snapshot", ex);
+		}
+	}
+
 	/**
 	 * Users can override to clean up the environment themselves.
 	 * @throws Exception - shutting down Eureka servers may result in an exception
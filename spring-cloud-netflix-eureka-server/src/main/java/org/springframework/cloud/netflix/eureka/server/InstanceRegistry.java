@@ -16,27 +16,46 @@
 
 package org.springframework.cloud.netflix.eureka.server;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.netflix.appinfo.ApplicationInfoManager;
 import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
 import com.netflix.discovery.EurekaClient;
 import com.netflix.discovery.EurekaClientConfig;
 import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
 import com.netflix.eureka.EurekaServerConfig;
 import com.netflix.eureka.lease.Lease;
 import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl;
 import com.netflix.eureka.resources.ServerCodecs;
+import com.netflix.eureka.util.EurekaMonitors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.BeansException;
+import org.springframework.cloud.netflix.eureka.ApplicationHashCodes;
 import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
 import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
 import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRenewalSummaryEvent;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.Assert;
 
 /**
  * @author Spencer Gibb
@@ -47,8 +66,33 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 
 	private ApplicationContext ctxt;
 
+	private ApplicationEventPublisher eventPublisher;
+
 	private int defaultOpenForTrafficCount;
 
+	/**
+	 * Instances currently held by this registry, keyed by application name and then by
+	 * instance id. Maintained by the register and cancel hooks so that renewals can look
+	 * up the renewed instance without copying the whole registry.
+	 */
+	private final Map<String, Map<String, InstanceInfo>> instances = new ConcurrentHashMap<>();
+
+	private double renewedEventSampleRate = 1.0d;
+
+	private Duration renewalSummaryInterval;
+
+	private RenewalSummaryAggregator renewalSummary;
+
+	private ScheduledExecutorService renewalSummaryScheduler;
+
+	private LeaseTracker leaseTracker;
+
+	private final AtomicLong registryVersion = new AtomicLong();
+
+	private final String registryEpoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+	private final List<RegistryChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
 	public InstanceRegistry(EurekaServerConfig serverConfig, EurekaClientConfig clientConfig, ServerCodecs serverCodecs,
 			EurekaClient eurekaClient, int expectedNumberOfClientsSendingRenews, int defaultOpenForTrafficCount) {
 		super(serverConfig, clientConfig, serverCodecs, eurekaClient);
@@ -62,6 +106,47 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 		this.ctxt = context;
 	}
 
+	/**
+	 * Publish registry events through the given publisher instead of the application
+	 * context, for example an {@link AsyncRegistryEventPublisher}.
+	 * @param eventPublisher the publisher to use
+	 */
+	public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Only publish an {@link EurekaInstanceRenewedEvent} for the given fraction of
+	 * renewals.
+	 * @param renewedEventSampleRate a value between 0 and 1
+	 */
+	public void setRenewedEventSampleRate(double renewedEventSampleRate) {
+		Assert.isTrue(renewedEventSampleRate >= 0 && renewedEventSampleRate <= 1,
+				"renewedEventSampleRate must be between 0 and 1");
+		this.renewedEventSampleRate = renewedEventSampleRate;
+	}
+
+	/**
+	 * Publish an {@link EurekaRenewalSummaryEvent} at the given interval instead of an
+	 * {@link EurekaInstanceRenewedEvent} for every renewal. Summaries start once the
+	 * registry is open for traffic.
+	 * @param renewalSummaryInterval the interval between two summaries
+	 */
+	public void setRenewalSummaryInterval(Duration renewalSummaryInterval) {
+		this.renewalSummaryInterval = renewalSummaryInterval;
+		this.renewalSummary = new RenewalSummaryAggregator();
+	}
+
+	/**
+	 * Schedule lease expiries on a {@link LeaseExpiryWheel} with the given tick and evict
+	 * expired leases found in its due buckets rather than by scanning the lease objects
+	 * of the registry.
+	 * @param tick the time covered by a bucket of the finest level of the wheel
+	 */
+	public void setLeaseExpiryWheelTick(Duration tick) {
+		this.leaseTracker = new LeaseExpiryWheel(tick.toMillis(), System.currentTimeMillis());
+	}
+
 	/**
 	 * If
 	 * {@link PeerAwareInstanceRegistryImpl#openForTraffic(ApplicationInfoManager, int)}
@@ -74,18 +159,98 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 	@Override
 	public void openForTraffic(ApplicationInfoManager applicationInfoManager, int count) {
 		super.openForTraffic(applicationInfoManager, count == 0 ? this.defaultOpenForTrafficCount : count);
+		if (this.renewalSummary != null && this.renewalSummaryScheduler == null) {
+			this.renewalSummaryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Eureka-RenewalSummaryPublisher");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long interval = this.renewalSummaryInterval.toMillis();
+			this.renewalSummaryScheduler.scheduleAtFixedRate(this::publishRenewalSummary, interval, interval,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		if (this.renewalSummaryScheduler != null) {
+			this.renewalSummaryScheduler.shutdownNow();
+		}
+		super.shutdown();
+	}
+
+	/**
+	 * Notify the given listener of the changes of the registry.
+	 * @param listener the listener to notify
+	 */
+	public void addRegistryChangeListener(RegistryChangeListener listener) {
+		this.changeListeners.add(listener);
+	}
+
+	/**
+	 * @return a number that changes whenever an instance is registered, cancelled or has
+	 * its status changed
+	 */
+	public long getRegistryVersion() {
+		return this.registryVersion.get();
+	}
+
+	/**
+	 * @return an identifier of this registry, which differs between servers and between
+	 * restarts of a server, telling whether a {@link #getRegistryVersion() registry
+	 * version} is one of this registry
+	 */
+	public String getRegistryEpoch() {
+		return this.registryEpoch;
+	}
+
+	/**
+	 * Get the current hash codes of the applications of the local region changed by a
+	 * delta, which clients compare with theirs to find out the applications to fetch
+	 * again when their registry does not reconcile with the delta.
+	 * @param delta the changes of the local region
+	 * @return the hash codes of the applications, by application name
+	 * @see ApplicationHashCodes#of(Application)
+	 */
+	public Map<String, String> getApplicationHashCodes(Applications delta) {
+		Map<String, String> hashCodes = new TreeMap<>();
+		for (Application application : delta.getRegisteredApplications()) {
+			hashCodes.put(application.getName(), ApplicationHashCodes.of(getApplication(application.getName(), false)));
+		}
+		return hashCodes;
 	}
 
 	@Override
 	public void register(InstanceInfo info, int leaseDuration, boolean isReplication) {
+		CloudJacksonJson.updateIfNeeded(info);
 		handleRegistration(info, leaseDuration, isReplication);
 		super.register(info, leaseDuration, isReplication);
+		index(info, leaseDuration);
 	}
 
 	@Override
 	public void register(final InstanceInfo info, final boolean isReplication) {
-		handleRegistration(info, resolveInstanceLeaseDuration(info), isReplication);
+		CloudJacksonJson.updateIfNeeded(info);
+		int leaseDuration = resolveInstanceLeaseDuration(info);
+		handleRegistration(info, leaseDuration, isReplication);
 		super.register(info, isReplication);
+		index(info, leaseDuration);
+	}
+
+	@Override
+	public boolean statusUpdate(String appName, String id, InstanceStatus newStatus, String lastDirtyTimestamp,
+			boolean isReplication) {
+		boolean updated = super.statusUpdate(appName, id, newStatus, lastDirtyTimestamp, isReplication);
+		changed(ActionType.MODIFIED, updated ? getInstanceByAppAndId(appName, id, false) : null);
+		return updated;
+	}
+
+	@Override
+	public boolean deleteStatusOverride(String appName, String id, InstanceStatus newStatus,
+			String lastDirtyTimestamp, boolean isReplication) {
+		boolean deleted = super.deleteStatusOverride(appName, id, newStatus, lastDirtyTimestamp, isReplication);
+		changed(ActionType.MODIFIED, deleted ? getInstanceByAppAndId(appName, id, false) : null);
+		return deleted;
 	}
 
 	@Override
@@ -96,33 +261,76 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 
 	@Override
 	public boolean renew(final String appName, final String serverId, boolean isReplication) {
-		log("renew " + appName + " serverId " + serverId + ", isReplication {}" + isReplication);
-		List<Application> applications = getSortedApplications();
-		for (Application input : applications) {
-			if (input.getName().equals(appName)) {
-				InstanceInfo instance = null;
-				for (InstanceInfo info : input.getInstances()) {
-					if (info.getId().equals(serverId)) {
-						instance = info;
-						break;
-					}
-				}
-				publishEvent(new EurekaInstanceRenewedEvent(this, appName, serverId, instance, isReplication));
-				break;
-			}
+		if (log.isDebugEnabled()) {
+			log.debug("renew " + appName + " serverId " + serverId + ", isReplication " + isReplication);
+		}
+		Map<String, InstanceInfo> appInstances = this.instances.get(appName);
+		if (appInstances != null) {
+			handleRenewal(appName, serverId, appInstances.get(serverId), isReplication);
+		}
+		boolean renewed = super.renew(appName, serverId, isReplication);
+		if (renewed && this.leaseTracker != null) {
+			this.leaseTracker.renew(appName, serverId, System.currentTimeMillis());
+		}
+		return renewed;
+	}
+
+	/**
+	 * Applies the same self-preservation limit as
+	 * {@link com.netflix.eureka.registry.AbstractInstanceRegistry#evict(long)}, but finds
+	 * expired leases through the {@link LeaseTracker} when one is in use.
+	 */
+	@Override
+	public void evict(long additionalLeaseMs) {
+		if (this.leaseTracker == null) {
+			super.evict(additionalLeaseMs);
+			return;
+		}
+		if (!isLeaseExpirationEnabled()) {
+			log("lease expiration is currently disabled");
+			return;
+		}
+		evict(this.leaseTracker.expired(System.currentTimeMillis(), additionalLeaseMs));
+	}
+
+	private void evict(List<? extends LeaseTracker.TrackedLease> expired) {
+		int registrySize = (int) getLocalRegistrySize();
+		int registrySizeThreshold = (int) (registrySize * this.serverConfig.getRenewalPercentThreshold());
+		int evictionLimit = registrySize - registrySizeThreshold;
+		int toEvict = Math.min(expired.size(), evictionLimit);
+		if (toEvict <= 0) {
+			return;
+		}
+		log.info("Evicting " + toEvict + " items (expired=" + expired.size() + ", evictionLimit=" + evictionLimit
+				+ ")");
+		// evict a random subset, so that whole applications do not disappear at once
+		Collections.shuffle(expired);
+		for (LeaseTracker.TrackedLease lease : expired.subList(0, toEvict)) {
+			EurekaMonitors.EXPIRED.increment();
+			log.warn("DS: Registry: expired lease for " + lease.getAppName() + "/" + lease.getId());
+			internalCancel(lease.getAppName(), lease.getId(), false);
 		}
-		return super.renew(appName, serverId, isReplication);
 	}
 
 	@Override
 	protected boolean internalCancel(String appName, String id, boolean isReplication) {
 		handleCancelation(appName, id, isReplication);
-		return super.internalCancel(appName, id, isReplication);
+		InstanceInfo info = this.changeListeners.isEmpty() ? null : getInstanceByAppAndId(appName, id, false);
+		boolean cancelled = super.internalCancel(appName, id, isReplication);
+		changed(ActionType.DELETED, cancelled ? info : null);
+		return cancelled;
 	}
 
 	private void handleCancelation(String appName, String id, boolean isReplication) {
 		log("cancel " + appName + ", serverId " + id + ", isReplication " + isReplication);
 		publishEvent(new EurekaInstanceCanceledEvent(this, appName, id, isReplication));
+		if (this.leaseTracker != null) {
+			this.leaseTracker.cancel(appName, id);
+		}
+		this.instances.computeIfPresent(appName, (name, appInstances) -> {
+			appInstances.remove(id);
+			return appInstances.isEmpty() ? null : appInstances;
+		});
 	}
 
 	private void handleRegistration(InstanceInfo info, int leaseDuration, boolean isReplication) {
@@ -131,6 +339,65 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 		publishEvent(new EurekaInstanceRegisteredEvent(this, info, leaseDuration, isReplication));
 	}
 
+	private void handleRenewal(String appName, String serverId, InstanceInfo instance, boolean isReplication) {
+		if (this.renewalSummary != null) {
+			this.renewalSummary.record(appName, serverId);
+			return;
+		}
+		if (this.renewedEventSampleRate < 1.0d
+				&& ThreadLocalRandom.current().nextDouble() >= this.renewedEventSampleRate) {
+			return;
+		}
+		publishEvent(new EurekaInstanceRenewedEvent(this, appName, serverId, instance, isReplication));
+	}
+
+	void publishRenewalSummary() {
+		try {
+			EurekaRenewalSummaryEvent summary = this.renewalSummary.summarize(this);
+			if (summary != null) {
+				publishEvent(summary);
+			}
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed to publish renewal summary", e);
+		}
+	}
+
+	/*
+	 * Index the instance actually held by the registry, which may be an existing one if
+	 * the registration carried an older dirty timestamp, and start tracking its new lease.
+	 */
+	private void index(InstanceInfo info, int leaseDuration) {
+		InstanceInfo registered = getInstanceByAppAndId(info.getAppName(), info.getId(), false);
+		changed(ActionType.ADDED, registered != null ? registered : info);
+		this.instances.compute(info.getAppName(), (name, appInstances) -> {
+			Map<String, InstanceInfo> indexed = appInstances != null ? appInstances : new ConcurrentHashMap<>();
+			indexed.put(info.getId(), registered != null ? registered : info);
+			return indexed;
+		});
+		if (this.leaseTracker != null) {
+			this.leaseTracker.register(info.getAppName(), info.getId(), leaseDuration * 1000L,
+					System.currentTimeMillis());
+		}
+	}
+
+	/*
+	 * Bump the registry version and notify the listeners of the change, if any, in the
+	 * order of the versions.
+	 */
+	private void changed(ActionType action, InstanceInfo info) {
+		if (info == null || this.changeListeners.isEmpty()) {
+			this.registryVersion.incrementAndGet();
+			return;
+		}
+		synchronized (this.changeListeners) {
+			long version = this.registryVersion.incrementAndGet();
+			for (RegistryChangeListener listener : this.changeListeners) {
+				listener.registryChanged(version, action, info);
+			}
+		}
+	}
+
 	private void log(String message) {
 		if (log.isDebugEnabled()) {
 			log.debug(message);
@@ -138,6 +405,10 @@ public class InstanceRegistry extends PeerAwareInstanceRegistryImpl implements A
 	}
 
 	private void publishEvent(ApplicationEvent applicationEvent) {
+		if (this.eventPublisher != null) {
+			this.eventPublisher.publishEvent(applicationEvent);
+			return;
+		}
 		this.ctxt.publishEvent(applicationEvent);
 	}
 
@@ -16,8 +16,13 @@
 
 package org.springframework.cloud.netflix.eureka.server;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.netflix.eureka.server.AsyncRegistryEventPublisher.OverflowPolicy;
 
 import static org.springframework.cloud.netflix.eureka.server.InstanceRegistryProperties.PREFIX;
 
@@ -50,6 +55,73 @@ public class InstanceRegistryProperties {
 	@Value("${eureka.server.defaultOpenForTrafficCount:1}") // for backwards compatibility
 	private int defaultOpenForTrafficCount = 1;
 
+	/**
+	 * Asynchronous dispatching of registry events.
+	 */
+	private final AsyncEvents asyncEvents = new AsyncEvents();
+
+	/**
+	 * Publishing of renewed events.
+	 */
+	private final RenewedEvents renewedEvents = new RenewedEvents();
+
+	/**
+	 * Lease expiry scheduling on a timing wheel.
+	 */
+	private final ExpiryWheel leaseExpiryWheel = new ExpiryWheel();
+
+	/**
+	 * Local snapshots of the registry.
+	 */
+	private final Snapshot snapshot = new Snapshot();
+
+	/**
+	 * Copying the registry from all peers at once on startup.
+	 */
+	private final ParallelSync parallelSync = new ParallelSync();
+
+	/**
+	 * Caching of encoded registry payloads.
+	 */
+	private final PayloadCache payloadCache = new PayloadCache();
+
+	/**
+	 * Streaming of full registry fetches.
+	 */
+	private final StreamingFetches streamingFetches = new StreamingFetches();
+
+	private final Smile smile = new Smile();
+
+	/**
+	 * Replication of registry changes to peers.
+	 */
+	private final Replication replication = new Replication();
+
+	/**
+	 * Periodic repair of the registry from the ones of the peers.
+	 */
+	private final AntiEntropy antiEntropy = new AntiEntropy();
+
+	/**
+	 * Stream of registry changes pushed to clients.
+	 */
+	private final ChangeStream changeStream = new ChangeStream();
+
+	/**
+	 * Long polling of the registry delta.
+	 */
+	private final LongPoll longPoll = new LongPoll();
+
+	/**
+	 * Journal of the recent registry changes, for exact delta fetches.
+	 */
+	private final Journal journal = new Journal();
+
+	/**
+	 * Hash codes of the applications changed by deltas, for partial reconciliation.
+	 */
+	private final AppHashCodes appHashCodes = new AppHashCodes();
+
 	public int getExpectedNumberOfClientsSendingRenews() {
 		return expectedNumberOfClientsSendingRenews;
 	}
@@ -66,4 +138,908 @@ public class InstanceRegistryProperties {
 		this.defaultOpenForTrafficCount = defaultOpenForTrafficCount;
 	}
 
+	public AsyncEvents getAsyncEvents() {
+		return asyncEvents;
+	}
+
+	public RenewedEvents getRenewedEvents() {
+		return renewedEvents;
+	}
+
+	public ExpiryWheel getLeaseExpiryWheel() {
+		return leaseExpiryWheel;
+	}
+
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public ParallelSync getParallelSync() {
+		return parallelSync;
+	}
+
+	public PayloadCache getPayloadCache() {
+		return payloadCache;
+	}
+
+	public StreamingFetches getStreamingFetches() {
+		return streamingFetches;
+	}
+
+	public Smile getSmile() {
+		return smile;
+	}
+
+	public Replication getReplication() {
+		return replication;
+	}
+
+	public AntiEntropy getAntiEntropy() {
+		return antiEntropy;
+	}
+
+	public ChangeStream getChangeStream() {
+		return changeStream;
+	}
+
+	public LongPoll getLongPoll() {
+		return longPoll;
+	}
+
+	public Journal getJournal() {
+		return journal;
+	}
+
+	public AppHashCodes getAppHashCodes() {
+		return appHashCodes;
+	}
+
+	/**
+	 * Settings for dispatching registered, renewed and canceled events off the request
+	 * thread.
+	 */
+	public static class AsyncEvents {
+
+		/**
+		 * Flag to publish registry events from dedicated worker threads instead of the
+		 * thread handling the register, renew or cancel request. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of events waiting to be dispatched.
+		 */
+		private int queueCapacity = 10000;
+
+		/**
+		 * Maximum number of events a worker takes from the queue at once.
+		 */
+		private int batchSize = 100;
+
+		/**
+		 * Number of worker threads. Events are only dispatched in order with a single
+		 * worker.
+		 */
+		private int workerThreads = 1;
+
+		/**
+		 * What to do with an event when the queue is full.
+		 */
+		private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public int getWorkerThreads() {
+			return workerThreads;
+		}
+
+		public void setWorkerThreads(int workerThreads) {
+			this.workerThreads = workerThreads;
+		}
+
+		public OverflowPolicy getOverflowPolicy() {
+			return overflowPolicy;
+		}
+
+		public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+			this.overflowPolicy = overflowPolicy;
+		}
+
+	}
+
+	/**
+	 * Settings for publishing renewed events, one of which would otherwise be published
+	 * for every heartbeat.
+	 */
+	public static class RenewedEvents {
+
+		/**
+		 * How renewals are published: one event per heartbeat (ALL), a random sample of
+		 * them (SAMPLED) or a periodic EurekaRenewalSummaryEvent (SUMMARY).
+		 */
+		private Mode mode = Mode.ALL;
+
+		/**
+		 * Fraction of renewals published as events in SAMPLED mode, between 0 and 1.
+		 */
+		private double sampleRate = 0.1d;
+
+		/**
+		 * Interval between two renewal summaries in SUMMARY mode.
+		 */
+		private Duration summaryInterval = Duration.ofSeconds(30);
+
+		public Mode getMode() {
+			return mode;
+		}
+
+		public void setMode(Mode mode) {
+			this.mode = mode;
+		}
+
+		public double getSampleRate() {
+			return sampleRate;
+		}
+
+		public void setSampleRate(double sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		public Duration getSummaryInterval() {
+			return summaryInterval;
+		}
+
+		public void setSummaryInterval(Duration summaryInterval) {
+			this.summaryInterval = summaryInterval;
+		}
+
+		/**
+		 * Ways of publishing renewals.
+		 */
+		public enum Mode {
+
+			/**
+			 * Publish an EurekaInstanceRenewedEvent for every renewal.
+			 */
+			ALL,
+
+			/**
+			 * Publish an EurekaInstanceRenewedEvent for a random sample of renewals.
+			 */
+			SAMPLED,
+
+			/**
+			 * Publish a periodic EurekaRenewalSummaryEvent instead of individual events.
+			 */
+			SUMMARY
+
+		}
+
+	}
+
+	/**
+	 * Settings for scheduling lease expiries on a hierarchical timing wheel, so that the
+	 * eviction task only looks at leases that fell due since its previous run.
+	 */
+	public static class ExpiryWheel {
+
+		/**
+		 * Flag to schedule lease expiries on a timing wheel and evict expired leases from
+		 * it. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Time covered by a bucket of the finest level of the wheel.
+		 */
+		private Duration tick = Duration.ofSeconds(1);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getTick() {
+			return tick;
+		}
+
+		public void setTick(Duration tick) {
+			this.tick = tick;
+		}
+
+	}
+
+	/**
+	 * Settings for periodically writing the local registry to a file that a restarted
+	 * server starts from when no peer has a registry to copy.
+	 */
+	public static class Snapshot {
+
+		/**
+		 * Flag to write registry snapshots and restore the registry from them on startup.
+		 * Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * File holding the registry snapshot.
+		 */
+		private String file = "eureka-registry.snapshot";
+
+		/**
+		 * Interval between two registry snapshots.
+		 */
+		private Duration interval = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum age of a registry snapshot to restore the registry from.
+		 */
+		private Duration maxAge = Duration.ofMinutes(10);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public void setFile(String file) {
+			this.file = file;
+		}
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public void setInterval(Duration interval) {
+			this.interval = interval;
+		}
+
+		public Duration getMaxAge() {
+			return maxAge;
+		}
+
+		public void setMaxAge(Duration maxAge) {
+			this.maxAge = maxAge;
+		}
+
+	}
+
+	/**
+	 * Settings for copying the registry from all peers concurrently on startup instead of
+	 * from one peer at a time.
+	 */
+	public static class ParallelSync {
+
+		/**
+		 * Flag to copy the registry from all peers at once and open for traffic as soon as
+		 * the registry of one of them has been copied. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum time to wait for the registry of a peer before opening for traffic.
+		 */
+		private Duration timeout = Duration.ofSeconds(30);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+	}
+
+	/**
+	 * Settings for streaming registry changes to clients as server-sent events.
+	 */
+	public static class ChangeStream {
+
+		/**
+		 * Flag to serve a stream of registry changes at /eureka/stream. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of changes waiting to be streamed. Subscribers are told to fetch
+		 * the full registry again when changes are dropped.
+		 */
+		private int queueCapacity = 10000;
+
+		/**
+		 * Number of recent changes kept for subscribers resuming the stream.
+		 */
+		private int history = 1000;
+
+		/**
+		 * Time without changes after which subscribers are sent a heartbeat comment.
+		 */
+		private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum number of changes waiting to be written to a subscriber. Subscribers
+		 * that do not keep up are disconnected, and resume the stream when reconnecting.
+		 */
+		private int subscriberBufferSize = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getHistory() {
+			return history;
+		}
+
+		public void setHistory(int history) {
+			this.history = history;
+		}
+
+		public Duration getHeartbeatInterval() {
+			return heartbeatInterval;
+		}
+
+		public void setHeartbeatInterval(Duration heartbeatInterval) {
+			this.heartbeatInterval = heartbeatInterval;
+		}
+
+		public int getSubscriberBufferSize() {
+			return subscriberBufferSize;
+		}
+
+		public void setSubscriberBufferSize(int subscriberBufferSize) {
+			this.subscriberBufferSize = subscriberBufferSize;
+		}
+
+	}
+
+	/**
+	 * Settings for holding delta fetches until the registry changes.
+	 */
+	public static class LongPoll {
+
+		/**
+		 * Flag to hold delta fetches made with a registry version, as in
+		 * /eureka/apps/delta?since=42, until the registry has changed since that version.
+		 * Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum time a delta fetch is held for, after which it is answered with a 304
+		 * status.
+		 */
+		private Duration timeout = Duration.ofSeconds(30);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+	}
+
+	/**
+	 * Settings for keeping the recent registry changes by version.
+	 */
+	public static class Journal {
+
+		/**
+		 * Flag to answer delta fetches made with a registry version, as in
+		 * /eureka/apps/delta?since=42, with exactly the changes made after that version.
+		 * Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Number of recent changes kept. Clients that missed older ones are told to fetch
+		 * the full registry.
+		 */
+		private int capacity = 10000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(int capacity) {
+			this.capacity = capacity;
+		}
+
+	}
+
+	/**
+	 * Settings for sending the hash codes of the applications changed by a delta along
+	 * with it.
+	 */
+	public static class AppHashCodes {
+
+		/**
+		 * Flag to send the hash codes of the applications changed by deltas in JSON and
+		 * Smile served by the payload cache or the delta long polling, so that clients
+		 * whose registry does not reconcile only fetch the applications that diverged.
+		 * Clients must ignore unknown fields of the registry. Default false.
+		 */
+		private boolean enabled = false;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
+	/**
+	 * Settings for repairing the registry from the ones of the peers, copying only the
+	 * applications whose digests differ.
+	 */
+	public static class AntiEntropy {
+
+		/**
+		 * Flag to periodically compare the registry with the ones of the peers and copy
+		 * the instances whose replication was lost. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Interval between two repairs.
+		 */
+		private Duration interval = Duration.ofMinutes(2);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public void setInterval(Duration interval) {
+			this.interval = interval;
+		}
+
+	}
+
+	/**
+	 * Settings for serving registry fetches from encoded payloads kept per registry
+	 * version.
+	 */
+	public static class PayloadCache {
+
+		/**
+		 * Flag to serve JSON and XML registry fetches from the payload cache instead of
+		 * the Eureka resources. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of registry views to keep the payloads of, the least recently
+		 * used ones being dropped first.
+		 */
+		private int maxEntries = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		public void setMaxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+	}
+
+	/**
+	 * Settings for serving registry fetches in the Smile format.
+	 */
+	public static class Smile {
+
+		/**
+		 * Flag to serve registry fetches from the payload cache in Smile to clients
+		 * listing it in their Accept header. Default false.
+		 */
+		private boolean enabled = false;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
+	/**
+	 * Settings for streaming full registry fetches to clients one application at a time.
+	 */
+	public static class StreamingFetches {
+
+		/**
+		 * Flag to stream full registry fetches in JSON and Smile straight to the response
+		 * instead of encoding them as a whole first. Default false.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Number of applications to write between two flushes of the response.
+		 */
+		private int flushInterval = 100;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getFlushInterval() {
+			return flushInterval;
+		}
+
+		public void setFlushInterval(int flushInterval) {
+			this.flushInterval = flushInterval;
+		}
+
+	}
+
+	/**
+	 * Settings for replicating registry changes to peers.
+	 */
+	public static class Replication {
+
+		/**
+		 * Client used to replicate registry changes to peers, which decides the
+		 * connections held to them. Default jersey.
+		 */
+		private Client client = Client.JERSEY;
+
+		/**
+		 * Flag to encode the instances in replication request bodies in their compact
+		 * form, leaving out the details Eureka clients do not need. Default false.
+		 */
+		private boolean compactBodies = false;
+
+		/**
+		 * Compression of replication request bodies.
+		 */
+		private final Compression compression = new Compression();
+
+		/**
+		 * Separate lanes for replicating heartbeats and membership changes.
+		 */
+		private final PriorityLanes priorityLanes = new PriorityLanes();
+
+		/**
+		 * Circuit breaking of the replication to failing peers.
+		 */
+		private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+		public Client getClient() {
+			return client;
+		}
+
+		public void setClient(Client client) {
+			this.client = client;
+		}
+
+		public boolean isCompactBodies() {
+			return compactBodies;
+		}
+
+		public void setCompactBodies(boolean compactBodies) {
+			this.compactBodies = compactBodies;
+		}
+
+		public Compression getCompression() {
+			return compression;
+		}
+
+		public PriorityLanes getPriorityLanes() {
+			return priorityLanes;
+		}
+
+		public CircuitBreaker getCircuitBreaker() {
+			return circuitBreaker;
+		}
+
+		/**
+		 * Settings for replicating heartbeats through a lane of their own, so that
+		 * membership changes do not wait behind them.
+		 */
+		public static class PriorityLanes {
+
+			/**
+			 * Flag to replicate heartbeats and membership changes through separate
+			 * queues. Default false.
+			 */
+			private boolean enabled = false;
+
+			/**
+			 * Weight of the lane of registrations, cancellations and status changes in
+			 * the split of the peer replication threads.
+			 */
+			private int membershipWeight = 1;
+
+			/**
+			 * Weight of the lane of heartbeats in the split of the peer replication
+			 * threads.
+			 */
+			private int renewalWeight = 1;
+
+			public boolean isEnabled() {
+				return enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public int getMembershipWeight() {
+				return membershipWeight;
+			}
+
+			public void setMembershipWeight(int membershipWeight) {
+				this.membershipWeight = membershipWeight;
+			}
+
+			public int getRenewalWeight() {
+				return renewalWeight;
+			}
+
+			public void setRenewalWeight(int renewalWeight) {
+				this.renewalWeight = renewalWeight;
+			}
+
+		}
+
+		/**
+		 * Settings for dropping the replication tasks of a failing peer until it
+		 * recovers, and catching it up then.
+		 */
+		public static class CircuitBreaker {
+
+			/**
+			 * Flag to stop replicating to peers after consecutive failed replication
+			 * batches. Default false.
+			 */
+			private boolean enabled = false;
+
+			/**
+			 * Number of consecutive failed replication batches opening the circuit of a
+			 * peer.
+			 */
+			private int failureThreshold = 5;
+
+			/**
+			 * Time after which a replication batch counts as failed.
+			 */
+			private Duration slowCallThreshold = Duration.ofSeconds(2);
+
+			/**
+			 * Time to drop the replication tasks of a peer for before probing it again.
+			 */
+			private Duration openDuration = Duration.ofSeconds(30);
+
+			public boolean isEnabled() {
+				return enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public int getFailureThreshold() {
+				return failureThreshold;
+			}
+
+			public void setFailureThreshold(int failureThreshold) {
+				this.failureThreshold = failureThreshold;
+			}
+
+			public Duration getSlowCallThreshold() {
+				return slowCallThreshold;
+			}
+
+			public void setSlowCallThreshold(Duration slowCallThreshold) {
+				this.slowCallThreshold = slowCallThreshold;
+			}
+
+			public Duration getOpenDuration() {
+				return openDuration;
+			}
+
+			public void setOpenDuration(Duration openDuration) {
+				this.openDuration = openDuration;
+			}
+
+		}
+
+		/**
+		 * Settings for compressing replication request bodies, which peers decode when
+		 * any of their own compression settings is set.
+		 */
+		public static class Compression {
+
+			/**
+			 * Compression of request bodies sent to peers. Replaces the
+			 * eureka.server.enable-replicated-request-compression one when set to
+			 * anything else than none. Default none.
+			 */
+			private ReplicationEncodingFilter.Compression algorithm = ReplicationEncodingFilter.Compression.NONE;
+
+			/**
+			 * Minimum size, in bytes, of a request body to compress it.
+			 */
+			private int minSize = 1024;
+
+			/**
+			 * Compression settings of given peers, by host name, overriding the ones
+			 * above.
+			 */
+			private Map<String, PeerCompression> peers = new LinkedHashMap<>();
+
+			public ReplicationEncodingFilter.Compression getAlgorithm() {
+				return algorithm;
+			}
+
+			public void setAlgorithm(ReplicationEncodingFilter.Compression algorithm) {
+				this.algorithm = algorithm;
+			}
+
+			public int getMinSize() {
+				return minSize;
+			}
+
+			public void setMinSize(int minSize) {
+				this.minSize = minSize;
+			}
+
+			public Map<String, PeerCompression> getPeers() {
+				return peers;
+			}
+
+			public void setPeers(Map<String, PeerCompression> peers) {
+				this.peers = peers;
+			}
+
+		}
+
+		/**
+		 * Compression settings of a peer, defaulting to the ones of all peers.
+		 */
+		public static class PeerCompression {
+
+			/**
+			 * Compression of request bodies sent to the peer.
+			 */
+			private ReplicationEncodingFilter.Compression algorithm;
+
+			/**
+			 * Minimum size, in bytes, of a request body to compress it.
+			 */
+			private Integer minSize;
+
+			public ReplicationEncodingFilter.Compression getAlgorithm() {
+				return algorithm;
+			}
+
+			public void setAlgorithm(ReplicationEncodingFilter.Compression algorithm) {
+				this.algorithm = algorithm;
+			}
+
+			public Integer getMinSize() {
+				return minSize;
+			}
+
+			public void setMinSize(Integer minSize) {
+				this.minSize = minSize;
+			}
+
+		}
+
+		/**
+		 * Clients available to replicate registry changes to peers.
+		 */
+		public enum Client {
+
+			/**
+			 * Jersey client over pooled HTTP/1.1 connections, one per request in flight.
+			 */
+			JERSEY,
+
+			/**
+			 * Reactor Netty client multiplexing the requests to a peer over a single HTTP/2
+			 * connection when the peer supports it, and over pooled HTTP/1.1 connections
+			 * otherwise. Requires Spring WebFlux.
+			 */
+			WEBCLIENT
+
+		}
+
+	}
+
 }
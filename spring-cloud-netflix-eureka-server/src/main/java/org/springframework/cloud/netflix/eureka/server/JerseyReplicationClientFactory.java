@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.function.Function;
+
+import com.netflix.discovery.EurekaIdentityHeaderFilter;
+import com.netflix.discovery.shared.transport.jersey.EurekaJerseyClient;
+import com.netflix.discovery.shared.transport.jersey.EurekaJerseyClientImpl.EurekaJerseyClientBuilder;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.EurekaServerIdentity;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.PeerEurekaNodes;
+import com.netflix.eureka.resources.ServerCodecs;
+import com.netflix.eureka.transport.JerseyReplicationClient;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Default {@link ReplicationClientFactory}, creating the blocking Jersey clients of
+ * Eureka with the {@link ReplicationClientAdditionalFilters} added.
+ * <p>
+ * Clients of peers with a {@link ReplicationEncodingFilter} are configured like the
+ * ones of Eureka, except that their request bodies are encoded and compressed by that
+ * filter rather than as per
+ * {@link EurekaServerConfig#shouldEnableReplicatedRequestCompression()}.
+ *
+ * @author agent agent
+ */
+public class JerseyReplicationClientFactory implements ReplicationClientFactory {
+
+	private static final Log log = LogFactory.getLog(JerseyReplicationClientFactory.class);
+
+	private final EurekaServerConfig serverConfig;
+
+	private final ServerCodecs serverCodecs;
+
+	private final ReplicationClientAdditionalFilters replicationClientAdditionalFilters;
+
+	private Function<String, ReplicationEncodingFilter> encodingFilters;
+
+	public JerseyReplicationClientFactory(EurekaServerConfig serverConfig, ServerCodecs serverCodecs,
+			ReplicationClientAdditionalFilters replicationClientAdditionalFilters) {
+		this.serverConfig = serverConfig;
+		this.serverCodecs = serverCodecs;
+		this.replicationClientAdditionalFilters = replicationClientAdditionalFilters;
+	}
+
+	/**
+	 * Encode the request bodies of the clients of some peers with a
+	 * {@link ReplicationEncodingFilter}.
+	 * @param encodingFilters the encoding filter to use for the URL of a peer, or null
+	 * for its requests to be encoded as by Eureka
+	 */
+	public void setEncodingFilters(Function<String, ReplicationEncodingFilter> encodingFilters) {
+		this.encodingFilters = encodingFilters;
+	}
+
+	@Override
+	public HttpReplicationClient create(String peerEurekaNodeUrl) {
+		ReplicationEncodingFilter encodingFilter = this.encodingFilters != null
+				? this.encodingFilters.apply(peerEurekaNodeUrl) : null;
+		JerseyReplicationClient replicationClient = encodingFilter != null
+				? createReplicationClient(peerEurekaNodeUrl, encodingFilter)
+				: JerseyReplicationClient.createReplicationClient(this.serverConfig, this.serverCodecs,
+						peerEurekaNodeUrl);
+		this.replicationClientAdditionalFilters.getFilters().forEach(replicationClient::addReplicationClientFilter);
+		return replicationClient;
+	}
+
+	/*
+	 * Mirrors JerseyReplicationClient.createReplicationClient(), which offers no way to
+	 * replace the filter compressing request bodies.
+	 */
+	private JerseyReplicationClient createReplicationClient(String peerEurekaNodeUrl,
+			ReplicationEncodingFilter encodingFilter) {
+		EurekaJerseyClientBuilder builder = new EurekaJerseyClientBuilder()
+				.withClientName("Discovery-PeerNodeClient-" + PeerEurekaNodes.hostFromUrl(peerEurekaNodeUrl))
+				.withUserAgent("Java-EurekaClient-Replication")
+				.withEncoderWrapper(this.serverCodecs.getFullJsonCodec())
+				.withDecoderWrapper(this.serverCodecs.getFullJsonCodec())
+				.withConnectionTimeout(this.serverConfig.getPeerNodeConnectTimeoutMs())
+				.withReadTimeout(this.serverConfig.getPeerNodeReadTimeoutMs())
+				.withMaxConnectionsPerHost(this.serverConfig.getPeerNodeTotalConnectionsPerHost())
+				.withMaxTotalConnections(this.serverConfig.getPeerNodeTotalConnections())
+				.withConnectionIdleTimeout(this.serverConfig.getPeerNodeConnectionIdleTimeoutSeconds());
+		if (peerEurekaNodeUrl.startsWith("https://") && "true"
+				.equals(System.getProperty("com.netflix.eureka.shouldSSLConnectionsUseSystemSocketFactory"))) {
+			builder.withSystemSSLConfiguration();
+		}
+		EurekaJerseyClient jerseyClient = builder.build();
+		ApacheHttpClient4 client = jerseyClient.getClient();
+		// filters added last run first: responses are decompressed by the gzip filter,
+		// which finds no Content-Encoding yet on the requests it sees
+		client.addFilter(encodingFilter);
+		client.addFilter(new GZIPContentEncodingFilter(false));
+		client.addFilter(new EurekaIdentityHeaderFilter(new EurekaServerIdentity(localAddress())));
+		return new JerseyReplicationClient(jerseyClient, peerEurekaNodeUrl);
+	}
+
+	private static String localAddress() {
+		try {
+			return InetAddress.getLocalHost().getHostAddress();
+		}
+		catch (UnknownHostException ex) {
+			log.warn("Cannot find the local address to identify replication requests with", ex);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link LeaseTracker} scheduling lease expiries on a hierarchical timing wheel, so that
+ * looking for expired leases only visits the buckets that fell due since the previous
+ * look instead of every lease of the registry.
+ * <p>
+ * Each of the {@value #LEVELS} levels has {@value #WHEEL_SIZE} buckets, a bucket of level
+ * {@code n} covering {@code WHEEL_SIZE^n} ticks. A lease is placed in the finest level
+ * whose range reaches its expiry, and buckets of coarser levels cascade into finer ones
+ * as time advances. Renewals only record the new expiry time of the lease; a lease found
+ * in a due bucket that has been renewed in the meantime is rescheduled from there.
+ * Expired leases are kept aside until they are cancelled, since the eviction task may
+ * not be allowed to evict all of them at once.
+ *
+ * @author agent agent
+ */
+class LeaseExpiryWheel implements LeaseTracker {
+
+	private static final int WHEEL_BITS = 6;
+
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private static final int LEVELS = 4;
+
+	private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+	private final Map<String, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+
+	private final List<List<Set<Entry>>> buckets = new ArrayList<>(LEVELS);
+
+	private final Set<Entry> overdue = new HashSet<>();
+
+	private final long tickMs;
+
+	/*
+	 * The next tick to process; every bucket of an earlier tick has been processed.
+	 */
+	private long currentTick;
+
+	LeaseExpiryWheel(long tickMs, long now) {
+		Assert.isTrue(tickMs > 0, "tickMs must be positive");
+		this.tickMs = tickMs;
+		this.currentTick = now / tickMs;
+		for (int level = 0; level < LEVELS; level++) {
+			List<Set<Entry>> wheel = new ArrayList<>(WHEEL_SIZE);
+			for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+				wheel.add(new HashSet<>());
+			}
+			this.buckets.add(wheel);
+		}
+	}
+
+	@Override
+	public synchronized void register(String appName, String id, long durationMs, long now) {
+		Entry entry = this.entries.computeIfAbsent(appName, name -> new ConcurrentHashMap<>()).computeIfAbsent(id,
+				key -> new Entry(appName, id));
+		entry.durationMs = durationMs;
+		entry.expiryTime = now + durationMs;
+		// unlike a renewal, a registration may bring the expiry closer
+		unschedule(entry);
+		schedule(entry);
+	}
+
+	@Override
+	public boolean renew(String appName, String id, long now) {
+		Map<String, Entry> appEntries = this.entries.get(appName);
+		Entry entry = appEntries != null ? appEntries.get(id) : null;
+		if (entry == null) {
+			return false;
+		}
+		entry.expiryTime = now + 2 * entry.durationMs;
+		return true;
+	}
+
+	@Override
+	public synchronized void cancel(String appName, String id) {
+		Map<String, Entry> appEntries = this.entries.get(appName);
+		Entry entry = appEntries != null ? appEntries.remove(id) : null;
+		if (entry != null) {
+			unschedule(entry);
+		}
+		if (appEntries != null && appEntries.isEmpty()) {
+			this.entries.remove(appName);
+		}
+	}
+
+	@Override
+	public synchronized List<Entry> expired(long now, long additionalLeaseMs) {
+		// leases expiring at or before this time are expired
+		long expiredAt = now - additionalLeaseMs - 1;
+		advance(expiredAt);
+		List<Entry> expired = new ArrayList<>();
+		List<Entry> renewed = new ArrayList<>();
+		for (Entry entry : this.overdue) {
+			if (entry.expiryTime <= expiredAt) {
+				expired.add(entry);
+			}
+			else {
+				renewed.add(entry);
+			}
+		}
+		for (Entry entry : renewed) {
+			unschedule(entry);
+			schedule(entry);
+		}
+		return expired;
+	}
+
+	synchronized int size() {
+		int size = 0;
+		for (Map<String, Entry> appEntries : this.entries.values()) {
+			size += appEntries.size();
+		}
+		return size;
+	}
+
+	private void advance(long expiredAt) {
+		long targetTick = expiredAt / this.tickMs;
+		if (targetTick - this.currentTick > (long) WHEEL_SIZE * WHEEL_SIZE) {
+			// the wheel was left alone for a long time, rebuilding it is cheaper
+			rebuild(targetTick, expiredAt);
+			return;
+		}
+		while (this.currentTick < targetTick) {
+			cascade(this.currentTick);
+			// leases still in this bucket are due before the target tick unless renewed
+			for (Entry entry : drain(this.buckets.get(0).get((int) (this.currentTick & WHEEL_MASK)))) {
+				checkDue(entry, expiredAt);
+			}
+			this.currentTick++;
+		}
+		cascade(this.currentTick);
+		// leases due in the current, partly elapsed tick
+		for (Entry entry : drain(this.buckets.get(0).get((int) (this.currentTick & WHEEL_MASK)))) {
+			checkDue(entry, expiredAt);
+		}
+	}
+
+	/*
+	 * Move the leases of coarser buckets starting at the given tick to finer levels.
+	 */
+	private void cascade(long tick) {
+		for (int level = 1; level < LEVELS; level++) {
+			int shift = WHEEL_BITS * level;
+			if ((tick & ((1L << shift) - 1)) != 0) {
+				return;
+			}
+			for (Entry entry : drain(this.buckets.get(level).get((int) ((tick >>> shift) & WHEEL_MASK)))) {
+				schedule(entry);
+			}
+		}
+	}
+
+	private void rebuild(long targetTick, long expiredAt) {
+		List<Entry> scheduled = new ArrayList<>();
+		for (List<Set<Entry>> wheel : this.buckets) {
+			for (Set<Entry> bucket : wheel) {
+				scheduled.addAll(drain(bucket));
+			}
+		}
+		this.currentTick = targetTick;
+		for (Entry entry : scheduled) {
+			checkDue(entry, expiredAt);
+		}
+	}
+
+	private void checkDue(Entry entry, long expiredAt) {
+		if (entry.expiryTime <= expiredAt) {
+			entry.bucket = this.overdue;
+			this.overdue.add(entry);
+		}
+		else {
+			schedule(entry);
+		}
+	}
+
+	private void schedule(Entry entry) {
+		long tick = entry.expiryTime / this.tickMs;
+		long delta = tick - this.currentTick;
+		if (delta < 0) {
+			entry.bucket = this.overdue;
+			this.overdue.add(entry);
+			return;
+		}
+		if (delta > MAX_DELTA) {
+			// revisited when the farthest bucket falls due
+			tick = this.currentTick + MAX_DELTA;
+			delta = MAX_DELTA;
+		}
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+			level++;
+		}
+		Set<Entry> bucket = this.buckets.get(level).get((int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+		entry.bucket = bucket;
+		bucket.add(entry);
+	}
+
+	private void unschedule(Entry entry) {
+		if (entry.bucket != null) {
+			entry.bucket.remove(entry);
+			entry.bucket = null;
+		}
+	}
+
+	private List<Entry> drain(Set<Entry> bucket) {
+		if (bucket.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Entry> drained = new ArrayList<>(bucket);
+		bucket.clear();
+		for (Entry entry : drained) {
+			entry.bucket = null;
+		}
+		return drained;
+	}
+
+	/**
+	 * The lease of one instance.
+	 */
+	static final class Entry implements TrackedLease {
+
+		private final String appName;
+
+		private final String id;
+
+		private volatile long durationMs;
+
+		private volatile long expiryTime;
+
+		private Set<Entry> bucket;
+
+		private Entry(String appName, String id) {
+			this.appName = appName;
+			this.id = id;
+		}
+
+		@Override
+		public String getAppName() {
+			return this.appName;
+		}
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+	}
+
+}
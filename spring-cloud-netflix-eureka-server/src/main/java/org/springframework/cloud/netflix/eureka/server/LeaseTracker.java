@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.List;
+
+/**
+ * Keeps track of the leases of the local registry on behalf of the eviction task of
+ * {@link InstanceRegistry}.
+ * <p>
+ * Implementations follow {@link com.netflix.eureka.lease.Lease}: a registration expires
+ * one lease duration after it happened, a renewal two lease durations after it happened,
+ * and a lease counts as expired once the current time is past its expiry time plus the
+ * additional lease time given to {@link #expired(long, long)}.
+ *
+ * @author agent agent
+ */
+interface LeaseTracker {
+
+	/**
+	 * Start a new lease for the given instance, replacing any existing one.
+	 * @param appName the application name
+	 * @param id the instance id
+	 * @param durationMs the lease duration in milliseconds
+	 * @param now the registration time
+	 */
+	void register(String appName, String id, long durationMs, long now);
+
+	/**
+	 * Record a renewal of the given instance's lease.
+	 * @param appName the application name
+	 * @param id the instance id
+	 * @param now the renewal time
+	 * @return whether the instance holds a lease
+	 */
+	boolean renew(String appName, String id, long now);
+
+	/**
+	 * Drop the given instance's lease.
+	 * @param appName the application name
+	 * @param id the instance id
+	 */
+	void cancel(String appName, String id);
+
+	/**
+	 * @param now the current time
+	 * @param additionalLeaseMs grace period added to every lease
+	 * @return the leases that are expired at the given time
+	 */
+	List<? extends TrackedLease> expired(long now, long additionalLeaseMs);
+
+	/**
+	 * A lease found by {@link #expired(long, long)}.
+	 */
+	interface TrackedLease {
+
+		String getAppName();
+
+		String getId();
+
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.LeaseInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Copies the registry from all peers at once, as an alternative to
+ * {@link PeerAwareInstanceRegistry#syncUp()} which copies it from one peer at a time
+ * with a pause between two attempts.
+ * <p>
+ * {@link #syncUp(List)} returns as soon as the registry of one peer has been copied,
+ * so that the server can open for traffic, while the registries of the other peers keep
+ * being merged in the background. An instance copied from a peer only replaces an
+ * instance of the local registry with an older dirty timestamp.
+ *
+ * @author agent agent
+ */
+public class ParallelRegistrySync {
+
+	private static final Log log = LogFactory.getLog(ParallelRegistrySync.class);
+
+	private final PeerAwareInstanceRegistry registry;
+
+	private final Function<String, ? extends EurekaHttpClient> clientFactory;
+
+	private final Duration timeout;
+
+	private volatile ExecutorService executor;
+
+	/**
+	 * @param registry the registry to copy the registries of the peers to
+	 * @param clientFactory creates a client for the given peer URL
+	 * @param timeout maximum time to wait for the registry of a peer
+	 */
+	public ParallelRegistrySync(PeerAwareInstanceRegistry registry,
+			Function<String, ? extends EurekaHttpClient> clientFactory, Duration timeout) {
+		Assert.notNull(registry, "registry must not be null");
+		Assert.notNull(clientFactory, "clientFactory must not be null");
+		Assert.notNull(timeout, "timeout must not be null");
+		this.registry = registry;
+		this.clientFactory = clientFactory;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Copy the registry from the given peers.
+	 * @param peerUrls the service URLs of the peers to copy the registry from
+	 * @return the number of instances copied by the time the first non empty registry
+	 * of a peer was copied, or 0 if no peer had one within the timeout
+	 * @throws InterruptedException if interrupted while waiting for the peers
+	 */
+	public int syncUp(List<String> peerUrls) throws InterruptedException {
+		if (peerUrls.isEmpty()) {
+			return 0;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(peerUrls.size(), runnable -> {
+			Thread thread = new Thread(runnable, "Eureka-ParallelRegistrySync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor = executor;
+		AtomicInteger count = new AtomicInteger();
+		CountDownLatch firstCopy = new CountDownLatch(1);
+		CompletableFuture<?>[] copies = new CompletableFuture<?>[peerUrls.size()];
+		for (int i = 0; i < copies.length; i++) {
+			String peerUrl = peerUrls.get(i);
+			copies[i] = CompletableFuture.supplyAsync(() -> fetch(peerUrl), executor).thenAccept(applications -> {
+				int merged = merge(applications);
+				log.info("Copied " + merged + " instances from " + peerUrl);
+				if (count.addAndGet(merged) > 0) {
+					firstCopy.countDown();
+				}
+			}).exceptionally(ex -> {
+				log.warn("Cannot copy registry from " + peerUrl + ": " + ex.getMessage());
+				return null;
+			});
+		}
+		CompletableFuture.allOf(copies).whenComplete((result, ex) -> {
+			firstCopy.countDown();
+			executor.shutdown();
+		});
+		if (!firstCopy.await(this.timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+			log.warn("No peer registry copied within " + this.timeout);
+		}
+		return count.get();
+	}
+
+	/**
+	 * Stop merging registries that are still being copied.
+	 */
+	public void shutdown() {
+		ExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private Applications fetch(String peerUrl) {
+		EurekaHttpClient client = this.clientFactory.apply(peerUrl);
+		try {
+			EurekaHttpResponse<Applications> response = client.getApplications();
+			if (response.getStatusCode() != 200 || response.getEntity() == null) {
+				throw new IllegalStateException("Unexpected response status " + response.getStatusCode());
+			}
+			return response.getEntity();
+		}
+		finally {
+			client.shutdown();
+		}
+	}
+
+	private synchronized int merge(Applications applications) {
+		int merged = 0;
+		for (Application application : applications.getRegisteredApplications()) {
+			for (InstanceInfo info : application.getInstances()) {
+				if (Thread.currentThread().isInterrupted()) {
+					return merged;
+				}
+				if (merge(this.registry, info)) {
+					merged++;
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Register an instance copied from a peer, unless the registry already has it with
+	 * the same or a more recent dirty timestamp.
+	 * @param registry the registry to register the instance in
+	 * @param info the instance copied from a peer
+	 * @return whether the instance was registered
+	 */
+	static boolean merge(PeerAwareInstanceRegistry registry, InstanceInfo info) {
+		if (registry instanceof PeerAwareInstanceRegistryImpl
+				&& !((PeerAwareInstanceRegistryImpl) registry).isRegisterable(info)) {
+			return false;
+		}
+		InstanceInfo existing = registry.getInstanceByAppAndId(info.getAppName(), info.getId(), false);
+		if (existing != null && existing.getLastDirtyTimestamp() >= info.getLastDirtyTimestamp()) {
+			return false;
+		}
+		LeaseInfo leaseInfo = info.getLeaseInfo();
+		int leaseDuration = leaseInfo != null ? leaseInfo.getDurationInSecs() : LeaseInfo.DEFAULT_LEASE_DURATION;
+		registry.register(info, leaseDuration, true);
+		return true;
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.MediaType;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.cluster.protocol.ReplicationInstance;
+import com.netflix.eureka.cluster.protocol.ReplicationInstanceResponse;
+import com.netflix.eureka.cluster.protocol.ReplicationList;
+import com.netflix.eureka.cluster.protocol.ReplicationListResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl.Action;
+import com.netflix.eureka.resources.ASGResource.ASGStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+
+/**
+ * Stops replicating to a peer that keeps failing, instead of letting its replication
+ * tasks be retried until they expire.
+ * <p>
+ * The circuit of a peer opens after a number of consecutive failed replication batches,
+ * a batch failing when it cannot be sent, is answered with a server error or takes
+ * longer than a threshold. While the circuit is open, replication batches are dropped
+ * without being sent and reported to the peer node as replicated. Once the open
+ * duration has elapsed, the next batch is sent to probe the peer, closing the circuit
+ * when it succeeds and opening it again otherwise.
+ * <p>
+ * When the circuit closes, the peer catches up with the registrations, status changes
+ * and cancellations dropped in the meantime: the current state of each instance they
+ * concerned is replicated once, as a registration if the instance is still registered
+ * and as a cancellation otherwise. Dropped heartbeats are not caught up, the next ones
+ * registering the instances the peer does not know about.
+ *
+ * @author agent agent
+ */
+public class PeerCircuitBreaker implements MeterBinder {
+
+	private static final Log log = LogFactory.getLog(PeerCircuitBreaker.class);
+
+	private final PeerAwareInstanceRegistry registry;
+
+	private final int failureThreshold;
+
+	private final long slowCallThreshold;
+
+	private final long openDuration;
+
+	private final AtomicLong opened = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong caughtUp = new AtomicLong();
+
+	/**
+	 * @param registry the registry to read the current state of instances from
+	 * @param failureThreshold the number of consecutive failed batches opening the
+	 * circuit of a peer
+	 * @param slowCallThreshold the time after which a batch counts as failed, even if it
+	 * succeeds
+	 * @param openDuration the time to drop the batches of a peer for before probing it
+	 */
+	public PeerCircuitBreaker(PeerAwareInstanceRegistry registry, int failureThreshold, Duration slowCallThreshold,
+			Duration openDuration) {
+		Assert.notNull(registry, "registry must not be null");
+		Assert.isTrue(failureThreshold > 0, "failureThreshold must be positive");
+		this.registry = registry;
+		this.failureThreshold = failureThreshold;
+		this.slowCallThreshold = slowCallThreshold.toMillis();
+		this.openDuration = openDuration.toMillis();
+	}
+
+	/**
+	 * @param peerUrl the service URL of the peer
+	 * @param replicationClient the client sending replication requests to the peer
+	 * @param peerEurekaNode the node replicating to the peer, to catch up through
+	 * @return a client guarding the replication batches sent through the given one
+	 */
+	public HttpReplicationClient guarding(String peerUrl, HttpReplicationClient replicationClient,
+			Supplier<PeerEurekaNode> peerEurekaNode) {
+		return new GuardedReplicationClient(peerUrl, replicationClient, peerEurekaNode);
+	}
+
+	/**
+	 * @return the number of times the circuit of a peer opened
+	 */
+	public long getOpenedCount() {
+		return this.opened.get();
+	}
+
+	/**
+	 * @return the number of replication tasks dropped while the circuit of their peer
+	 * was open
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return the number of instances replicated to peers catching up
+	 */
+	public long getCaughtUpCount() {
+		return this.caughtUp.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("eureka.server.replication.circuit.opened", this, PeerCircuitBreaker::getOpenedCount)
+				.description("Times the replication circuit of a peer opened").register(registry);
+		FunctionCounter.builder("eureka.server.replication.circuit.dropped", this, PeerCircuitBreaker::getDroppedCount)
+				.description("Replication tasks dropped while the circuit of their peer was open").register(registry);
+		FunctionCounter
+				.builder("eureka.server.replication.circuit.caught-up", this, PeerCircuitBreaker::getCaughtUpCount)
+				.description("Instances replicated to peers catching up after an open circuit").register(registry);
+	}
+
+	private void catchUp(String peerUrl, PeerEurekaNode node, List<ReplicationInstance> instances) {
+		for (ReplicationInstance instance : instances) {
+			InstanceInfo info = this.registry.getInstanceByAppAndId(instance.getAppName(), instance.getId(), false);
+			try {
+				if (info != null) {
+					node.register(info);
+				}
+				else {
+					node.cancel(instance.getAppName(), instance.getId());
+				}
+			}
+			catch (Exception ex) {
+				log.warn("Cannot catch up " + instance.getAppName() + "/" + instance.getId() + " with " + peerUrl,
+						ex);
+			}
+		}
+		this.caughtUp.addAndGet(instances.size());
+		log.info("Replication circuit of " + peerUrl + " closed, caught up with " + instances.size() + " instances");
+	}
+
+	private final class GuardedReplicationClient implements HttpReplicationClient {
+
+		private final String peerUrl;
+
+		private final HttpReplicationClient delegate;
+
+		private final Supplier<PeerEurekaNode> node;
+
+		// instances whose registration, status change or cancellation was dropped
+		private final Map<String, ReplicationInstance> droppedInstances = new LinkedHashMap<>();
+
+		private int failures;
+
+		private long openUntil;
+
+		private boolean open;
+
+		private boolean probing;
+
+		private GuardedReplicationClient(String peerUrl, HttpReplicationClient delegate,
+				Supplier<PeerEurekaNode> node) {
+			this.peerUrl = peerUrl;
+			this.delegate = delegate;
+			this.node = node;
+		}
+
+		@Override
+		public EurekaHttpResponse<ReplicationListResponse> submitBatchUpdates(ReplicationList replicationList) {
+			boolean probe;
+			synchronized (this) {
+				probe = this.open && !this.probing && System.currentTimeMillis() >= this.openUntil;
+				if (this.open && !probe) {
+					return drop(replicationList);
+				}
+				this.probing |= probe;
+			}
+			long start = System.currentTimeMillis();
+			EurekaHttpResponse<ReplicationListResponse> response;
+			try {
+				response = this.delegate.submitBatchUpdates(replicationList);
+			}
+			catch (RuntimeException ex) {
+				completed(probe, false);
+				throw ex;
+			}
+			completed(probe, response.getStatusCode() < 500 && System.currentTimeMillis() - start < slowCallThreshold);
+			return response;
+		}
+
+		private EurekaHttpResponse<ReplicationListResponse> drop(ReplicationList replicationList) {
+			ReplicationListResponse response = new ReplicationListResponse();
+			for (ReplicationInstance instance : replicationList.getReplicationList()) {
+				if (instance.getAction() != Action.Heartbeat) {
+					String key = instance.getAppName() + "/" + instance.getId();
+					this.droppedInstances.remove(key);
+					this.droppedInstances.put(key, instance);
+				}
+				response.addResponse(new ReplicationInstanceResponse(200, null));
+			}
+			dropped.addAndGet(replicationList.getReplicationList().size());
+			return anEurekaHttpResponse(200, response).type(MediaType.APPLICATION_JSON_TYPE).build();
+		}
+
+		private void completed(boolean probe, boolean success) {
+			List<ReplicationInstance> catchUp = null;
+			synchronized (this) {
+				if (probe) {
+					this.probing = false;
+				}
+				if (success) {
+					this.failures = 0;
+					if (probe) {
+						this.open = false;
+						catchUp = new ArrayList<>(this.droppedInstances.values());
+						this.droppedInstances.clear();
+					}
+				}
+				else if (probe || (!this.open && ++this.failures >= failureThreshold)) {
+					if (!this.open) {
+						opened.incrementAndGet();
+						log.warn("Replication circuit of " + this.peerUrl + " opened after " + this.failures
+								+ " failed batches");
+					}
+					this.open = true;
+					this.openUntil = System.currentTimeMillis() + openDuration;
+				}
+			}
+			PeerEurekaNode node = this.node.get();
+			if (catchUp != null && node != null) {
+				catchUp(this.peerUrl, node, catchUp);
+			}
+		}
+
+		@Override
+		public EurekaHttpResponse<Void> statusUpdate(String asgName, ASGStatus newStatus) {
+			return this.delegate.statusUpdate(asgName, newStatus);
+		}
+
+		@Override
+		public EurekaHttpResponse<Void> register(InstanceInfo info) {
+			return this.delegate.register(info);
+		}
+
+		@Override
+		public EurekaHttpResponse<Void> cancel(String appName, String id) {
+			return this.delegate.cancel(appName, id);
+		}
+
+		@Override
+		public EurekaHttpResponse<InstanceInfo> sendHeartBeat(String appName, String id, InstanceInfo info,
+				InstanceStatus overriddenStatus) {
+			return this.delegate.sendHeartBeat(appName, id, info, overriddenStatus);
+		}
+
+		@Override
+		public EurekaHttpResponse<Void> statusUpdate(String appName, String id, InstanceStatus newStatus,
+				InstanceInfo info) {
+			return this.delegate.statusUpdate(appName, id, newStatus, info);
+		}
+
+		@Override
+		public EurekaHttpResponse<Void> deleteStatusOverride(String appName, String id, InstanceInfo info) {
+			return this.delegate.deleteStatusOverride(appName, id, info);
+		}
+
+		@Override
+		public EurekaHttpResponse<Applications> getApplications(String... regions) {
+			return this.delegate.getApplications(regions);
+		}
+
+		@Override
+		public EurekaHttpResponse<Applications> getDelta(String... regions) {
+			return this.delegate.getDelta(regions);
+		}
+
+		@Override
+		public EurekaHttpResponse<Applications> getVip(String vipAddress, String... regions) {
+			return this.delegate.getVip(vipAddress, regions);
+		}
+
+		@Override
+		public EurekaHttpResponse<Applications> getSecureVip(String secureVipAddress, String... regions) {
+			return this.delegate.getSecureVip(secureVipAddress, regions);
+		}
+
+		@Override
+		public EurekaHttpResponse<Application> getApplication(String appName) {
+			return this.delegate.getApplication(appName);
+		}
+
+		@Override
+		public EurekaHttpResponse<InstanceInfo> getInstance(String appName, String id) {
+			return this.delegate.getInstance(appName, id);
+		}
+
+		@Override
+		public EurekaHttpResponse<InstanceInfo> getInstance(String id) {
+			return this.delegate.getInstance(id);
+		}
+
+		@Override
+		public void shutdown() {
+			this.delegate.shutdown();
+		}
+
+	}
+
+}
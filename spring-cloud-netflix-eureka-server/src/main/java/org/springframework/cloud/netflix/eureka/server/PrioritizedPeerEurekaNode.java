@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link PeerEurekaNode} replicating heartbeats through a lane of its own, so that
+ * registrations, cancellations and status changes do not wait behind them when the
+ * replication queue of the peer is saturated.
+ * <p>
+ * Each lane has its own bounded queue of
+ * {@link EurekaServerConfig#getMaxElementsInPeerReplicationPool()} tasks, and the
+ * {@link EurekaServerConfig#getMaxThreadsForPeerReplication()} threads sending them to
+ * the peer are split between the lanes according to their weight, with at least one
+ * thread per lane.
+ * <p>
+ * As a heartbeat can reach the peer after the cancellation of its instance, the peer
+ * answering a heartbeat with a 404 status only gets the instance registered again if it
+ * is still in the local registry, and through the lane of registrations, so that the
+ * registration is sent before any cancellation following it. The dispatchers of the lane
+ * of heartbeats are named after the peer with a {@code -renewals} suffix.
+ *
+ * @author agent agent
+ */
+public class PrioritizedPeerEurekaNode extends PeerEurekaNode {
+
+	private static final String RENEWALS_SUFFIX = "-renewals";
+
+	private final PeerEurekaNode renewals;
+
+	private final Object membershipMonitor = new Object();
+
+	/**
+	 * @param registry the registry replicated to the peer
+	 * @param targetHost the host name of the peer
+	 * @param serviceUrl the service URL of the peer
+	 * @param replicationClient the client sending replication requests to the peer
+	 * @param config the server configuration
+	 * @param membershipWeight the weight of the lane of registrations, cancellations and
+	 * status changes
+	 * @param renewalWeight the weight of the lane of heartbeats
+	 */
+	public PrioritizedPeerEurekaNode(PeerAwareInstanceRegistry registry, String targetHost, String serviceUrl,
+			HttpReplicationClient replicationClient, EurekaServerConfig config, int membershipWeight,
+			int renewalWeight) {
+		super(registry, targetHost, serviceUrl, replicationClient,
+				withReplicationThreads(config, membershipThreads(config, membershipWeight, renewalWeight)));
+		int renewalThreads = Math.max(1,
+				config.getMaxThreadsForPeerReplication() - membershipThreads(config, membershipWeight, renewalWeight));
+		this.renewals = new RenewalLane(registry, targetHost + RENEWALS_SUFFIX, renewalsUrl(serviceUrl),
+				withoutShutdown(replicationClient), withReplicationThreads(config, renewalThreads));
+	}
+
+	@Override
+	public void heartbeat(String appName, String id, InstanceInfo info, InstanceStatus overriddenStatus,
+			boolean primeConnection) throws Throwable {
+		this.renewals.heartbeat(appName, id, info, overriddenStatus, primeConnection);
+	}
+
+	@Override
+	public void cancel(String appName, String id) throws Exception {
+		synchronized (this.membershipMonitor) {
+			super.cancel(appName, id);
+		}
+	}
+
+	@Override
+	public void shutDown() {
+		this.renewals.shutDown();
+		super.shutDown();
+	}
+
+	static int membershipThreads(EurekaServerConfig config, int membershipWeight, int renewalWeight) {
+		Assert.isTrue(membershipWeight > 0 && renewalWeight > 0, "Lane weights must be positive");
+		int threads = config.getMaxThreadsForPeerReplication();
+		int membershipThreads = Math.round((float) threads * membershipWeight / (membershipWeight + renewalWeight));
+		return Math.max(1, Math.min(threads - 1, membershipThreads));
+	}
+
+	/*
+	 * PeerEurekaNode names its batching dispatcher after the host of its service URL,
+	 * which the lane only uses for that since it sends through the given client.
+	 */
+	private static String renewalsUrl(String serviceUrl) {
+		try {
+			URL url = new URL(serviceUrl);
+			return new URL(url.getProtocol(), url.getHost() + RENEWALS_SUFFIX, url.getPort(), url.getFile())
+					.toString();
+		}
+		catch (MalformedURLException ex) {
+			return serviceUrl + RENEWALS_SUFFIX;
+		}
+	}
+
+	/*
+	 * The client is shared by both lanes and shut down with the membership one.
+	 */
+	private static HttpReplicationClient withoutShutdown(HttpReplicationClient client) {
+		return (HttpReplicationClient) Proxy.newProxyInstance(HttpReplicationClient.class.getClassLoader(),
+				new Class<?>[] { HttpReplicationClient.class }, (proxy, method, args) -> {
+					if (method.getName().equals("shutdown")) {
+						return null;
+					}
+					try {
+						return method.invoke(client, args);
+					}
+					catch (InvocationTargetException ex) {
+						throw ex.getTargetException();
+					}
+				});
+	}
+
+	/*
+	 * PeerEurekaNode sizes its task dispatchers from the configuration only, so each lane
+	 * gets a view of it with its share of the replication threads.
+	 */
+	private static EurekaServerConfig withReplicationThreads(EurekaServerConfig config, int threads) {
+		return (EurekaServerConfig) Proxy.newProxyInstance(EurekaServerConfig.class.getClassLoader(),
+				new Class<?>[] { EurekaServerConfig.class }, (proxy, method, args) -> {
+					if (method.getName().equals("getMaxThreadsForPeerReplication")) {
+						return threads;
+					}
+					try {
+						return method.invoke(config, args);
+					}
+					catch (InvocationTargetException ex) {
+						throw ex.getTargetException();
+					}
+				});
+	}
+
+	/**
+	 * Lane of heartbeats, whose registrations only follow heartbeats the peer answered
+	 * with a 404 status and are handed to the lane of registrations.
+	 */
+	private final class RenewalLane extends PeerEurekaNode {
+
+		private final PeerAwareInstanceRegistry registry;
+
+		private RenewalLane(PeerAwareInstanceRegistry registry, String targetHost, String serviceUrl,
+				HttpReplicationClient replicationClient, EurekaServerConfig config) {
+			super(registry, targetHost, serviceUrl, replicationClient, config);
+			this.registry = registry;
+		}
+
+		@Override
+		public void register(InstanceInfo info) throws Exception {
+			// the instance may have been cancelled since the heartbeat was queued, its
+			// cancellation is then queued already, or waits for the registration to be
+			synchronized (PrioritizedPeerEurekaNode.this.membershipMonitor) {
+				InstanceInfo current = this.registry.getInstanceByAppAndId(info.getAppName(), info.getId(), false);
+				if (current != null) {
+					PrioritizedPeerEurekaNode.super.register(current);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.appinfo.LeaseInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.cluster.PeerEurekaNodes;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Periodically repairs the local registry from the ones of the peers, for the changes
+ * whose replication was lost, for instance because a replication queue was full or a
+ * peer unreachable.
+ * <p>
+ * The {@link RegistryDigests} of each peer are compared with the ones of the local
+ * registry, and only the applications whose digests differ are copied from the peer. An
+ * instance copied from a peer only replaces an instance of the local registry with an
+ * older dirty timestamp, and instances missing from a peer are left to the repair of
+ * that peer.
+ * <p>
+ * So that a peer which missed the cancellation of an instance does not bring it back, an
+ * instance is not copied when the peer has not renewed it within its lease duration, or
+ * when it was cancelled locally after the last change of the copy of the peer. The
+ * latter takes this repair being notified of the changes of the registry, by adding
+ * {@link #registryChanged(long, ActionType, InstanceInfo)} as a
+ * {@link RegistryChangeListener} of the registry, and cancellations are only remembered
+ * for the lease duration of their instance and one interval between two repairs.
+ * <p>
+ * This repair is not itself a {@link RegistryChangeListener}, so that it is not one of
+ * the listener beans added to the registry while it is created, which it depends on.
+ *
+ * @author agent agent
+ */
+public class RegistryAntiEntropy implements MeterBinder {
+
+	private static final Log log = LogFactory.getLog(RegistryAntiEntropy.class);
+
+	private static final TypeReference<Map<String, String>> DIGESTS_TYPE = new TypeReference<Map<String, String>>() {
+	};
+
+	private final PeerAwareInstanceRegistry registry;
+
+	private final PeerEurekaNodes peerEurekaNodes;
+
+	private final Function<String, ? extends EurekaHttpClient> clientFactory;
+
+	private final Duration interval;
+
+	private final Client digestClient;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final AtomicLong diverged = new AtomicLong();
+
+	private final AtomicLong repaired = new AtomicLong();
+
+	private final Map<String, Tombstone> tombstones = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param registry the registry to repair
+	 * @param peerEurekaNodes the peers to repair the registry from
+	 * @param serverConfig the server configuration, for the timeouts of digest requests
+	 * @param replicationClientAdditionalFilters the filters to apply to digest requests
+	 * @param clientFactory creates a client for the given peer URL, to copy applications
+	 * with
+	 * @param interval the time between two repairs
+	 */
+	public RegistryAntiEntropy(PeerAwareInstanceRegistry registry, PeerEurekaNodes peerEurekaNodes,
+			EurekaServerConfig serverConfig, ReplicationClientAdditionalFilters replicationClientAdditionalFilters,
+			Function<String, ? extends EurekaHttpClient> clientFactory, Duration interval) {
+		Assert.notNull(registry, "registry must not be null");
+		Assert.notNull(peerEurekaNodes, "peerEurekaNodes must not be null");
+		Assert.notNull(clientFactory, "clientFactory must not be null");
+		Assert.notNull(interval, "interval must not be null");
+		this.registry = registry;
+		this.peerEurekaNodes = peerEurekaNodes;
+		this.clientFactory = clientFactory;
+		this.interval = interval;
+		this.digestClient = Client.create();
+		this.digestClient.setConnectTimeout(serverConfig.getPeerNodeConnectTimeoutMs());
+		this.digestClient.setReadTimeout(serverConfig.getPeerNodeReadTimeoutMs());
+		replicationClientAdditionalFilters.getFilters().forEach(this.digestClient::addFilter);
+	}
+
+	public synchronized void start() {
+		if (this.scheduler != null) {
+			return;
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Eureka-RegistryAntiEntropy");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = this.interval.toMillis();
+		this.scheduler.scheduleWithFixedDelay(this::repair, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+			this.scheduler = null;
+		}
+		this.digestClient.destroy();
+	}
+
+	/**
+	 * Remember the cancellations of the registry, so that copies of the peers older than
+	 * them are not brought back.
+	 * @param version the registry version resulting from the change
+	 * @param action the change
+	 * @param info the instance that changed
+	 * @see RegistryChangeListener#registryChanged(long, ActionType, InstanceInfo)
+	 */
+	public void registryChanged(long version, ActionType action, InstanceInfo info) {
+		if (action == ActionType.DELETED) {
+			long expiry = System.currentTimeMillis() + leaseDuration(info) * 1000L + this.interval.toMillis();
+			this.tombstones.put(key(info), new Tombstone(info.getLastDirtyTimestamp(), expiry));
+		}
+	}
+
+	/**
+	 * Repair the local registry from all peers.
+	 * @return the number of instances copied from the peers
+	 */
+	public int repair() {
+		int count = 0;
+		for (PeerEurekaNode node : this.peerEurekaNodes.getPeerEurekaNodes()) {
+			try {
+				count += repair(node.getServiceUrl());
+			}
+			catch (RuntimeException ex) {
+				log.warn("Cannot repair registry from " + node.getServiceUrl() + ": " + ex.getMessage());
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Repair the local registry from a peer.
+	 * @param peerUrl the service URL of the peer
+	 * @return the number of instances copied from the peer
+	 */
+	public int repair(String peerUrl) {
+		Map<String, String> localDigests = RegistryDigests.of(this.registry.getApplicationsFromLocalRegionOnly());
+		List<String> diverging = new ArrayList<>();
+		getDigests(peerUrl).forEach((appName, digest) -> {
+			if (!digest.equals(localDigests.get(appName))) {
+				diverging.add(appName);
+			}
+		});
+		if (diverging.isEmpty()) {
+			return 0;
+		}
+		this.diverged.addAndGet(diverging.size());
+		long now = System.currentTimeMillis();
+		this.tombstones.values().removeIf(tombstone -> tombstone.expiry <= now);
+		int count = 0;
+		EurekaHttpClient client = this.clientFactory.apply(peerUrl);
+		try {
+			for (String appName : diverging) {
+				EurekaHttpResponse<Application> response = client.getApplication(appName);
+				if (response.getStatusCode() != 200 || response.getEntity() == null) {
+					continue;
+				}
+				for (InstanceInfo info : response.getEntity().getInstances()) {
+					if (isLive(info, now) && ParallelRegistrySync.merge(this.registry, info)) {
+						count++;
+					}
+				}
+			}
+		}
+		finally {
+			client.shutdown();
+		}
+		this.repaired.addAndGet(count);
+		if (count > 0) {
+			log.info("Repaired " + count + " instances of " + diverging.size() + " applications from " + peerUrl);
+		}
+		return count;
+	}
+
+	/*
+	 * Whether the copy of a peer was renewed by the peer within its lease duration and
+	 * changed since the instance was cancelled locally, if it was.
+	 */
+	private boolean isLive(InstanceInfo info, long now) {
+		Tombstone tombstone = this.tombstones.get(key(info));
+		if (tombstone != null && tombstone.lastDirtyTimestamp >= info.getLastDirtyTimestamp()) {
+			return false;
+		}
+		LeaseInfo leaseInfo = info.getLeaseInfo();
+		return leaseInfo == null || leaseInfo.getRenewalTimestamp() <= 0
+				|| now - leaseInfo.getRenewalTimestamp() <= leaseDuration(info) * 1000L;
+	}
+
+	private static int leaseDuration(InstanceInfo info) {
+		LeaseInfo leaseInfo = info.getLeaseInfo();
+		return leaseInfo != null ? leaseInfo.getDurationInSecs() : LeaseInfo.DEFAULT_LEASE_DURATION;
+	}
+
+	private static String key(InstanceInfo info) {
+		return info.getAppName() + "/" + info.getId();
+	}
+
+	/**
+	 * @return the number of applications found to differ from the ones of a peer
+	 */
+	public long getDivergedCount() {
+		return this.diverged.get();
+	}
+
+	/**
+	 * @return the number of instances copied from peers
+	 */
+	public long getRepairedCount() {
+		return this.repaired.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("eureka.server.anti-entropy.diverged", this, RegistryAntiEntropy::getDivergedCount)
+				.description("Applications found to differ from the ones of a peer").register(registry);
+		FunctionCounter.builder("eureka.server.anti-entropy.repaired", this, RegistryAntiEntropy::getRepairedCount)
+				.description("Instances copied from peers by registry repairs").register(registry);
+	}
+
+	/**
+	 * Fetch the digests of the local registry of a peer.
+	 * @param peerUrl the service URL of the peer
+	 * @return the digests of the peer, by application name
+	 */
+	protected Map<String, String> getDigests(String peerUrl) {
+		URI uri = UriComponentsBuilder.fromHttpUrl(peerUrl).path("/" + RegistryDigests.PATH).build().toUri();
+		WebResource.Builder request = this.digestClient
+				.resource(UriComponentsBuilder.fromUri(uri).userInfo(null).build().toUri())
+				.accept(MediaType.APPLICATION_JSON_TYPE).header(PeerEurekaNode.HEADER_REPLICATION, "true");
+		if (uri.getUserInfo() != null) {
+			// like the replication clients, authenticate with the credentials of the URL
+			request = request.header(HttpHeaders.AUTHORIZATION, "Basic "
+					+ Base64.getEncoder().encodeToString(uri.getUserInfo().getBytes(StandardCharsets.UTF_8)));
+		}
+		ClientResponse response = request.get(ClientResponse.class);
+		try {
+			if (response.getStatus() != 200) {
+				throw new IllegalStateException("Unexpected response status " + response.getStatus());
+			}
+			return this.objectMapper.readValue(response.getEntityInputStream(), DIGESTS_TYPE);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	private static final class Tombstone {
+
+		private final long lastDirtyTimestamp;
+
+		private final long expiry;
+
+		private Tombstone(long lastDirtyTimestamp, long expiry) {
+			this.lastDirtyTimestamp = lastDirtyTimestamp;
+			this.expiry = expiry;
+		}
+
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+
+import org.springframework.util.Assert;
+
+/**
+ * Journal of the most recent changes of the registry, indexed by the
+ * {@link InstanceRegistry#getRegistryVersion() registry version} they resulted in, so
+ * that clients can fetch exactly the changes made after the version they are up to date
+ * with.
+ * <p>
+ * Unlike the recently changed queue of the registry, which keeps changes for a fixed
+ * time, the journal keeps a fixed number of them. Clients are told to fetch the full
+ * registry only if the changes they missed are no longer kept.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeJournal implements RegistryChangeListener {
+
+	private final int capacity;
+
+	private final Deque<Entry> entries = new ArrayDeque<>();
+
+	// version after which all the changes are kept
+	private long floor;
+
+	private long version;
+
+	/**
+	 * @param capacity the number of changes to keep
+	 */
+	public RegistryChangeJournal(int capacity) {
+		Assert.isTrue(capacity > 0, "capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	@Override
+	public synchronized void registryChanged(long version, ActionType action, InstanceInfo info) {
+		this.entries.addLast(new Entry(version, action, info));
+		this.version = version;
+		while (this.entries.size() > this.capacity) {
+			this.floor = this.entries.removeFirst().version;
+		}
+	}
+
+	/**
+	 * @return the version of the last change in the journal
+	 */
+	public synchronized long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return the oldest version changes can still be fetched after
+	 */
+	public synchronized long getFloor() {
+		return this.floor;
+	}
+
+	/**
+	 * Get the changes made after a version, keeping only the last change of each
+	 * instance.
+	 * @param version the version to get the changes after
+	 * @return the changes, or null if some of them are no longer kept or the version is
+	 * not one of this journal
+	 */
+	public synchronized Changes since(long version) {
+		if (version < this.floor || version > this.version) {
+			return null;
+		}
+		Map<String, Entry> latest = new LinkedHashMap<>();
+		Iterator<Entry> iterator = this.entries.descendingIterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.version <= version) {
+				break;
+			}
+			latest.putIfAbsent(entry.info.getAppName() + "/" + entry.info.getId(), entry);
+		}
+		List<InstanceInfo> instances = new ArrayList<>(latest.size());
+		for (Entry entry : latest.values()) {
+			// the registry holds the instance, copy it to set the action type
+			InstanceInfo info = new InstanceInfo(entry.info);
+			info.setActionType(entry.action);
+			instances.add(info);
+		}
+		Collections.reverse(instances);
+		return new Changes(this.version, instances);
+	}
+
+	/**
+	 * Changes made to the registry after a version.
+	 */
+	public static final class Changes {
+
+		private final long version;
+
+		private final List<InstanceInfo> instances;
+
+		private Changes(long version, List<InstanceInfo> instances) {
+			this.version = version;
+			this.instances = instances;
+		}
+
+		/**
+		 * @return the version the changes bring the registry to
+		 */
+		public long getVersion() {
+			return this.version;
+		}
+
+		/**
+		 * @return the instances that changed, in the order of their last change, with
+		 * their {@link InstanceInfo#getActionType() action type} set
+		 */
+		public List<InstanceInfo> getInstances() {
+			return this.instances;
+		}
+
+		public boolean isEmpty() {
+			return this.instances.isEmpty();
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final long version;
+
+		private final ActionType action;
+
+		private final InstanceInfo info;
+
+		private Entry(long version, ActionType action, InstanceInfo info) {
+			this.version = version;
+			this.action = action;
+			this.info = info;
+		}
+
+	}
+
+}
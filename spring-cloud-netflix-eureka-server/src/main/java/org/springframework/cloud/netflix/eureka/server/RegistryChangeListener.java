@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+
+/**
+ * Listener of the changes of an {@link InstanceRegistry}, notified of each change with
+ * the {@link InstanceRegistry#getRegistryVersion() registry version} it resulted in.
+ * <p>
+ * Listeners are notified on the thread making the change, in the order of the versions,
+ * so they must not block.
+ *
+ * @author agent agent
+ * @see InstanceRegistry#addRegistryChangeListener(RegistryChangeListener)
+ */
+@FunctionalInterface
+public interface RegistryChangeListener {
+
+	/**
+	 * Called once an instance has been registered, has had its status changed or has
+	 * been cancelled.
+	 * @param version the registry version resulting from the change
+	 * @param action {@link ActionType#ADDED} for a registration,
+	 * {@link ActionType#MODIFIED} for a status change and {@link ActionType#DELETED} for
+	 * a cancellation
+	 * @param info the instance as held by the registry, or as it was when cancelled
+	 */
+	void registryChanged(long version, ActionType action, InstanceInfo info);
+
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Streams the changes of the registry to clients as server-sent events, so that they
+ * learn about registrations, status changes and cancellations as they happen instead of
+ * at their next delta fetch.
+ * <p>
+ * Each change is sent as an event whose id is the
+ * {@link InstanceRegistry#getRegistryEpoch() registry epoch} and the
+ * {@link InstanceRegistry#getRegistryVersion() registry version} it resulted in, as
+ * {@code <epoch>:<version>}, whose name is its {@link ActionType} and whose data is the
+ * instance in JSON. Changes are encoded once, on a dedicated thread, and handed to all
+ * subscribers from there, so that registrations do not wait for the subscribers.
+ * <p>
+ * Events are written to subscribers with non-blocking I/O, through a
+ * {@link WriteListener}, so that a slow subscriber does not hold the others up. Each
+ * subscriber buffers at most {@link #setSubscriberBufferSize(int) a number of} events
+ * that could not be written yet, and is disconnected once that buffer is full, to resume
+ * the stream later.
+ * <p>
+ * The most recent events are kept for subscribers resuming the stream with a
+ * {@code Last-Event-ID} header. Subscribers that cannot resume, because the events they
+ * missed are no longer kept or were dropped when the stream could not keep up, are sent
+ * a {@link #RESET} event, telling them to fetch the full registry again. Versions are
+ * local to a server and start over when it restarts, so subscribers resuming with the
+ * epoch of another server, or of a previous run, are sent a {@link #RESET} event as
+ * well.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeStream extends OncePerRequestFilter
+		implements RegistryChangeListener, MeterBinder, DisposableBean {
+
+	/**
+	 * Path the stream is served at.
+	 */
+	public static final String PATH = EurekaConstants.DEFAULT_PREFIX + "/stream";
+
+	/**
+	 * Name of the event telling subscribers they missed changes.
+	 */
+	public static final String RESET = "RESET";
+
+	private static final Log log = LogFactory.getLog(RegistryChangeStream.class);
+
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+	private final CodecWrapper codec;
+
+	private final int history;
+
+	private final long heartbeatInterval;
+
+	private final BlockingQueue<Change> changes;
+
+	// guarded by itself, along with floor
+	private final Deque<Event> recentEvents = new ArrayDeque<>();
+
+	// version up to which events cannot be replayed any more
+	private long floor;
+
+	private long latest;
+
+	private final AtomicBoolean overflowed = new AtomicBoolean();
+
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong published = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong disconnected = new AtomicLong();
+
+	private volatile int subscriberBufferSize = 1000;
+
+	private Supplier<String> epochSupplier = () -> Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+	private volatile String epoch;
+
+	private final Thread dispatcher;
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param codec the codec to encode instances with
+	 * @param queueCapacity the maximum number of changes waiting to be sent
+	 * @param history the number of recent events kept for resuming subscribers
+	 * @param heartbeatInterval the time without events after which subscribers are sent
+	 * a comment, to detect closed connections and keep proxies from closing idle ones
+	 */
+	public RegistryChangeStream(CodecWrapper codec, int queueCapacity, int history, Duration heartbeatInterval) {
+		Assert.notNull(codec, "codec must not be null");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		this.codec = codec;
+		this.changes = new ArrayBlockingQueue<>(queueCapacity);
+		this.history = history;
+		this.heartbeatInterval = heartbeatInterval.toMillis();
+		this.dispatcher = new Thread(this::dispatch, "Eureka-RegistryChangeStream");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * @param subscriberBufferSize the maximum number of events waiting to be written to
+	 * a subscriber before it is disconnected
+	 */
+	public void setSubscriberBufferSize(int subscriberBufferSize) {
+		Assert.isTrue(subscriberBufferSize > 0, "subscriberBufferSize must be positive");
+		this.subscriberBufferSize = subscriberBufferSize;
+	}
+
+	/**
+	 * Prefix event ids with the epoch of the registry, rather than one of this stream.
+	 * @param epochSupplier the supplier of the {@link InstanceRegistry#getRegistryEpoch()
+	 * registry epoch}, only called once the first event is sent or a subscriber resumes,
+	 * so that the registry can be created after the stream
+	 */
+	public void setRegistryEpoch(Supplier<String> epochSupplier) {
+		Assert.notNull(epochSupplier, "epochSupplier must not be null");
+		this.epochSupplier = epochSupplier;
+	}
+
+	private String epoch() {
+		String epoch = this.epoch;
+		if (epoch == null) {
+			epoch = this.epochSupplier.get();
+			this.epoch = epoch;
+		}
+		return epoch;
+	}
+
+	@Override
+	public void registryChanged(long version, ActionType action, InstanceInfo info) {
+		if (!this.changes.offer(new Change(version, action, info))) {
+			this.dropped.incrementAndGet();
+			this.overflowed.set(true);
+		}
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		if (!"GET".equals(request.getMethod()) || !PATH.equals(path)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		if (!request.isAsyncSupported()) {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			return;
+		}
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType("text/event-stream;charset=UTF-8");
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+		AsyncContext context = request.startAsync(request, response);
+		context.setTimeout(0);
+		Subscriber subscriber = new Subscriber(context);
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				RegistryChangeStream.this.subscribers.remove(subscriber);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				subscriber.close();
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				subscriber.close();
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		subscriber.start();
+		subscribe(subscriber, lastEventId(request));
+	}
+
+	private void subscribe(Subscriber subscriber, Long lastEventId) {
+		synchronized (this.recentEvents) {
+			if (lastEventId == null) {
+				subscriber.send(HEARTBEAT);
+			}
+			else if (lastEventId < this.floor || lastEventId > this.latest) {
+				subscriber.send(reset(this.floor));
+			}
+			else {
+				for (Event event : this.recentEvents) {
+					if (event.version > lastEventId) {
+						subscriber.send(event.bytes);
+					}
+				}
+			}
+			if (subscriber.isOpen()) {
+				this.subscribers.add(subscriber);
+			}
+		}
+	}
+
+	private Long lastEventId(HttpServletRequest request) {
+		String lastEventId = request.getHeader("Last-Event-ID");
+		if (lastEventId == null) {
+			return null;
+		}
+		lastEventId = lastEventId.trim();
+		int separator = lastEventId.indexOf(':');
+		if (separator < 0 || !epoch().equals(lastEventId.substring(0, separator))) {
+			// an event of another server, or of a previous run of this one
+			return -1L;
+		}
+		try {
+			return Long.valueOf(lastEventId.substring(separator + 1));
+		}
+		catch (NumberFormatException ex) {
+			return -1L;
+		}
+	}
+
+	private void dispatch() {
+		while (this.running) {
+			Change change;
+			try {
+				change = this.changes.poll(this.heartbeatInterval, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			try {
+				if (change == null) {
+					broadcast(null, HEARTBEAT);
+				}
+				else {
+					publish(change);
+				}
+			}
+			catch (RuntimeException ex) {
+				log.warn("Cannot stream registry change", ex);
+			}
+		}
+	}
+
+	private void publish(Change change) {
+		Event event;
+		List<Subscriber> targets;
+		synchronized (this.recentEvents) {
+			this.latest = change.version;
+			if (this.overflowed.getAndSet(false)) {
+				// changes were dropped, subscribers have to start over from the full registry
+				this.recentEvents.clear();
+				this.floor = change.version;
+				broadcast(null, reset(change.version));
+				return;
+			}
+			event = new Event(change.version, encode(change));
+			this.recentEvents.addLast(event);
+			while (this.recentEvents.size() > this.history) {
+				this.floor = this.recentEvents.removeFirst().version;
+			}
+			targets = new ArrayList<>(this.subscribers);
+		}
+		this.published.incrementAndGet();
+		broadcast(targets, event.bytes);
+	}
+
+	private void broadcast(List<Subscriber> targets, byte[] bytes) {
+		for (Subscriber subscriber : targets != null ? targets : new ArrayList<>(this.subscribers)) {
+			subscriber.send(bytes);
+		}
+	}
+
+	private byte[] encode(Change change) {
+		String data;
+		try {
+			data = this.codec.encode(change.info);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Cannot encode " + change.info.getId(), ex);
+		}
+		return ("id: " + epoch() + ":" + change.version + "\nevent: " + change.action.name() + "\ndata: " + data
+				+ "\n\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private byte[] reset(long version) {
+		return ("id: " + epoch() + ":" + version + "\nevent: " + RESET + "\ndata: {}\n\n")
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of clients subscribed to the stream
+	 */
+	public int getSubscriberCount() {
+		return this.subscribers.size();
+	}
+
+	/**
+	 * @return the number of changes streamed to subscribers
+	 */
+	public long getPublishedCount() {
+		return this.published.get();
+	}
+
+	/**
+	 * @return the number of changes dropped because the stream could not keep up
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return the number of subscribers disconnected because they could not keep up
+	 */
+	public long getDisconnectedCount() {
+		return this.disconnected.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("eureka.server.change-stream.subscribers", this, RegistryChangeStream::getSubscriberCount)
+				.description("Clients subscribed to the registry change stream").register(registry);
+		FunctionCounter
+				.builder("eureka.server.change-stream.published", this, RegistryChangeStream::getPublishedCount)
+				.description("Registry changes streamed to subscribers").register(registry);
+		FunctionCounter.builder("eureka.server.change-stream.dropped", this, RegistryChangeStream::getDroppedCount)
+				.description("Registry changes dropped by the change stream").register(registry);
+		FunctionCounter
+				.builder("eureka.server.change-stream.disconnected", this, RegistryChangeStream::getDisconnectedCount)
+				.description("Subscribers disconnected for not keeping up with the change stream")
+				.register(registry);
+	}
+
+	@Override
+	public void destroy() {
+		this.running = false;
+		this.dispatcher.interrupt();
+		for (Subscriber subscriber : new ArrayList<>(this.subscribers)) {
+			subscriber.close();
+		}
+	}
+
+	private static final class Change {
+
+		private final long version;
+
+		private final ActionType action;
+
+		private final InstanceInfo info;
+
+		private Change(long version, ActionType action, InstanceInfo info) {
+			this.version = version;
+			this.action = action;
+			this.info = info;
+		}
+
+	}
+
+	private static final class Event {
+
+		private final long version;
+
+		private final byte[] bytes;
+
+		private Event(long version, byte[] bytes) {
+			this.version = version;
+			this.bytes = bytes;
+		}
+
+	}
+
+	/**
+	 * Subscriber buffering the events that cannot be written yet, until the container
+	 * tells its response can take more.
+	 */
+	private final class Subscriber implements WriteListener {
+
+		private final AsyncContext context;
+
+		private final Deque<byte[]> pending = new ArrayDeque<>();
+
+		private ServletOutputStream out;
+
+		private boolean closed;
+
+		private Subscriber(AsyncContext context) {
+			this.context = context;
+		}
+
+		synchronized void start() {
+			try {
+				this.out = this.context.getResponse().getOutputStream();
+				this.out.setWriteListener(this);
+			}
+			catch (IOException | RuntimeException ex) {
+				log.debug("Cannot write registry changes without blocking", ex);
+				close();
+			}
+		}
+
+		synchronized void send(byte[] bytes) {
+			if (this.closed) {
+				return;
+			}
+			if (this.pending.size() >= subscriberBufferSize) {
+				disconnected.incrementAndGet();
+				close();
+				return;
+			}
+			this.pending.addLast(bytes);
+			write();
+		}
+
+		@Override
+		public synchronized void onWritePossible() {
+			if (!this.closed) {
+				write();
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			close();
+		}
+
+		private void write() {
+			try {
+				while (!this.pending.isEmpty() && this.out.isReady()) {
+					this.out.write(this.pending.removeFirst());
+				}
+				if (this.pending.isEmpty() && this.out.isReady()) {
+					this.out.flush();
+				}
+			}
+			catch (IOException | RuntimeException ex) {
+				close();
+			}
+		}
+
+		synchronized boolean isOpen() {
+			return !this.closed;
+		}
+
+		synchronized void close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.pending.clear();
+			subscribers.remove(this);
+			try {
+				this.context.complete();
+			}
+			catch (RuntimeException ex) {
+				// already completed by the container
+			}
+		}
+
+	}
+
+}
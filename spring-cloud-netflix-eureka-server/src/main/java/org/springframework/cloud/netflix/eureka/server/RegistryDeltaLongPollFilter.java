@@ -0,0 +1,468 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.netflix.appinfo.EurekaAccept;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.resources.ServerCodecs;
+import com.netflix.eureka.util.EurekaMonitors;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Serves delta fetches made with the registry version the client is up to date with,
+ * holding them until the registry has changed since that version, leaving every other
+ * request to the Jersey resources of the server.
+ * <p>
+ * A fetch of {@code /apps/delta?since=<epoch>:<version>} is answered with the recent
+ * changes of the local region, as a regular delta fetch, as soon as the
+ * {@link InstanceRegistry#getRegistryVersion() registry version} differs from the given
+ * one, and with a 304 status if it does not change within the timeout. Both carry the
+ * {@link InstanceRegistry#getRegistryEpoch() registry epoch} and version in a
+ * {@link EurekaConstants#REGISTRY_VERSION_HEADER} header, to be sent with the next
+ * fetch. Versions are local to a server and start over when it restarts, so clients
+ * sending the epoch of another server, or of a previous run, are answered with its
+ * recent changes right away.
+ * <p>
+ * With a {@link RegistryChangeJournal}, fetches are answered with exactly the changes
+ * made after the given version, as kept by the journal, and with a 410 status telling
+ * the client to fetch the full registry if the journal no longer has all of them or the
+ * version is of another epoch.
+ *
+ * @author agent agent
+ */
+public class RegistryDeltaLongPollFilter extends OncePerRequestFilter
+		implements RegistryChangeListener, DisposableBean {
+
+	/**
+	 * Path of the delta fetches.
+	 */
+	public static final String PATH = EurekaConstants.DEFAULT_PREFIX + "/apps/delta";
+
+	/**
+	 * Parameter giving the registry epoch and version the client is up to date with.
+	 */
+	public static final String SINCE_PARAMETER = "since";
+
+	/**
+	 * Separator of the registry epoch and version.
+	 */
+	public static final char EPOCH_SEPARATOR = ':';
+
+	private static final Log log = LogFactory.getLog(RegistryDeltaLongPollFilter.class);
+
+	private static final int APPS_HASH_CODE_ATTEMPTS = 3;
+
+	private final InstanceRegistry registry;
+
+	private final EurekaServerConfig serverConfig;
+
+	private final ServerCodecs serverCodecs;
+
+	private final long timeout;
+
+	private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Eureka-DeltaLongPoll");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Map<String, Delta> deltas = new ConcurrentHashMap<>();
+
+	private RegistryChangeJournal journal;
+
+	private boolean appHashCodes;
+
+	private long appsHashCodeVersion = -1;
+
+	private String appsHashCode;
+
+	/**
+	 * @param registry the registry to serve the delta of
+	 * @param serverConfig the server configuration
+	 * @param serverCodecs the codecs to encode the delta with
+	 * @param timeout the maximum time a fetch is held for, or zero to answer fetches
+	 * right away
+	 */
+	public RegistryDeltaLongPollFilter(InstanceRegistry registry, EurekaServerConfig serverConfig,
+			ServerCodecs serverCodecs, Duration timeout) {
+		this.registry = registry;
+		this.serverConfig = serverConfig;
+		this.serverCodecs = serverCodecs;
+		this.timeout = timeout.toMillis();
+	}
+
+	/**
+	 * Answer fetches with exactly the changes made after the given version.
+	 * @param journal the journal to take the changes from
+	 */
+	public void setJournal(RegistryChangeJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Encode the {@link InstanceRegistry#getApplicationHashCodes(Applications) hash codes
+	 * of the applications} changed by JSON deltas along with them.
+	 * @param appHashCodes whether to encode the hash codes of the applications
+	 */
+	public void setAppHashCodes(boolean appHashCodes) {
+		this.appHashCodes = appHashCodes;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		String since = request.getParameter(SINCE_PARAMETER);
+		if (!"GET".equals(request.getMethod()) || !PATH.equals(path) || since == null) {
+			chain.doFilter(request, response);
+			return;
+		}
+		int separator = since.indexOf(EPOCH_SEPARATOR);
+		long version;
+		try {
+			version = Long.parseLong(since.substring(separator + 1));
+		}
+		catch (NumberFormatException ex) {
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		// a version without epoch, or of another epoch, is not one of this registry
+		if (separator < 0 || !this.registry.getRegistryEpoch().equals(since.substring(0, separator))) {
+			version = -1;
+		}
+		if (this.serverConfig.shouldDisableDelta()) {
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		EurekaMonitors.GET_ALL_DELTA.increment();
+		if (!this.registry.shouldAllowAccess(false)) {
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		// same negotiation as the Eureka resources
+		boolean json = accept != null && accept.contains("json");
+		boolean compact = EurekaAccept
+				.fromString(request.getHeader(EurekaAccept.HTTP_X_EUREKA_ACCEPT)) == EurekaAccept.compact;
+		if (!isCurrent(version) || this.timeout == 0 || !request.isAsyncSupported()) {
+			respond(response, version, json, compact);
+			return;
+		}
+		AsyncContext context = request.startAsync(request, response);
+		context.setTimeout(this.timeout);
+		Waiter waiter = new Waiter(context, version, json, compact);
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				RegistryDeltaLongPollFilter.this.waiters.remove(waiter);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				waiter.respond(false);
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				waiter.respond(false);
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		this.waiters.add(waiter);
+		// the registry might have changed before the waiter was added
+		if (!isCurrent(version)) {
+			waiter.respond(true);
+		}
+	}
+
+	@Override
+	public void registryChanged(long version, ActionType action, InstanceInfo info) {
+		if (!this.waiters.isEmpty() && this.wakeUpScheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::wakeUp);
+			}
+			catch (RejectedExecutionException ex) {
+				// destroyed, the held fetches were answered
+			}
+		}
+	}
+
+	private void wakeUp() {
+		this.wakeUpScheduled.set(false);
+		for (Waiter waiter : this.waiters) {
+			if (!isCurrent(waiter.since)) {
+				waiter.respond(true);
+			}
+		}
+	}
+
+	private boolean isCurrent(long version) {
+		return (this.journal != null ? this.journal.getVersion() : this.registry.getRegistryVersion()) == version;
+	}
+
+	private String cursor(long version) {
+		return this.registry.getRegistryEpoch() + EPOCH_SEPARATOR + version;
+	}
+
+	/**
+	 * @return the number of delta fetches currently held
+	 */
+	public int getWaitingCount() {
+		return this.waiters.size();
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+		// clients fetch again from another server
+		for (Waiter waiter : new ArrayList<>(this.waiters)) {
+			waiter.respond(false);
+		}
+	}
+
+	private void respond(HttpServletResponse response, long since, boolean json, boolean compact)
+			throws IOException {
+		if (this.journal == null) {
+			if (this.registry.getRegistryVersion() == since) {
+				notModified(response, since);
+			}
+			else {
+				write(response, delta(json, compact));
+			}
+			return;
+		}
+		for (int attempt = 1;; attempt++) {
+			RegistryChangeJournal.Changes changes = since < 0 ? null : this.journal.since(since);
+			if (changes == null) {
+				// the changes the client missed are no longer kept, or were made to another
+				// registry
+				response.setStatus(HttpServletResponse.SC_GONE);
+				response.setHeader(EurekaConstants.REGISTRY_VERSION_HEADER, cursor(this.journal.getVersion()));
+				return;
+			}
+			if (changes.isEmpty()) {
+				notModified(response, since);
+				return;
+			}
+			String appsHashCode = appsHashCode(changes.getVersion(), attempt == APPS_HASH_CODE_ATTEMPTS);
+			if (appsHashCode != null) {
+				write(response, changes(since, changes, appsHashCode, json, compact));
+				return;
+			}
+			// the journal moved on while the hash code was computed, take its changes again
+		}
+	}
+
+	private void notModified(HttpServletResponse response, long version) {
+		response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		response.setHeader(EurekaConstants.REGISTRY_VERSION_HEADER, cursor(version));
+	}
+
+	private void write(HttpServletResponse response, Delta delta) throws IOException {
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setHeader(EurekaConstants.REGISTRY_VERSION_HEADER, cursor(delta.version));
+		response.setContentType(delta.json ? "application/json" : "application/xml");
+		response.setContentLength(delta.bytes.length);
+		response.getOutputStream().write(delta.bytes);
+	}
+
+	@SuppressWarnings("deprecation")
+	private Delta delta(boolean json, boolean compact) throws IOException {
+		String key = (json ? "json" : "xml") + (compact ? "-compact" : "");
+		// read before taking the delta, which then holds at least the changes up to it
+		long version = this.registry.getRegistryVersion();
+		Delta delta = this.deltas.get(key);
+		if (delta == null || delta.since != -1 || delta.version != version) {
+			delta = new Delta(-1, version, json, encode(this.registry.getApplicationDeltas(), json, compact));
+			this.deltas.put(key, delta);
+		}
+		return delta;
+	}
+
+	private Delta changes(long since, RegistryChangeJournal.Changes changes, String appsHashCode, boolean json,
+			boolean compact) throws IOException {
+		String key = (json ? "json" : "xml") + (compact ? "-compact" : "");
+		// clients that were up to date all fetch the same changes
+		Delta delta = this.deltas.get(key);
+		if (delta != null && delta.since == since && delta.version == changes.getVersion()) {
+			return delta;
+		}
+		Applications applications = new Applications();
+		for (InstanceInfo info : changes.getInstances()) {
+			Application application = applications.getRegisteredApplications(info.getAppName());
+			if (application == null) {
+				application = new Application(info.getAppName());
+				applications.addApplication(application);
+			}
+			application.addInstance(info);
+		}
+		applications.setAppsHashCode(appsHashCode);
+		delta = new Delta(since, changes.getVersion(), json, encode(applications, json, compact));
+		this.deltas.put(key, delta);
+		return delta;
+	}
+
+	/*
+	 * The hash code of the whole registry, which clients check after applying changes,
+	 * computed without holding any lock the registrations need. It is only kept for a
+	 * version of the journal if the journal did not record a change meanwhile, and is
+	 * otherwise only returned on the last attempt. A change made to the registry but not
+	 * yet recorded can still be counted in, and clients then reconcile as after any
+	 * hash code mismatch.
+	 */
+	private String appsHashCode(long version, boolean lastAttempt) {
+		synchronized (this) {
+			if (this.appsHashCode != null && this.appsHashCodeVersion == version) {
+				return this.appsHashCode;
+			}
+		}
+		String appsHashCode = this.registry.getApplications().getReconcileHashCode();
+		if (this.journal.getVersion() != version) {
+			return lastAttempt ? appsHashCode : null;
+		}
+		synchronized (this) {
+			this.appsHashCode = appsHashCode;
+			this.appsHashCodeVersion = version;
+		}
+		return appsHashCode;
+	}
+
+	private byte[] encode(Applications applications, boolean json, boolean compact) throws IOException {
+		CodecWrapper codec;
+		if (json) {
+			codec = compact ? this.serverCodecs.getCompactJsonCodec() : this.serverCodecs.getFullJsonCodec();
+		}
+		else {
+			codec = compact ? this.serverCodecs.getCompactXmlCodec() : this.serverCodecs.getFullXmlCodec();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (this.appHashCodes && codec instanceof CloudJacksonJson) {
+			((CloudJacksonJson) codec).encode(applications, this.registry.getApplicationHashCodes(applications), out);
+		}
+		else {
+			codec.encode(applications, out);
+		}
+		return out.toByteArray();
+	}
+
+	private static final class Delta {
+
+		private final long since;
+
+		private final long version;
+
+		private final boolean json;
+
+		private final byte[] bytes;
+
+		private Delta(long since, long version, boolean json, byte[] bytes) {
+			this.since = since;
+			this.version = version;
+			this.json = json;
+			this.bytes = bytes;
+		}
+
+	}
+
+	private final class Waiter {
+
+		private final AsyncContext context;
+
+		private final long since;
+
+		private final boolean json;
+
+		private final boolean compact;
+
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Waiter(AsyncContext context, long since, boolean json, boolean compact) {
+			this.context = context;
+			this.since = since;
+			this.json = json;
+			this.compact = compact;
+		}
+
+		void respond(boolean changed) {
+			if (!this.done.compareAndSet(false, true)) {
+				return;
+			}
+			waiters.remove(this);
+			try {
+				HttpServletResponse response = (HttpServletResponse) this.context.getResponse();
+				if (changed) {
+					respond(response, this.since, this.json, this.compact);
+				}
+				else {
+					notModified(response, this.since);
+				}
+			}
+			catch (IOException | RuntimeException ex) {
+				log.debug("Cannot answer delta fetch", ex);
+			}
+			finally {
+				try {
+					this.context.complete();
+				}
+				catch (RuntimeException ex) {
+					// already completed by the container
+				}
+			}
+		}
+
+	}
+
+}
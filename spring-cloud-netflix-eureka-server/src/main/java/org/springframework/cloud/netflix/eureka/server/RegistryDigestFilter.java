@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Serves the {@link RegistryDigests} of the local registry of the server to its peers,
+ * encoded once per {@link InstanceRegistry#getRegistryVersion() registry version}.
+ *
+ * @author agent agent
+ */
+public class RegistryDigestFilter extends OncePerRequestFilter {
+
+	/**
+	 * Path the digests are served at.
+	 */
+	public static final String PATH = EurekaConstants.DEFAULT_PREFIX + "/" + RegistryDigests.PATH;
+
+	private final InstanceRegistry registry;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private volatile Encoded encoded;
+
+	public RegistryDigestFilter(InstanceRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		if (!"GET".equals(request.getMethod()) || !PATH.equals(path)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		byte[] digests = digests();
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setContentLength(digests.length);
+		response.getOutputStream().write(digests);
+	}
+
+	private byte[] digests() throws IOException {
+		long version = this.registry.getRegistryVersion();
+		Encoded encoded = this.encoded;
+		if (encoded == null || encoded.version != version) {
+			encoded = new Encoded(version, this.objectMapper
+					.writeValueAsBytes(RegistryDigests.of(this.registry.getApplicationsFromLocalRegionOnly())));
+			this.encoded = encoded;
+		}
+		return encoded.bytes;
+	}
+
+	private static final class Encoded {
+
+		private final long version;
+
+		private final byte[] bytes;
+
+		private Encoded(long version, byte[] bytes) {
+			this.version = version;
+			this.bytes = bytes;
+		}
+
+	}
+
+}
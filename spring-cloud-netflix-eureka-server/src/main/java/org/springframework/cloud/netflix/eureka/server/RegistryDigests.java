@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+
+/**
+ * Digests of the applications of a registry, which peers compare to find out the
+ * applications their registries disagree on.
+ * <p>
+ * The digest of an application starts with its instance counts by status, in the
+ * format of {@link Applications#getReconcileHashCode()}, followed by a hash of the ids
+ * and dirty timestamps of its instances, so that it also changes when instances are
+ * replaced or updated without their counts changing.
+ *
+ * @author agent agent
+ */
+public final class RegistryDigests {
+
+	/**
+	 * Path of the digests of the local registry of a server, relative to its service
+	 * URL.
+	 */
+	public static final String PATH = "peerreplication/digests";
+
+	private RegistryDigests() {
+	}
+
+	/**
+	 * @param applications the applications of a registry
+	 * @return the digests of the applications with instances, by application name
+	 */
+	public static Map<String, String> of(Applications applications) {
+		Map<String, String> digests = new TreeMap<>();
+		for (Application application : applications.getRegisteredApplications()) {
+			if (!application.getInstances().isEmpty()) {
+				digests.put(application.getName(), digest(application));
+			}
+		}
+		return digests;
+	}
+
+	/**
+	 * @param application an application of a registry
+	 * @return the digest of the application
+	 */
+	public static String digest(Application application) {
+		Applications single = new Applications();
+		single.addApplication(application);
+		List<String> instances = new ArrayList<>();
+		for (InstanceInfo info : application.getInstances()) {
+			instances.add(info.getId() + "@" + info.getLastDirtyTimestamp());
+		}
+		Collections.sort(instances);
+		return single.getReconcileHashCode() + ":" + Integer.toHexString(instances.hashCode());
+	}
+
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.resources.ServerCodecs;
+
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the encoded registry views served to clients, so that each of them is only
+ * encoded once per version of the registry rather than once per fetch.
+ * <p>
+ * A payload is encoded again once the {@link InstanceRegistry#getRegistryVersion()
+ * registry version} has changed. When
+ * {@link EurekaServerConfig#shouldUseReadOnlyResponseCache()} is enabled, like the
+ * read-only response cache of the server, a payload is kept for at least
+ * {@link EurekaServerConfig#getResponseCacheUpdateIntervalMs()} regardless of the
+ * registry version. Delta views, whose changes leave the recently changed queue as time
+ * goes by, and views including remote regions, whose changes do not affect the registry
+ * version, are encoded again once that interval has elapsed. Like the response cache of
+ * the server, every payload is encoded again once
+ * {@link EurekaServerConfig#getResponseCacheAutoExpirationInSeconds()} have elapsed.
+ * <p>
+ * The cache keeps the payloads of at most {@link #DEFAULT_MAX_ENTRIES} views by default,
+ * dropping the least recently used ones, since views are keyed by VIP addresses and
+ * remote regions given by clients.
+ *
+ * @author agent agent
+ */
+public class RegistryPayloadCache {
+
+	private final InstanceRegistry registry;
+
+	private final EurekaServerConfig serverConfig;
+
+	private final ServerCodecs serverCodecs;
+
+	private final CodecWrapper smileCodec;
+
+	/**
+	 * Default maximum number of cached views.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private final Map<Key, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+			return size() > RegistryPayloadCache.this.maxEntries;
+		}
+	});
+
+	private boolean appHashCodes;
+
+	public RegistryPayloadCache(InstanceRegistry registry, EurekaServerConfig serverConfig, ServerCodecs serverCodecs,
+			CodecWrapper smileCodec) {
+		Assert.notNull(registry, "registry must not be null");
+		Assert.notNull(serverConfig, "serverConfig must not be null");
+		Assert.notNull(serverCodecs, "serverCodecs must not be null");
+		Assert.notNull(smileCodec, "smileCodec must not be null");
+		this.registry = registry;
+		this.serverConfig = serverConfig;
+		this.serverCodecs = serverCodecs;
+		this.smileCodec = smileCodec;
+	}
+
+	/**
+	 * @param maxEntries the maximum number of views to keep payloads of, compressed and
+	 * plain payloads of a view counting separately
+	 */
+	public void setMaxEntries(int maxEntries) {
+		Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Encode the {@link InstanceRegistry#getApplicationHashCodes(Applications) hash codes
+	 * of the applications} changed by {@link View#DELTA} views of the local region in
+	 * JSON and Smile, so that clients can only fetch the applications that diverged when
+	 * their registry does not reconcile with the delta.
+	 * @param appHashCodes whether to encode the hash codes of the applications
+	 */
+	public void setAppHashCodes(boolean appHashCodes) {
+		this.appHashCodes = appHashCodes;
+	}
+
+	/**
+	 * Get the payload of a registry view, encoding it if there is no current one.
+	 * @param view the registry view
+	 * @param name the VIP address of a {@link View#VIP} or {@link View#SVIP} view,
+	 * ignored otherwise
+	 * @param regions the sorted remote regions to include in a {@link View#FULL} or
+	 * {@link View#DELTA} view, or null for the local region only
+	 * @param format the format to encode the view in
+	 * @param compact whether to encode instances in their compact form
+	 * @param gzip whether to compress the encoded view
+	 * @return the payload of the view
+	 * @throws IOException if the view cannot be encoded
+	 */
+	public Payload get(View view, String name, String[] regions, Format format, boolean compact, boolean gzip)
+			throws IOException {
+		boolean vip = view == View.VIP || view == View.SVIP;
+		Key key = new Key(view, vip ? name : null, vip || regions == null ? "" : String.join(",", regions), format,
+				compact && format != Format.SMILE, gzip);
+		return entry(key).get(vip ? null : regions);
+	}
+
+	/**
+	 * @param format the format to encode a view in
+	 * @param compact whether to encode instances in their compact form
+	 * @return whether views in the given format can be written with
+	 * {@link #writeTo(View, String, String[], Format, OutputStream, int)}
+	 */
+	public boolean isStreamable(Format format, boolean compact) {
+		return codec(format, compact) instanceof CloudJacksonJson;
+	}
+
+	/**
+	 * Encode a registry view straight to a stream, one application at a time, bypassing
+	 * the cache. Only supported for streamable formats.
+	 * @param view the registry view
+	 * @param name the VIP address of a {@link View#VIP} or {@link View#SVIP} view,
+	 * ignored otherwise
+	 * @param regions the sorted remote regions to include in a {@link View#FULL} or
+	 * {@link View#DELTA} view, or null for the local region only
+	 * @param format the format to encode the view in
+	 * @param out the stream to write to
+	 * @param flushInterval the number of applications to write between two flushes
+	 * @throws IOException if the view cannot be written
+	 * @see #isStreamable(Format, boolean)
+	 */
+	public void writeTo(View view, String name, String[] regions, Format format, OutputStream out, int flushInterval)
+			throws IOException {
+		Assert.state(isStreamable(format, false), () -> format + " is not streamable");
+		((CloudJacksonJson) codec(format, false)).encodeStreaming(applications(view, name, regions), out,
+				flushInterval);
+	}
+
+	private Entry entry(Key key) {
+		return this.entries.computeIfAbsent(key, Entry::new);
+	}
+
+	private boolean isCurrent(Payload payload, long version, long now, boolean timeDependent) {
+		long age = now - payload.timestamp;
+		if (age >= TimeUnit.SECONDS.toMillis(this.serverConfig.getResponseCacheAutoExpirationInSeconds())) {
+			return false;
+		}
+		boolean sameVersion = payload.version == version;
+		if (age < this.serverConfig.getResponseCacheUpdateIntervalMs()) {
+			return sameVersion || this.serverConfig.shouldUseReadOnlyResponseCache();
+		}
+		return sameVersion && !timeDependent && this.serverConfig.getRemoteRegionUrlsWithName().isEmpty();
+	}
+
+	private byte[] encode(Key key, String[] regions) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CodecWrapper codec = codec(key.format, key.compact);
+		Applications applications = applications(key.view, key.name, regions);
+		if (this.appHashCodes && key.view == View.DELTA && regions == null && codec instanceof CloudJacksonJson) {
+			((CloudJacksonJson) codec).encode(applications, this.registry.getApplicationHashCodes(applications), out);
+		}
+		else {
+			codec.encode(applications, out);
+		}
+		return out.toByteArray();
+	}
+
+	private CodecWrapper codec(Format format, boolean compact) {
+		switch (format) {
+		case SMILE:
+			return this.smileCodec;
+		case XML:
+			return compact ? this.serverCodecs.getCompactXmlCodec() : this.serverCodecs.getFullXmlCodec();
+		default:
+			return compact ? this.serverCodecs.getCompactJsonCodec() : this.serverCodecs.getFullJsonCodec();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private Applications applications(View view, String name, String[] regions) {
+		switch (view) {
+		case DELTA:
+			return regions != null ? this.registry.getApplicationDeltasFromMultipleRegions(regions)
+					: this.registry.getApplicationDeltas();
+		case VIP:
+		case SVIP:
+			return applicationsForVip(view, name);
+		default:
+			return regions != null ? this.registry.getApplicationsFromMultipleRegions(regions)
+					: this.registry.getApplications();
+		}
+	}
+
+	private Applications applicationsForVip(View view, String name) {
+		Applications applications = new Applications();
+		for (Application application : this.registry.getApplications().getRegisteredApplications()) {
+			Application matching = null;
+			for (InstanceInfo info : application.getInstances()) {
+				String vipAddress = view == View.VIP ? info.getVIPAddress() : info.getSecureVipAddress();
+				if (vipAddress == null) {
+					continue;
+				}
+				String[] vipAddresses = vipAddress.split(",");
+				Arrays.sort(vipAddresses);
+				if (Arrays.binarySearch(vipAddresses, name) >= 0) {
+					if (matching == null) {
+						matching = new Application(application.getName());
+						applications.addApplication(matching);
+					}
+					matching.addInstance(info);
+				}
+			}
+		}
+		applications.setAppsHashCode(applications.getReconcileHashCode());
+		return applications;
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Registry views that can be cached.
+	 */
+	public enum View {
+
+		/**
+		 * All applications, as served by {@code /apps}.
+		 */
+		FULL,
+
+		/**
+		 * Recent changes, as served by {@code /apps/delta}.
+		 */
+		DELTA,
+
+		/**
+		 * Instances with a VIP address, as served by {@code /vips/{vipAddress}}.
+		 */
+		VIP,
+
+		/**
+		 * Instances with a secure VIP address, as served by {@code /svips/{svipAddress}}.
+		 */
+		SVIP
+
+	}
+
+	/**
+	 * Formats a registry view can be encoded in.
+	 */
+	public enum Format {
+
+		/**
+		 * JSON.
+		 */
+		JSON("application/json"),
+
+		/**
+		 * XML.
+		 */
+		XML("application/xml"),
+
+		/**
+		 * Jackson Smile.
+		 */
+		SMILE(CloudJacksonSmile.MEDIA_TYPE);
+
+		private final String mediaType;
+
+		Format(String mediaType) {
+			this.mediaType = mediaType;
+		}
+
+		public String getMediaType() {
+			return this.mediaType;
+		}
+
+	}
+
+	/**
+	 * An encoded registry view. Payloads are immutable and shared by all the requests
+	 * for the same view.
+	 */
+	public static final class Payload {
+
+		private final byte[] bytes;
+
+		private final long version;
+
+		private final long timestamp;
+
+		private final boolean gzipped;
+
+		private Payload(byte[] bytes, long version, long timestamp, boolean gzipped) {
+			this.bytes = bytes;
+			this.version = version;
+			this.timestamp = timestamp;
+			this.gzipped = gzipped;
+		}
+
+		/**
+		 * @return the registry version the payload was encoded at
+		 */
+		public long getVersion() {
+			return this.version;
+		}
+
+		public boolean isGzipped() {
+			return this.gzipped;
+		}
+
+		public int getContentLength() {
+			return this.bytes.length;
+		}
+
+		/**
+		 * @return a read-only view of the payload
+		 */
+		public ByteBuffer asByteBuffer() {
+			return ByteBuffer.wrap(this.bytes).asReadOnlyBuffer();
+		}
+
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(this.bytes);
+		}
+
+	}
+
+	private final class Entry {
+
+		private final Key key;
+
+		private Payload payload;
+
+		private Payload source;
+
+		private Entry(Key key) {
+			this.key = key;
+		}
+
+		synchronized Payload get(String[] regions) throws IOException {
+			if (this.key.gzip) {
+				Payload plain = entry(this.key.plain()).get(regions);
+				if (this.source != plain) {
+					this.payload = new Payload(gzip(plain.bytes), plain.version, plain.timestamp, true);
+					this.source = plain;
+				}
+				return this.payload;
+			}
+			long version = registry.getRegistryVersion();
+			long now = System.currentTimeMillis();
+			if (this.payload == null
+					|| !isCurrent(this.payload, version, now, regions != null || this.key.view == View.DELTA)) {
+				this.payload = new Payload(encode(this.key, regions), version, now, false);
+			}
+			return this.payload;
+		}
+
+	}
+
+	private static final class Key {
+
+		private final View view;
+
+		private final String name;
+
+		private final String regions;
+
+		private final Format format;
+
+		private final boolean compact;
+
+		private final boolean gzip;
+
+		private Key(View view, String name, String regions, Format format, boolean compact, boolean gzip) {
+			this.view = view;
+			this.name = name;
+			this.regions = regions;
+			this.format = format;
+			this.compact = compact;
+			this.gzip = gzip;
+		}
+
+		private Key plain() {
+			return new Key(this.view, this.name, this.regions, this.format, this.compact, false);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Key key = (Key) o;
+			return this.view == key.view && Objects.equals(this.name, key.name)
+					&& this.regions.equals(key.regions) && this.format == key.format && this.compact == key.compact
+					&& this.gzip == key.gzip;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.view, this.name, this.regions, this.format, this.compact, this.gzip);
+		}
+
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.netflix.appinfo.EurekaAccept;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.util.EurekaMonitors;
+
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.Format;
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.Payload;
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.View;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Serves full, delta and VIP registry fetches from a {@link RegistryPayloadCache},
+ * leaving every other request to the Jersey resources of the server.
+ * <p>
+ * Fetches in the Smile format, requested by listing it in the {@code Accept} header, and
+ * fetches in JSON and XML are each only served by this filter when enabled, and by the
+ * Jersey resources otherwise. Payloads are compressed for clients accepting the gzip
+ * encoding. Full fetches can also be streamed straight to the response rather than
+ * served from the cache.
+ *
+ * @author agent agent
+ */
+public class RegistryPayloadFilter extends OncePerRequestFilter {
+
+	private static final String APPS_PATH = EurekaConstants.DEFAULT_PREFIX + "/apps";
+
+	private static final String VIPS_PATH = EurekaConstants.DEFAULT_PREFIX + "/vips/";
+
+	private static final String SVIPS_PATH = EurekaConstants.DEFAULT_PREFIX + "/svips/";
+
+	private final InstanceRegistry registry;
+
+	private final EurekaServerConfig serverConfig;
+
+	private final RegistryPayloadCache payloadCache;
+
+	private final boolean textFormats;
+
+	private boolean smile;
+
+	private int streamingFlushInterval;
+
+	/**
+	 * @param registry the registry to check access to
+	 * @param serverConfig the server configuration
+	 * @param payloadCache the cache to get payloads from
+	 * @param textFormats whether to also serve JSON and XML fetches
+	 */
+	public RegistryPayloadFilter(InstanceRegistry registry, EurekaServerConfig serverConfig,
+			RegistryPayloadCache payloadCache, boolean textFormats) {
+		this.registry = registry;
+		this.serverConfig = serverConfig;
+		this.payloadCache = payloadCache;
+		this.textFormats = textFormats;
+	}
+
+	/**
+	 * Serve registry fetches in the Smile format to clients listing it in their
+	 * {@code Accept} header. Without it, they are left to the Jersey resources, which
+	 * answer in JSON or XML.
+	 * @param smile whether to serve fetches in Smile
+	 */
+	public void setSmile(boolean smile) {
+		this.smile = smile;
+	}
+
+	/**
+	 * Stream full registry fetches straight to the response, one application at a time,
+	 * instead of serving them from the cache. Only applies to formats the cache can
+	 * stream, JSON ones included even if JSON fetches are not otherwise served by this
+	 * filter.
+	 * @param streamingFlushInterval the number of applications to write between two
+	 * flushes of the response, or 0 to serve full fetches from the cache
+	 */
+	public void setStreamingFlushInterval(int streamingFlushInterval) {
+		this.streamingFlushInterval = streamingFlushInterval;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		View view = "GET".equals(request.getMethod()) ? view(path) : null;
+		Format format = format(request.getHeader(HttpHeaders.ACCEPT), this.smile);
+		boolean compact = EurekaAccept
+				.fromString(request.getHeader(EurekaAccept.HTTP_X_EUREKA_ACCEPT)) == EurekaAccept.compact;
+		boolean streaming = this.streamingFlushInterval > 0 && view == View.FULL
+				&& this.payloadCache.isStreamable(format, compact);
+		if (view == null || !(format == Format.SMILE || this.textFormats || streaming)) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		String name = null;
+		String[] regions = null;
+		if (view == View.VIP || view == View.SVIP) {
+			name = UriUtils.decode(path.substring((view == View.VIP ? VIPS_PATH : SVIPS_PATH).length()),
+					StandardCharsets.UTF_8);
+			if (!this.registry.shouldAllowAccess(false)) {
+				response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+				return;
+			}
+		}
+		else {
+			String regionsParameter = request.getParameter("regions");
+			if (StringUtils.hasText(regionsParameter)) {
+				regions = regionsParameter.toLowerCase().split(",");
+				Arrays.sort(regions);
+			}
+			if (view == View.DELTA && this.serverConfig.shouldDisableDelta()) {
+				response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+				return;
+			}
+			count(view == View.DELTA, regions != null);
+			if (!this.registry.shouldAllowAccess(regions != null)) {
+				response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+				return;
+			}
+		}
+
+		String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		if (streaming) {
+			stream(response, regions, format, gzip);
+			return;
+		}
+		Payload payload = this.payloadCache.get(view, name, regions, format, compact, gzip);
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(format.getMediaType());
+		if (payload.isGzipped()) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		response.setContentLength(payload.getContentLength());
+		payload.writeTo(response.getOutputStream());
+	}
+
+	private void stream(HttpServletResponse response, String[] regions, Format format, boolean gzip)
+			throws IOException {
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(format.getMediaType());
+		if (!gzip) {
+			this.payloadCache.writeTo(View.FULL, null, regions, format, response.getOutputStream(),
+					this.streamingFlushInterval);
+			return;
+		}
+		response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), true);
+		this.payloadCache.writeTo(View.FULL, null, regions, format, out, this.streamingFlushInterval);
+		out.finish();
+	}
+
+	private View view(String path) {
+		if (path.equals(APPS_PATH) || path.equals(APPS_PATH + "/")) {
+			return View.FULL;
+		}
+		if (path.equals(APPS_PATH + "/delta")) {
+			return View.DELTA;
+		}
+		if (isVipPath(path, VIPS_PATH)) {
+			return View.VIP;
+		}
+		if (isVipPath(path, SVIPS_PATH)) {
+			return View.SVIP;
+		}
+		return null;
+	}
+
+	private boolean isVipPath(String path, String prefix) {
+		return path.startsWith(prefix) && path.length() > prefix.length() && path.indexOf('/', prefix.length()) < 0;
+	}
+
+	private Format format(String accept, boolean smile) {
+		if (smile && accept != null && accept.contains(CloudJacksonSmile.MEDIA_TYPE)) {
+			return Format.SMILE;
+		}
+		// same negotiation as the Eureka resources
+		return accept != null && accept.contains("json") ? Format.JSON : Format.XML;
+	}
+
+	private void count(boolean delta, boolean remoteRegions) {
+		if (delta) {
+			(remoteRegions ? EurekaMonitors.GET_ALL_DELTA_WITH_REMOTE_REGIONS : EurekaMonitors.GET_ALL_DELTA)
+					.increment();
+		}
+		else {
+			(remoteRegions ? EurekaMonitors.GET_ALL_WITH_REMOTE_REGIONS : EurekaMonitors.GET_ALL).increment();
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+
+import org.springframework.util.Assert;
+
+/**
+ * Stores the instances of the local registry in a file, so that a restarted server that
+ * finds no peer to copy the registry from can start from the last known registry instead
+ * of an empty one.
+ * <p>
+ * The file starts with a header holding a magic number, the format version, the time the
+ * snapshot was taken and the number of instances, followed by one record per instance: the
+ * length and CRC32 checksum of the encoded instance, then the instance as encoded by the
+ * given codec, JSON with the default configuration. Snapshots are written to a temporary
+ * file which then replaces the previous snapshot, so that a reader never sees a partly
+ * written snapshot.
+ *
+ * @author agent agent
+ */
+public class RegistrySnapshotStore {
+
+	private static final int MAGIC = 0x45524753;
+
+	private static final byte VERSION = 1;
+
+	private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES + Integer.BYTES;
+
+	private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+	private final Path file;
+
+	private final CodecWrapper codec;
+
+	public RegistrySnapshotStore(Path file, CodecWrapper codec) {
+		Assert.notNull(file, "file must not be null");
+		Assert.notNull(codec, "codec must not be null");
+		this.file = file;
+		this.codec = codec;
+	}
+
+	public Path getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Replace the stored snapshot with the instances of the given applications.
+	 * @param applications the applications of the local registry
+	 * @param timestamp the time the snapshot is taken at
+	 * @return the number of instances written
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public int write(Applications applications, long timestamp) throws IOException {
+		List<byte[]> records = new ArrayList<>();
+		long size = HEADER_SIZE;
+		for (Application application : applications.getRegisteredApplications()) {
+			for (InstanceInfo info : application.getInstances()) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+				this.codec.encode(info, out);
+				byte[] record = out.toByteArray();
+				records.add(record);
+				size += RECORD_HEADER_SIZE + record.length;
+			}
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Registry snapshot of " + size + " bytes is too large");
+		}
+
+		Path directory = this.file.toAbsolutePath().getParent();
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			buffer.putInt(MAGIC);
+			buffer.put(VERSION);
+			buffer.putLong(timestamp);
+			buffer.putInt(records.size());
+			CRC32 checksum = new CRC32();
+			for (byte[] record : records) {
+				checksum.reset();
+				checksum.update(record, 0, record.length);
+				buffer.putInt(record.length);
+				buffer.putInt((int) checksum.getValue());
+				buffer.put(record);
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		try {
+			Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException ex) {
+			Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return records.size();
+	}
+
+	/**
+	 * Read the stored snapshot.
+	 * @return the stored snapshot, or {@code null} if there is none
+	 * @throws IOException if the snapshot cannot be read or is corrupted
+	 */
+	public Snapshot read() throws IOException {
+		if (!Files.isRegularFile(this.file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw corrupted("unexpected size " + size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw corrupted("truncated while being read");
+				}
+			}
+			buffer.flip();
+			if (buffer.getInt() != MAGIC) {
+				throw corrupted("not a registry snapshot");
+			}
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw corrupted("unsupported version " + version);
+			}
+			long timestamp = buffer.getLong();
+			int count = buffer.getInt();
+			if (count < 0) {
+				throw corrupted("negative instance count");
+			}
+			List<InstanceInfo> instances = new ArrayList<>(Math.min(count, 1024));
+			CRC32 checksum = new CRC32();
+			for (int i = 0; i < count; i++) {
+				if (buffer.remaining() < RECORD_HEADER_SIZE) {
+					throw corrupted("truncated after " + i + " of " + count + " instances");
+				}
+				int length = buffer.getInt();
+				int expectedChecksum = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					throw corrupted("truncated after " + i + " of " + count + " instances");
+				}
+				byte[] record = new byte[length];
+				buffer.get(record);
+				checksum.reset();
+				checksum.update(record, 0, length);
+				if ((int) checksum.getValue() != expectedChecksum) {
+					throw corrupted("checksum mismatch for instance " + i);
+				}
+				instances.add(this.codec.decode(new ByteArrayInputStream(record), InstanceInfo.class));
+			}
+			return new Snapshot(timestamp, instances);
+		}
+	}
+
+	private IOException corrupted(String reason) {
+		return new IOException("Corrupted registry snapshot " + this.file + ": " + reason);
+	}
+
+	/**
+	 * The instances of a stored snapshot.
+	 */
+	public static class Snapshot {
+
+		private final long timestamp;
+
+		private final List<InstanceInfo> instances;
+
+		Snapshot(long timestamp, List<InstanceInfo> instances) {
+			this.timestamp = timestamp;
+			this.instances = Collections.unmodifiableList(instances);
+		}
+
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+
+		public List<InstanceInfo> getInstances() {
+			return this.instances;
+		}
+
+	}
+
+}
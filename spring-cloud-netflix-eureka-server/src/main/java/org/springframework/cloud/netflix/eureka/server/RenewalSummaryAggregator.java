@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRenewalSummaryEvent;
+
+/**
+ * Collects renewals between two {@link EurekaRenewalSummaryEvent}s.
+ *
+ * @author agent agent
+ */
+class RenewalSummaryAggregator {
+
+	/*
+	 * Renewals hold the read lock so that they never land in a window that has already
+	 * been summarized.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Map<String, AppRenewals> window = new ConcurrentHashMap<>();
+
+	void record(String appName, String serverId) {
+		this.lock.readLock().lock();
+		try {
+			this.window.computeIfAbsent(appName, name -> new AppRenewals()).record(serverId);
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Close the current window and summarize it.
+	 * @param source the event source
+	 * @return a summary of the renewals since the previous call, or {@code null} if
+	 * there were none
+	 */
+	EurekaRenewalSummaryEvent summarize(Object source) {
+		Map<String, AppRenewals> closed;
+		this.lock.writeLock().lock();
+		try {
+			closed = this.window;
+			this.window = new ConcurrentHashMap<>();
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+		if (closed.isEmpty()) {
+			return null;
+		}
+		Map<String, Long> renewalCounts = new HashMap<>();
+		Map<String, Set<String>> instanceIds = new HashMap<>();
+		closed.forEach((appName, renewals) -> {
+			renewalCounts.put(appName, renewals.count.sum());
+			instanceIds.put(appName, new HashSet<>(renewals.instanceIds));
+		});
+		return new EurekaRenewalSummaryEvent(source, renewalCounts, instanceIds);
+	}
+
+	private static class AppRenewals {
+
+		private final LongAdder count = new LongAdder();
+
+		private final Set<String> instanceIds = ConcurrentHashMap.newKeySet();
+
+		void record(String serverId) {
+			this.count.increment();
+			this.instanceIds.add(serverId);
+		}
+
+	}
+
+}
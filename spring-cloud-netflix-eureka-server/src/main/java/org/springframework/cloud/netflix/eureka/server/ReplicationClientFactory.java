@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import com.netflix.eureka.cluster.HttpReplicationClient;
+
+/**
+ * Creates the clients used to replicate registry changes to the peers of the server.
+ *
+ * @author agent agent
+ * @see JerseyReplicationClientFactory
+ * @see WebClientReplicationClientFactory
+ */
+@FunctionalInterface
+public interface ReplicationClientFactory {
+
+	/**
+	 * Create a client for the given peer.
+	 * @param peerEurekaNodeUrl the service URL of the peer
+	 * @return the replication client
+	 */
+	HttpReplicationClient create(String peerEurekaNodeUrl);
+
+}
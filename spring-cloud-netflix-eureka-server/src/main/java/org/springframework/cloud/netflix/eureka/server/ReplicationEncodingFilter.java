@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * Jersey {@link ClientFilter} encoding the bodies of replication requests with a given
+ * codec, and compressing the ones of at least a minimum size. Compressed requests carry
+ * the matching {@code Content-Encoding}, which peers decode with a
+ * {@link RequestContentDecodingFilter}.
+ * <p>
+ * The filter must come last before the request is sent, so that the filters ahead of it
+ * still see the entity of the request rather than its encoded form.
+ *
+ * @author agent agent
+ */
+public class ReplicationEncodingFilter extends ClientFilter {
+
+	private final CodecWrapper codec;
+
+	private final Compression compression;
+
+	private final int minSize;
+
+	/**
+	 * @param codec the codec to encode request bodies with
+	 * @param compression the compression to apply to request bodies
+	 * @param minSize the minimum size, in bytes, of an encoded body to compress it
+	 */
+	public ReplicationEncodingFilter(CodecWrapper codec, Compression compression, int minSize) {
+		Assert.notNull(codec, "codec must not be null");
+		Assert.notNull(compression, "compression must not be null");
+		Assert.state(compression.isAvailable(), () -> compression + " compression requires " + compression.library);
+		this.codec = codec;
+		this.compression = compression;
+		this.minSize = minSize;
+	}
+
+	@Override
+	public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+		Object entity = request.getEntity();
+		if (entity != null) {
+			try {
+				byte[] body = entity instanceof byte[] ? (byte[]) entity : encode(entity);
+				if (this.compression != Compression.NONE && body.length >= this.minSize
+						&& !request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+					body = this.compression.compress(body);
+					request.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, this.compression.getContentEncoding());
+				}
+				request.setEntity(body);
+			}
+			catch (IOException ex) {
+				throw new ClientHandlerException(ex);
+			}
+		}
+		return getNext().handle(request);
+	}
+
+	private byte[] encode(Object entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.codec.encode(entity, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Compressions of replication request bodies.
+	 */
+	public enum Compression {
+
+		/**
+		 * Bodies are sent as encoded.
+		 */
+		NONE(null, null),
+
+		/**
+		 * Bodies are compressed with gzip.
+		 */
+		GZIP("gzip", null),
+
+		/**
+		 * Bodies are compressed with Zstandard, which compresses registry documents
+		 * about as well as gzip at a fraction of its cost. Requires {@code zstd-jni}.
+		 */
+		ZSTD("zstd", "zstd-jni");
+
+		private final String contentEncoding;
+
+		private final String library;
+
+		Compression(String contentEncoding, String library) {
+			this.contentEncoding = contentEncoding;
+			this.library = library;
+		}
+
+		/**
+		 * @return the value of the {@code Content-Encoding} header of bodies compressed
+		 * this way, or null for {@link #NONE}
+		 */
+		public String getContentEncoding() {
+			return this.contentEncoding;
+		}
+
+		/**
+		 * @return whether the libraries required by the compression are available
+		 */
+		public boolean isAvailable() {
+			return this != ZSTD || ZstdSupport.isPresent();
+		}
+
+		byte[] compress(byte[] body) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+			try (OutputStream compressed = this == ZSTD ? ZstdSupport.compress(out) : new GZIPOutputStream(out)) {
+				compressed.write(body);
+			}
+			return out.toByteArray();
+		}
+
+		InputStream decompress(InputStream in) throws IOException {
+			return this == ZSTD ? ZstdSupport.decompress(in) : new GZIPInputStream(in);
+		}
+
+		/**
+		 * @param contentEncoding the value of a {@code Content-Encoding} header
+		 * @return the compression matching the content encoding, or null if there is
+		 * none
+		 */
+		public static Compression forContentEncoding(String contentEncoding) {
+			if ("x-gzip".equalsIgnoreCase(contentEncoding)) {
+				return GZIP;
+			}
+			for (Compression compression : values()) {
+				if (compression != NONE && compression.contentEncoding.equalsIgnoreCase(contentEncoding)) {
+					return compression;
+				}
+			}
+			return null;
+		}
+
+	}
+
+}
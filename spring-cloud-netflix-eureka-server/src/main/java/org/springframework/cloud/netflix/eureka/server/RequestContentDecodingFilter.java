@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.cloud.netflix.eureka.server.ReplicationEncodingFilter.Compression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Decodes the bodies of requests sent with a gzip or zstd {@code Content-Encoding}, like
+ * the replication requests of peers compressing them, before they reach the Jersey
+ * resources of the server. Requests in any other encoding, or in zstd when it is not
+ * available, are left to the Jersey resources as they are.
+ *
+ * @author agent agent
+ */
+public class RequestContentDecodingFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+		if (!StringUtils.hasText(contentEncoding) || "identity".equalsIgnoreCase(contentEncoding.trim())) {
+			chain.doFilter(request, response);
+			return;
+		}
+		Compression compression = Compression.forContentEncoding(contentEncoding.trim());
+		if (compression == null || !compression.isAvailable()) {
+			chain.doFilter(request, response);
+			return;
+		}
+		chain.doFilter(new DecodedRequest(request, compression), response);
+	}
+
+	/**
+	 * Request whose body is decompressed as it is read, hiding the headers describing
+	 * its compressed form.
+	 */
+	private static final class DecodedRequest extends HttpServletRequestWrapper {
+
+		private final Compression compression;
+
+		private ServletInputStream inputStream;
+
+		private DecodedRequest(HttpServletRequest request, Compression compression) {
+			super(request);
+			this.compression = compression;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			if (this.inputStream == null) {
+				this.inputStream = new DecodedInputStream(this.compression.decompress(super.getInputStream()));
+			}
+			return this.inputStream;
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			String encoding = getCharacterEncoding();
+			Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+			return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+		}
+
+		@Override
+		public int getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			return -1;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return isHidden(name) ? null : super.getHeader(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaders(String name) {
+			return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+		}
+
+		@Override
+		public int getIntHeader(String name) {
+			return isHidden(name) ? -1 : super.getIntHeader(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaderNames() {
+			List<String> names = Collections.list(super.getHeaderNames());
+			names.removeIf(this::isHidden);
+			return Collections.enumeration(names);
+		}
+
+		private boolean isHidden(String name) {
+			return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+					|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+		}
+
+	}
+
+	private static final class DecodedInputStream extends ServletInputStream {
+
+		private final InputStream in;
+
+		private boolean finished;
+
+		private DecodedInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = this.in.read();
+			this.finished = b < 0;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = this.in.read(b, off, len);
+			this.finished = read < 0;
+			return read;
+		}
+
+		@Override
+		public boolean isFinished() {
+			return this.finished;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			throw new UnsupportedOperationException("Decoded request bodies can only be read blocking");
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+	}
+
+}
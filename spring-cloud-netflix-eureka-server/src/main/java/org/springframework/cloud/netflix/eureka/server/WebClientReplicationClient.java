@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+
+import javax.ws.rs.core.MediaType;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.cluster.protocol.ReplicationList;
+import com.netflix.eureka.cluster.protocol.ReplicationListResponse;
+import com.netflix.eureka.resources.ASGResource.ASGStatus;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+
+/**
+ * {@link HttpReplicationClient} sending the same requests as the Jersey replication
+ * client of Eureka through a {@link ClientHandler}, typically the one of a
+ * {@link WebClientReplicationClientFactory}. Request entities are left to the handler to
+ * encode, and responses are decoded with the given codec.
+ *
+ * @author agent agent
+ */
+public class WebClientReplicationClient implements HttpReplicationClient {
+
+	private final String serviceUrl;
+
+	private final ClientHandler handler;
+
+	private final CodecWrapper codec;
+
+	public WebClientReplicationClient(String serviceUrl, ClientHandler handler, CodecWrapper codec) {
+		this.serviceUrl = serviceUrl;
+		this.handler = handler;
+		this.codec = codec;
+	}
+
+	@Override
+	public EurekaHttpResponse<Void> register(InstanceInfo info) {
+		return status(execute("POST", uri("apps", info.getAppName()), info));
+	}
+
+	@Override
+	public EurekaHttpResponse<Void> cancel(String appName, String id) {
+		return status(execute("DELETE", uri("apps", appName, id), null));
+	}
+
+	@Override
+	public EurekaHttpResponse<InstanceInfo> sendHeartBeat(String appName, String id, InstanceInfo info,
+			InstanceStatus overriddenStatus) {
+		UriComponentsBuilder uri = uri("apps", appName, id).queryParam("status", info.getStatus().toString())
+				.queryParam("lastDirtyTimestamp", info.getLastDirtyTimestamp().toString());
+		if (overriddenStatus != null) {
+			uri.queryParam("overriddenstatus", overriddenStatus.name());
+		}
+		ClientResponse response = execute("PUT", uri, null);
+		// peers send their own copy of an instance with a more recent dirty timestamp
+		return entity(response, InstanceInfo.class, response.getStatus() == 409);
+	}
+
+	@Override
+	public EurekaHttpResponse<Void> statusUpdate(String appName, String id, InstanceStatus newStatus,
+			InstanceInfo info) {
+		return status(execute("PUT", uri("apps", appName, id, "status").queryParam("value", newStatus.name())
+				.queryParam("lastDirtyTimestamp", info.getLastDirtyTimestamp().toString()), null));
+	}
+
+	@Override
+	public EurekaHttpResponse<Void> deleteStatusOverride(String appName, String id, InstanceInfo info) {
+		return status(execute("DELETE", uri("apps", appName, id, "status").queryParam("lastDirtyTimestamp",
+				info.getLastDirtyTimestamp().toString()), null));
+	}
+
+	@Override
+	public EurekaHttpResponse<Void> statusUpdate(String asgName, ASGStatus newStatus) {
+		return status(execute("PUT", uri("asg", asgName, "status").queryParam("value", newStatus.name()), null));
+	}
+
+	@Override
+	public EurekaHttpResponse<ReplicationListResponse> submitBatchUpdates(ReplicationList replicationList) {
+		ClientResponse response = execute("POST", uri("peerreplication", "batch"), replicationList);
+		return entity(response, ReplicationListResponse.class, isSuccess(response));
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getApplications(String... regions) {
+		return get(regions(uri("apps"), regions), Applications.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getDelta(String... regions) {
+		return get(regions(uri("apps", "delta"), regions), Applications.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getVip(String vipAddress, String... regions) {
+		return get(regions(uri("vips", vipAddress), regions), Applications.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<Applications> getSecureVip(String secureVipAddress, String... regions) {
+		return get(regions(uri("svips", secureVipAddress), regions), Applications.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<Application> getApplication(String appName) {
+		return get(uri("apps", appName), Application.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<InstanceInfo> getInstance(String appName, String id) {
+		return get(uri("apps", appName, id), InstanceInfo.class);
+	}
+
+	@Override
+	public EurekaHttpResponse<InstanceInfo> getInstance(String id) {
+		return get(uri("instances", id), InstanceInfo.class);
+	}
+
+	@Override
+	public void shutdown() {
+		// the connections are shared by the clients of all peers
+	}
+
+	private UriComponentsBuilder uri(String... pathSegments) {
+		return UriComponentsBuilder.fromHttpUrl(this.serviceUrl).pathSegment(pathSegments);
+	}
+
+	private UriComponentsBuilder regions(UriComponentsBuilder uri, String[] regions) {
+		if (regions != null && regions.length > 0) {
+			uri.queryParam("regions", StringUtils.arrayToCommaDelimitedString(regions));
+		}
+		return uri;
+	}
+
+	private <T> EurekaHttpResponse<T> get(UriComponentsBuilder uri, Class<T> type) {
+		ClientResponse response = execute("GET", uri, null);
+		return entity(response, type, response.getStatus() == 200);
+	}
+
+	private ClientResponse execute(String method, UriComponentsBuilder uri, Object entity) {
+		ClientRequest.Builder builder = ClientRequest.create().header(PeerEurekaNode.HEADER_REPLICATION, "true")
+				.accept(MediaType.APPLICATION_JSON_TYPE);
+		if (entity != null) {
+			builder.type(MediaType.APPLICATION_JSON_TYPE).entity(entity);
+		}
+		return this.handler.handle(builder.build(uri.build().encode().toUri(), method));
+	}
+
+	private EurekaHttpResponse<Void> status(ClientResponse response) {
+		response.close();
+		return anEurekaHttpResponse(response.getStatus()).type(MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	private <T> EurekaHttpResponse<T> entity(ClientResponse response, Class<T> type, boolean readEntity) {
+		try {
+			T entity = readEntity && response.hasEntity() ? this.codec.decode(response.getEntityInputStream(), type)
+					: null;
+			return anEurekaHttpResponse(response.getStatus(), entity).type(MediaType.APPLICATION_JSON_TYPE).build();
+		}
+		catch (IOException ex) {
+			throw new ClientHandlerException(ex);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	private boolean isSuccess(ClientResponse response) {
+		return response.getStatus() >= 200 && response.getStatus() < 300;
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.resources.ServerCodecs;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.api.client.filter.Filterable;
+import com.sun.jersey.core.header.InBoundHeaders;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * {@link ReplicationClientFactory} creating {@link WebClientReplicationClient}s, which
+ * send their requests through a shared Reactor Netty client. Requests to a peer are
+ * multiplexed over an HTTP/2 connection when the peer supports it (negotiated with ALPN
+ * over TLS and with an upgrade otherwise), and fall back to a pool of HTTP/1.1
+ * connections when it does not. Each request still blocks the replication thread sending
+ * it until its response is received or the connection and read timeouts of the peers
+ * have elapsed, as {@link HttpReplicationClient}s are synchronous.
+ * <p>
+ * Requests still go through the Jersey {@link ClientFilter}s of the
+ * {@link ReplicationClientAdditionalFilters}, which see responses whose entity can only
+ * be read as a stream. Request bodies are encoded with the full JSON codec of the
+ * server, unless the peer has a {@link ReplicationEncodingFilter}.
+ *
+ * @author agent agent
+ */
+public class WebClientReplicationClientFactory implements ReplicationClientFactory, DisposableBean {
+
+	private final CodecWrapper codec;
+
+	private final ConnectionProvider connectionProvider;
+
+	private final WebClient plainClient;
+
+	private final WebClient secureClient;
+
+	private final Duration timeout;
+
+	private final ClientHandler handler;
+
+	private final Collection<ClientFilter> filters;
+
+	private Function<String, ReplicationEncodingFilter> encodingFilters;
+
+	public WebClientReplicationClientFactory(EurekaServerConfig serverConfig, ServerCodecs serverCodecs,
+			ReplicationClientAdditionalFilters replicationClientAdditionalFilters) {
+		this.codec = serverCodecs.getFullJsonCodec();
+		this.connectionProvider = ConnectionProvider.builder("eureka-replication")
+				.maxConnections(serverConfig.getPeerNodeTotalConnectionsPerHost())
+				.maxIdleTime(Duration.ofSeconds(serverConfig.getPeerNodeConnectionIdleTimeoutSeconds())).build();
+		HttpClient httpClient = HttpClient.create(this.connectionProvider).compress(true)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, serverConfig.getPeerNodeConnectTimeoutMs())
+				.responseTimeout(Duration.ofMillis(serverConfig.getPeerNodeReadTimeoutMs()));
+		this.plainClient = webClient(httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11));
+		this.secureClient = webClient(httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure());
+		this.timeout = Duration
+				.ofMillis(serverConfig.getPeerNodeConnectTimeoutMs() + serverConfig.getPeerNodeReadTimeoutMs());
+		this.filters = replicationClientAdditionalFilters.getFilters();
+		this.handler = new ReplicationFilterChain(new WebClientHandler(), null, this.filters).getHeadHandler();
+	}
+
+	private static WebClient webClient(HttpClient httpClient) {
+		return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+	}
+
+	/**
+	 * Encode the request bodies of the clients of some peers with a
+	 * {@link ReplicationEncodingFilter}.
+	 * @param encodingFilters the encoding filter to use for the URL of a peer, or null
+	 * for its requests to be encoded with the full JSON codec
+	 */
+	public void setEncodingFilters(Function<String, ReplicationEncodingFilter> encodingFilters) {
+		this.encodingFilters = encodingFilters;
+	}
+
+	@Override
+	public HttpReplicationClient create(String peerEurekaNodeUrl) {
+		ReplicationEncodingFilter encodingFilter = this.encodingFilters != null
+				? this.encodingFilters.apply(peerEurekaNodeUrl) : null;
+		ClientHandler handler = encodingFilter != null
+				? new ReplicationFilterChain(new WebClientHandler(), encodingFilter, this.filters).getHeadHandler()
+				: this.handler;
+		return new WebClientReplicationClient(peerEurekaNodeUrl, handler, this.codec);
+	}
+
+	@Override
+	public void destroy() {
+		this.connectionProvider.dispose();
+	}
+
+	private static final class ReplicationFilterChain extends Filterable {
+
+		private ReplicationFilterChain(ClientHandler root, ClientFilter encodingFilter,
+				Collection<ClientFilter> filters) {
+			super(root);
+			// filters are added in front of each other, like with a Jersey client
+			if (encodingFilter != null) {
+				addFilter(encodingFilter);
+			}
+			filters.forEach(this::addFilter);
+		}
+
+	}
+
+	/**
+	 * Sends the requests that went through the Jersey filters with the web client
+	 * matching their scheme, waiting for their response like the Jersey client does.
+	 */
+	private final class WebClientHandler implements ClientHandler {
+
+		@Override
+		public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+			WebClient client = "https".equalsIgnoreCase(request.getURI().getScheme()) ? secureClient : plainClient;
+			ResponseEntity<byte[]> response;
+			try {
+				byte[] body = body(request);
+				WebClient.RequestBodySpec spec = client.method(HttpMethod.valueOf(request.getMethod()))
+						.uri(request.getURI()).headers(headers -> copyHeaders(request, headers));
+				WebClient.RequestHeadersSpec<?> exchange = body != null ? spec.bodyValue(body) : spec;
+				response = exchange.exchangeToMono(clientResponse -> clientResponse.toEntity(byte[].class))
+						.block(timeout);
+			}
+			catch (IOException | RuntimeException ex) {
+				throw new ClientHandlerException(translate(ex));
+			}
+			InBoundHeaders headers = new InBoundHeaders();
+			response.getHeaders().forEach(headers::put);
+			byte[] entity = response.getBody() != null ? response.getBody() : new byte[0];
+			return new ClientResponse(response.getStatusCodeValue(), headers, new ByteArrayInputStream(entity), null);
+		}
+
+		private void copyHeaders(ClientRequest request, HttpHeaders headers) {
+			request.getHeaders().forEach((name, values) -> {
+				for (Object value : values) {
+					headers.add(name, ClientRequest.getHeaderValue(value));
+				}
+			});
+		}
+
+		private byte[] body(ClientRequest request) throws IOException {
+			Object entity = request.getEntity();
+			if (entity == null) {
+				return null;
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ClientRequestAdapter adapter = request.getAdapter();
+			try (OutputStream entityStream = adapter != null ? adapter.adapt(request, out) : out) {
+				if (entity instanceof byte[]) {
+					entityStream.write((byte[]) entity);
+				}
+				else {
+					codec.encode(entity, entityStream);
+				}
+			}
+			return out.toByteArray();
+		}
+
+		/*
+		 * The replication task processors of Eureka tell read timeouts from other
+		 * network errors by the message of the IOException causing them.
+		 */
+		private Throwable translate(Throwable ex) {
+			for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+				if (cause instanceof ReadTimeoutException || cause instanceof TimeoutException) {
+					return new SocketTimeoutException("Read timed out");
+				}
+			}
+			return ex;
+		}
+
+	}
+
+}
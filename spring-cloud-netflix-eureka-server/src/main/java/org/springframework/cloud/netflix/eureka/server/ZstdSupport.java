@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Support for the zstd content encoding, used when {@code zstd-jni} is on the
+ * classpath. The zstd streams are only referenced from here, so that replication
+ * encodings load without it.
+ *
+ * @author agent agent
+ */
+final class ZstdSupport {
+
+	private static final boolean PRESENT = ClassUtils.isPresent("com.github.luben.zstd.ZstdOutputStream",
+			ZstdSupport.class.getClassLoader());
+
+	private ZstdSupport() {
+	}
+
+	static boolean isPresent() {
+		return PRESENT;
+	}
+
+	static OutputStream compress(OutputStream out) throws IOException {
+		return new ZstdOutputStream(out);
+	}
+
+	static InputStream decompress(InputStream in) throws IOException {
+		return new ZstdInputStream(in);
+	}
+
+}
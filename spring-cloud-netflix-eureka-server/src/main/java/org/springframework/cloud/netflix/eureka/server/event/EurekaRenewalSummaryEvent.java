@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server.event;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published periodically instead of one {@link EurekaInstanceRenewedEvent} per heartbeat
+ * when renewed events are summarized. Covers every renewal, replicated or not, received
+ * since the previous summary.
+ *
+ * @author agent agent
+ */
+@SuppressWarnings("serial")
+public class EurekaRenewalSummaryEvent extends ApplicationEvent {
+
+	private Map<String, Long> renewalCounts;
+
+	private Map<String, Set<String>> instanceIds;
+
+	public EurekaRenewalSummaryEvent(Object source, Map<String, Long> renewalCounts,
+			Map<String, Set<String>> instanceIds) {
+		super(source);
+		this.renewalCounts = renewalCounts;
+		this.instanceIds = instanceIds;
+	}
+
+	/**
+	 * @return number of renewals received per application name
+	 */
+	public Map<String, Long> getRenewalCounts() {
+		return renewalCounts;
+	}
+
+	public void setRenewalCounts(Map<String, Long> renewalCounts) {
+		this.renewalCounts = renewalCounts;
+	}
+
+	/**
+	 * @return ids of the renewed instances per application name
+	 */
+	public Map<String, Set<String>> getInstanceIds() {
+		return instanceIds;
+	}
+
+	public void setInstanceIds(Map<String, Set<String>> instanceIds) {
+		this.instanceIds = instanceIds;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		EurekaRenewalSummaryEvent that = (EurekaRenewalSummaryEvent) o;
+		return Objects.equals(renewalCounts, that.renewalCounts) && Objects.equals(instanceIds, that.instanceIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(renewalCounts, instanceIds);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("EurekaRenewalSummaryEvent{").append("renewalCounts=").append(renewalCounts)
+				.append(", ").append("instanceIds=").append(instanceIds).append("}").toString();
+	}
+
+}
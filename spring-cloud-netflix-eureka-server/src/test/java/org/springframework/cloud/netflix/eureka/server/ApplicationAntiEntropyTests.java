@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.Map;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.cloud.netflix.eureka.server.ApplicationContextTests.Application;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RegistryAntiEntropy} along with the other listeners of the registry.
+ *
+ * @author agent agent
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "spring.application.name=eureka", "eureka.instance.registry.anti-entropy.enabled=true",
+				"eureka.instance.registry.journal.enabled=true",
+				"eureka.instance.registry.change-stream.enabled=true" })
+public class ApplicationAntiEntropyTests {
+
+	@Autowired
+	private PeerAwareInstanceRegistry registry;
+
+	@Autowired
+	private RegistryAntiEntropy antiEntropy;
+
+	@Autowired
+	private RegistryChangeJournal journal;
+
+	@Test
+	public void notifiesAntiEntropyOfCancellations() {
+		InstanceInfo info = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+				.setHostName("foo").build();
+		this.registry.register(info, false);
+		long version = this.journal.getVersion();
+
+		this.registry.cancel("FOO", "foo-1", false);
+
+		Map<?, ?> tombstones = (Map<?, ?>) ReflectionTestUtils.getField(this.antiEntropy, "tombstones");
+		assertThat(tombstones).hasSize(1);
+		assertThat(this.journal.since(version).getInstances()).extracting(InstanceInfo::getId)
+				.containsExactly("foo-1");
+	}
+
+}
@@ -63,6 +63,19 @@ public class ApplicationDashboardPathTests {
 		assertThat(body.contains("<a href=\"/dashboard\">Home</a>")).isTrue();
 		// The Lastn
 		assertThat(body.contains("<a href=\"/dashboard/lastn\">Last")).isTrue();
+		// The instances
+		assertThat(body.contains("data-url=\"/dashboard/api/apps\"")).isTrue();
+		assertThat(body.contains("<noscript>")).isTrue();
+	}
+
+	@Test
+	public void appsApiLoads() {
+		@SuppressWarnings("rawtypes")
+		ResponseEntity<Map> entity = new TestRestTemplate()
+				.getForEntity("http://localhost:" + this.port + "/dashboard/api/apps?size=10", Map.class);
+		assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(entity.getBody()).containsKeys("apps", "totalApps", "totalInstances");
+		assertThat(entity.getBody().get("size")).isEqualTo(10);
 	}
 
 	@Test
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.server.AsyncRegistryEventPublisher.OverflowPolicy;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AsyncRegistryEventPublisher}.
+ *
+ * @author agent agent
+ */
+public class AsyncRegistryEventPublisherTests {
+
+	private final List<Object> events = new CopyOnWriteArrayList<>();
+
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private AsyncRegistryEventPublisher publisher;
+
+	@After
+	public void tearDown() {
+		this.release.countDown();
+		if (this.publisher != null) {
+			this.publisher.destroy();
+		}
+	}
+
+	@Test
+	public void dispatchesEventsInOrder() throws Exception {
+		CountDownLatch dispatched = new CountDownLatch(3);
+		this.publisher = new AsyncRegistryEventPublisher(event -> {
+			this.events.add(event);
+			dispatched.countDown();
+		}, 10, 2, 1, OverflowPolicy.DROP);
+
+		Object first = renewed("APP", "a");
+		Object second = canceled("APP", "a");
+		Object third = renewed("APP", "b");
+		this.publisher.publishEvent(first);
+		this.publisher.publishEvent(second);
+		this.publisher.publishEvent(third);
+
+		assertThat(dispatched.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.events).containsExactly(first, second, third);
+		assertThat(this.publisher.getDroppedCount()).isZero();
+	}
+
+	@Test
+	public void dropsEventsWhenQueueIsFull() throws Exception {
+		this.publisher = new AsyncRegistryEventPublisher(this::blockingDelegate, 1, 10, 1, OverflowPolicy.DROP);
+		this.publisher.publishEvent(renewed("APP", "a"));
+		assertThat(this.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		this.publisher.publishEvent(renewed("APP", "b"));
+		this.publisher.publishEvent(canceled("APP", "c"));
+
+		assertThat(this.publisher.getQueueDepth()).isEqualTo(1);
+		assertThat(this.publisher.getDroppedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void coalescesPendingRenewals() throws Exception {
+		this.publisher = new AsyncRegistryEventPublisher(this::blockingDelegate, 10, 10, 1, OverflowPolicy.COALESCE);
+		this.publisher.publishEvent(renewed("APP", "a"));
+		assertThat(this.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		this.publisher.publishEvent(renewed("APP", "b"));
+		this.publisher.publishEvent(renewed("APP", "b"));
+		this.publisher.publishEvent(canceled("APP", "b"));
+		this.publisher.publishEvent(canceled("APP", "b"));
+
+		assertThat(this.publisher.getQueueDepth()).isEqualTo(3);
+		assertThat(this.publisher.getCoalescedCount()).isEqualTo(1);
+		assertThat(this.publisher.getDroppedCount()).isZero();
+	}
+
+	private void blockingDelegate(Object event) {
+		this.events.add(event);
+		this.started.countDown();
+		try {
+			this.release.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private EurekaInstanceRenewedEvent renewed(String appName, String serverId) {
+		return new EurekaInstanceRenewedEvent(this, appName, serverId, null, false);
+	}
+
+	private EurekaInstanceCanceledEvent canceled(String appName, String serverId) {
+		return new EurekaInstanceCanceledEvent(this, appName, serverId, false);
+	}
+
+}
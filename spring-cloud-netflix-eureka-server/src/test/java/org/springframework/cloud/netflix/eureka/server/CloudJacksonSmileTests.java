@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.ws.rs.core.MediaType;
+
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link CloudJacksonSmile}.
+ *
+ * @author agent agent
+ */
+public class CloudJacksonSmileTests {
+
+	private final CloudJacksonSmile smile = new CloudJacksonSmile();
+
+	private final CloudJacksonJson json = new CloudJacksonJson();
+
+	@Test
+	public void applicationsSurviveRoundTrip() throws IOException {
+		Applications applications = new Applications();
+		Application application = new Application("FOO");
+		application.addInstance(InstanceInfo.Builder.newBuilder().setAppName("FOO").setHostName("foo.host")
+				.add("instanceId", "foo-1").setPort(8080)
+				.setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn)).build());
+		applications.addApplication(application);
+		applications.setAppsHashCode(applications.getReconcileHashCode());
+
+		ByteArrayOutputStream smileBytes = new ByteArrayOutputStream();
+		this.smile.encode(applications, smileBytes);
+		ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
+		this.json.encode(applications, jsonBytes);
+		Applications decoded = this.smile.decode(new ByteArrayInputStream(smileBytes.toByteArray()),
+				Applications.class);
+
+		assertThat(smileBytes.size()).isLessThan(jsonBytes.size());
+		assertThat(decoded.getAppsHashCode()).isEqualTo(applications.getAppsHashCode());
+		InstanceInfo instance = decoded.getRegisteredApplications("FOO").getInstances().get(0);
+		// the legacy instanceId metadata is applied like with JSON
+		assertThat(instance.getInstanceId()).isEqualTo("foo.host:foo-1");
+		assertThat(instance.getPort()).isEqualTo(8080);
+	}
+
+	@Test
+	public void supportsSmileMediaTypeOnly() {
+		assertThat(this.smile.support(MediaType.valueOf(CloudJacksonSmile.MEDIA_TYPE))).isTrue();
+		assertThat(this.smile.support(MediaType.APPLICATION_JSON_TYPE)).isFalse();
+		assertThat(this.smile.codecName()).isNotEqualTo(this.json.codecName());
+	}
+
+	@Test
+	public void stringsSurviveRoundTrip() throws IOException {
+		Applications applications = new Applications();
+		applications.setAppsHashCode("UP_1_");
+
+		String encoded = this.smile.encode(applications);
+		ByteArrayOutputStream smileBytes = new ByteArrayOutputStream();
+		this.smile.encode(applications, smileBytes);
+
+		assertThat(encoded.length()).isEqualTo(smileBytes.size());
+		assertThat(this.smile.decode(encoded, Applications.class).getAppsHashCode()).isEqualTo("UP_1_");
+	}
+
+}
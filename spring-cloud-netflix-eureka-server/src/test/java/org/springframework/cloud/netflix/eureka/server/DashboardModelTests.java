@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netflix.appinfo.AmazonInfo;
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.discovery.shared.Application;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DashboardModel}.
+ *
+ * @author agent agent
+ */
+public class DashboardModelTests {
+
+	private final DashboardModel model = new DashboardModel(7, Arrays.asList(
+			application("BAR", instance("bar-1", InstanceStatus.UP, "us-east-1a")),
+			application("FOO", instance("foo-1", InstanceStatus.UP, "us-east-1a"),
+					instance("foo-2", InstanceStatus.DOWN, "us-east-1b"), instance("foo-3", InstanceStatus.UP, null)),
+			application("FOOBAR", instance("foobar-1", InstanceStatus.UP, null))));
+
+	@Test
+	public void pagesApplications() {
+		Map<String, Object> first = this.model.page(null, null, null, 0, 2);
+		Map<String, Object> second = this.model.page(null, null, null, 1, 2);
+
+		assertThat(first).containsEntry("version", 7L).containsEntry("totalApps", 3)
+				.containsEntry("totalInstances", 5);
+		assertThat(names(first)).containsExactly("BAR", "FOO");
+		assertThat(names(second)).containsExactly("FOOBAR");
+		assertThat(apps(first).get(1).get("zoneCounts")).isEqualTo(map("us-east-1a", 1, "us-east-1b", 1, "", 1));
+	}
+
+	@Test
+	public void filtersApplicationsAndInstances() {
+		Map<String, Object> page = this.model.page("foo", InstanceStatus.UP, null, 0, 10);
+
+		assertThat(names(page)).containsExactly("FOO", "FOOBAR");
+		assertThat(page).containsEntry("totalApps", 2).containsEntry("totalInstances", 3);
+		assertThat(apps(page).get(0).get("zoneCounts")).isEqualTo(map("us-east-1a", 1, "", 1));
+
+		page = this.model.page(null, null, "us-east-1b", 0, 10);
+		assertThat(names(page)).containsExactly("FOO");
+		assertThat(page).containsEntry("totalInstances", 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> apps(Map<String, Object> page) {
+		return (List<Map<String, Object>>) page.get("apps");
+	}
+
+	private static Object[] names(Map<String, Object> page) {
+		return apps(page).stream().map(app -> app.get("name")).toArray();
+	}
+
+	private static Map<String, Integer> map(Object... keysAndValues) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			map.put((String) keysAndValues[i], (Integer) keysAndValues[i + 1]);
+		}
+		return map;
+	}
+
+	private static Application application(String name, InstanceInfo... instances) {
+		Application application = new Application(name);
+		for (InstanceInfo instance : instances) {
+			application.addInstance(instance);
+		}
+		return application;
+	}
+
+	private static InstanceInfo instance(String id, InstanceStatus status, String zone) {
+		DataCenterInfo dataCenterInfo = zone != null
+				? AmazonInfo.Builder.newBuilder().addMetadata(AmazonInfo.MetaDataKey.availabilityZone, zone).build()
+				: new MyDataCenterInfo(DataCenterInfo.Name.MyOwn);
+		return InstanceInfo.Builder.newBuilder().setAppName(id.substring(0, id.indexOf('-'))).setInstanceId(id)
+				.setHostName(id).setStatus(status).setDataCenterInfo(dataCenterInfo).build();
+	}
+
+}
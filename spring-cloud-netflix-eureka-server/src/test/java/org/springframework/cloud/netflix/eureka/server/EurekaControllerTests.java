@@ -42,6 +42,8 @@ import org.springframework.util.ReflectionUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EurekaControllerTests {
@@ -50,6 +52,8 @@ public class EurekaControllerTests {
 
 	private ApplicationInfoManager original;
 
+	private List<Application> applications;
+
 	@Before
 	public void setup() throws Exception {
 		PeerEurekaNodes peerEurekaNodes = mock(PeerEurekaNodes.class);
@@ -67,11 +71,11 @@ public class EurekaControllerTests {
 		myapp.addInstance(InstanceInfo.Builder.newBuilder().setAppName("myapp")
 				.setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn)).setInstanceId("myapp:1").build());
 
-		ArrayList<Application> applications = new ArrayList<>();
-		applications.add(myapp);
+		this.applications = new ArrayList<>();
+		this.applications.add(myapp);
 
 		PeerAwareInstanceRegistry registry = mock(PeerAwareInstanceRegistry.class);
-		when(registry.getSortedApplications()).thenReturn(applications);
+		when(registry.getSortedApplications()).thenReturn(this.applications);
 
 		EurekaServerContext serverContext = mock(EurekaServerContext.class);
 		EurekaServerContextHolder.initialize(serverContext);
@@ -109,6 +113,30 @@ public class EurekaControllerTests {
 		assertThat((Boolean) instance.get("isHref")).as("isHref was wrong").isFalse();
 	}
 
+	@Test
+	public void appsAreBuiltOncePerRegistryVersion() throws Exception {
+		InstanceRegistry registry = mock(InstanceRegistry.class);
+		when(registry.getSortedApplications()).thenReturn(this.applications);
+		when(registry.getRegistryVersion()).thenReturn(1L);
+		when(EurekaServerContextHolder.getInstance().getServerContext().getRegistry()).thenReturn(registry);
+		EurekaController controller = new EurekaController(infoManager);
+
+		Map<String, Object> first = new HashMap<>();
+		controller.status(new MockHttpServletRequest("GET", "/"), first);
+		Map<String, Object> second = new HashMap<>();
+		controller.status(new MockHttpServletRequest("GET", "/"), second);
+
+		assertThat(second.get("apps")).isSameAs(first.get("apps"));
+		verify(registry, times(1)).getSortedApplications();
+
+		when(registry.getRegistryVersion()).thenReturn(2L);
+		Map<String, Object> third = new HashMap<>();
+		controller.status(new MockHttpServletRequest("GET", "/"), third);
+
+		assertThat(third.get("apps")).isNotSameAs(first.get("apps"));
+		verify(registry, times(2)).getSortedApplications();
+	}
+
 	@SuppressWarnings("unchecked")
 	Map<String, Object> getFirst(Map<String, Object> model, String key) {
 		List<Map<String, Object>> apps = (List<Map<String, Object>>) model.get(key);
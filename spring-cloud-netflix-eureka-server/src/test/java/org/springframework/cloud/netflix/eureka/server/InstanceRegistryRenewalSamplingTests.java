@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.netflix.eureka.server.InstanceRegistryRenewalSummaryTests.TestApplication;
+import org.springframework.cloud.netflix.eureka.server.InstanceRegistryRenewalSummaryTests.TestEvents;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for the sampling of renewed events of {@link InstanceRegistry}.
+ *
+ * @author agent agent
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		value = { "spring.application.name=eureka", "eureka.instance.registry.renewed-events.mode=sampled",
+				"eureka.instance.registry.renewed-events.sample-rate=0" })
+public class InstanceRegistryRenewalSamplingTests {
+
+	private static final String APP_NAME = "MY-APP-NAME";
+
+	private static final String INSTANCE_ID = "my-host-name:8008";
+
+	@Autowired
+	private PeerAwareInstanceRegistry registry;
+
+	@Autowired
+	private TestEvents testEvents;
+
+	private InstanceRegistry instanceRegistry;
+
+	@Before
+	public void setup() {
+		this.instanceRegistry = (InstanceRegistry) this.registry;
+		this.instanceRegistry.register(getInstanceInfo(), false);
+		this.testEvents.applicationEvents.clear();
+	}
+
+	@Test
+	public void renewalsAreDroppedOutsideOfTheSample() {
+		this.instanceRegistry.setRenewedEventSampleRate(0);
+		for (int i = 0; i < 100; i++) {
+			assertThat(this.instanceRegistry.renew(APP_NAME, INSTANCE_ID, false)).isTrue();
+		}
+		assertThat(this.testEvents.applicationEvents).isEmpty();
+
+		this.instanceRegistry.setRenewedEventSampleRate(1);
+		this.instanceRegistry.renew(APP_NAME, INSTANCE_ID, false);
+		assertThat(this.testEvents.applicationEvents).hasSize(1);
+	}
+
+	@Test
+	public void sampleRateMustBeAFraction() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.instanceRegistry.setRenewedEventSampleRate(-0.1));
+		assertThatIllegalArgumentException().isThrownBy(() -> this.instanceRegistry.setRenewedEventSampleRate(1.5));
+	}
+
+	private InstanceInfo getInstanceInfo() {
+		InstanceInfo.Builder builder = InstanceInfo.Builder.newBuilder();
+		builder.setAppName(APP_NAME);
+		builder.setHostName("my-host-name");
+		builder.setInstanceId(INSTANCE_ID);
+		builder.setPort(8008);
+		return builder.build();
+	}
+
+}
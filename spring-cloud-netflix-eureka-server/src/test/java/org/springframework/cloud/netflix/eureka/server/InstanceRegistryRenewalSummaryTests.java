@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.netflix.eureka.server.InstanceRegistryRenewalSummaryTests.TestApplication;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRenewalSummaryEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Tests for the renewal summary of {@link InstanceRegistry}.
+ *
+ * @author agent agent
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		value = { "spring.application.name=eureka", "eureka.instance.registry.renewed-events.mode=summary",
+				"eureka.instance.registry.renewed-events.summary-interval=1h" })
+public class InstanceRegistryRenewalSummaryTests {
+
+	private static final String APP_NAME = "MY-APP-NAME";
+
+	@Autowired
+	private PeerAwareInstanceRegistry registry;
+
+	@Autowired
+	private TestEvents testEvents;
+
+	@Before
+	public void setup() {
+		this.testEvents.applicationEvents.clear();
+	}
+
+	@Test
+	public void renewalsArePublishedAsSummary() {
+		InstanceRegistry instanceRegistry = (InstanceRegistry) this.registry;
+		instanceRegistry.register(getInstanceInfo("my-host-name:8008", 8008), false);
+		instanceRegistry.register(getInstanceInfo("my-host-name:8009", 8009), false);
+		instanceRegistry.renew(APP_NAME, "my-host-name:8008", false);
+		instanceRegistry.renew(APP_NAME, "my-host-name:8008", false);
+		instanceRegistry.renew(APP_NAME, "my-host-name:8009", false);
+		// no event is published per renewal
+		assertThat(this.testEvents.applicationEvents).isEmpty();
+
+		instanceRegistry.publishRenewalSummary();
+
+		assertThat(this.testEvents.applicationEvents).hasSize(1);
+		EurekaRenewalSummaryEvent summary = (EurekaRenewalSummaryEvent) this.testEvents.applicationEvents.get(0);
+		assertThat(summary.getSource()).isEqualTo(instanceRegistry);
+		assertThat(summary.getRenewalCounts()).containsExactly(entry(APP_NAME, 3L));
+		assertThat(summary.getInstanceIds().get(APP_NAME)).containsExactlyInAnyOrder("my-host-name:8008",
+				"my-host-name:8009");
+
+		// an empty window is not published
+		instanceRegistry.publishRenewalSummary();
+		assertThat(this.testEvents.applicationEvents).hasSize(1);
+	}
+
+	private InstanceInfo getInstanceInfo(String instanceId, int port) {
+		InstanceInfo.Builder builder = InstanceInfo.Builder.newBuilder();
+		builder.setAppName(APP_NAME);
+		builder.setHostName("my-host-name");
+		builder.setInstanceId(instanceId);
+		builder.setPort(port);
+		return builder.build();
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@EnableAutoConfiguration
+	@EnableEurekaServer
+	protected static class TestApplication {
+
+		@Bean
+		public TestEvents testEvents() {
+			return new TestEvents();
+		}
+
+	}
+
+	protected static class TestEvents implements SmartApplicationListener {
+
+		public final List<ApplicationEvent> applicationEvents = new LinkedList<>();
+
+		@Override
+		public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+			return EurekaInstanceRenewedEvent.class.isAssignableFrom(eventType)
+					|| EurekaRenewalSummaryEvent.class.isAssignableFrom(eventType);
+		}
+
+		@Override
+		public void onApplicationEvent(ApplicationEvent event) {
+			this.applicationEvents.add(event);
+		}
+
+	}
+
+}
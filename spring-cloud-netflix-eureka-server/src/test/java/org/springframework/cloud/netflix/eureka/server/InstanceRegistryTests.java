@@ -17,13 +17,11 @@
 package org.springframework.cloud.netflix.eureka.server;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.appinfo.LeaseInfo;
-import com.netflix.discovery.shared.Application;
 import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,7 +42,6 @@ import org.springframework.context.event.SmartApplicationListener;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.doReturn;
 
 /**
  * @author Bartlomiej Slota
@@ -105,6 +102,33 @@ public class InstanceRegistryTests {
 		assertThat(registeredEvent.getLeaseDuration()).isEqualTo(LeaseInfo.DEFAULT_LEASE_DURATION);
 	}
 
+	@Test
+	public void testRegisterAppliesLegacyInstanceIdMetadata() throws Exception {
+		final InstanceInfo instanceInfo = InstanceInfo.Builder.newBuilder().setAppName(APP_NAME)
+				.setHostName(HOST_NAME).add("instanceId", String.valueOf(PORT)).setPort(PORT).build();
+		instanceRegistry.register(instanceInfo, false);
+		// the instance id is resolved once, when registering the instance
+		assertThat(instanceInfo.getInstanceId()).isEqualTo(INSTANCE_ID);
+		assertThat(instanceRegistry.getInstanceByAppAndId(APP_NAME, INSTANCE_ID)).isSameAs(instanceInfo);
+	}
+
+	@Test
+	public void testRegistryChangeListener() throws Exception {
+		final List<String> changes = new ArrayList<>();
+		final long version = instanceRegistry.getRegistryVersion();
+		instanceRegistry.addRegistryChangeListener((changeVersion, action, info) -> changes
+				.add((changeVersion - version) + " " + action + " " + info.getId()));
+		final InstanceInfo instanceInfo = getInstanceInfo("MY-CHANGED-APP", HOST_NAME, INSTANCE_ID, PORT, null);
+		// registering, updating the status of and cancelling the instance
+		instanceRegistry.register(instanceInfo, false);
+		instanceRegistry.statusUpdate("MY-CHANGED-APP", INSTANCE_ID, InstanceInfo.InstanceStatus.DOWN, null, false);
+		instanceRegistry.internalCancel("MY-CHANGED-APP", INSTANCE_ID, false);
+		// each change is notified with the registry version it resulted in
+		assertThat(changes).containsExactly("1 ADDED " + INSTANCE_ID, "2 MODIFIED " + INSTANCE_ID,
+				"3 DELETED " + INSTANCE_ID);
+		assertThat(instanceRegistry.getRegistryVersion()).isEqualTo(version + 3);
+	}
+
 	@Test
 	public void testInternalCancel() throws Exception {
 		// calling tested method
@@ -126,12 +150,10 @@ public class InstanceRegistryTests {
 		// Creating two instances of the app
 		final InstanceInfo instanceInfo1 = getInstanceInfo(APP_NAME, HOST_NAME, INSTANCE_ID, PORT, null);
 		final InstanceInfo instanceInfo2 = getInstanceInfo(APP_NAME, HOST_NAME, "my-host-name:8009", 8009, null);
-		// creating application list with an app having two instances
-		final Application application = new Application(APP_NAME, Arrays.asList(instanceInfo1, instanceInfo2));
-		final List<Application> applications = new ArrayList<>();
-		applications.add(application);
-		// stubbing applications list
-		doReturn(applications).when(instanceRegistry).getSortedApplications();
+		// registering both instances of the app
+		instanceRegistry.register(instanceInfo1, false);
+		instanceRegistry.register(instanceInfo2, false);
+		this.testEvents.applicationEvents.clear();
 		// calling tested method
 		instanceRegistry.renew(APP_NAME, INSTANCE_ID, false);
 		instanceRegistry.renew(APP_NAME, "my-host-name:8009", false);
@@ -153,6 +175,18 @@ public class InstanceRegistryTests {
 		assertThat(event2.getInstanceInfo()).isEqualTo(instanceInfo2);
 	}
 
+	@Test
+	public void testRenewAfterCancel() throws Exception {
+		final InstanceInfo instanceInfo = getInstanceInfo("MY-OTHER-APP", HOST_NAME, INSTANCE_ID, PORT, null);
+		instanceRegistry.register(instanceInfo, false);
+		instanceRegistry.internalCancel("MY-OTHER-APP", INSTANCE_ID, false);
+		this.testEvents.applicationEvents.clear();
+		// calling tested method
+		instanceRegistry.renew("MY-OTHER-APP", INSTANCE_ID, false);
+		// no renew event for an application that is no longer registered
+		assertThat(this.testEvents.applicationEvents).isEmpty();
+	}
+
 	private LeaseInfo getLeaseInfo() {
 		LeaseInfo.Builder leaseBuilder = LeaseInfo.Builder.newBuilder();
 		leaseBuilder.setRenewalIntervalInSecs(10);
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LeaseExpiryWheel}.
+ *
+ * @author agent agent
+ */
+public class LeaseExpiryWheelTests {
+
+	private static final long DURATION = 90_000;
+
+	private static final long START = 1_000_000;
+
+	private final LeaseExpiryWheel wheel = new LeaseExpiryWheel(1000, START);
+
+	@Test
+	public void registeredLeaseExpiresAfterOneDuration() {
+		this.wheel.register("APP", "a", DURATION, START);
+
+		assertThat(this.wheel.expired(START + DURATION, 0)).isEmpty();
+		assertThat(ids(this.wheel.expired(START + DURATION + 1, 0))).containsExactly("a");
+		// expired leases are reported until they are cancelled
+		assertThat(ids(this.wheel.expired(START + DURATION + 2, 0))).containsExactly("a");
+		this.wheel.cancel("APP", "a");
+		assertThat(this.wheel.expired(START + DURATION + 3, 0)).isEmpty();
+		assertThat(this.wheel.size()).isZero();
+	}
+
+	@Test
+	public void renewalPostponesExpiry() {
+		this.wheel.register("APP", "a", DURATION, START);
+		assertThat(this.wheel.renew("APP", "a", START + 30_000)).isTrue();
+
+		// Lease.renew() records now + duration and expiry adds the duration again
+		assertThat(this.wheel.expired(START + 30_000 + 2 * DURATION, 0)).isEmpty();
+		assertThat(ids(this.wheel.expired(START + 30_001 + 2 * DURATION, 0))).containsExactly("a");
+		assertThat(this.wheel.renew("APP", "unknown", START)).isFalse();
+	}
+
+	@Test
+	public void renewalOfOverdueLeaseRevivesIt() {
+		this.wheel.register("APP", "a", DURATION, START);
+		assertThat(ids(this.wheel.expired(START + DURATION + 1, 0))).containsExactly("a");
+
+		this.wheel.renew("APP", "a", START + DURATION + 2);
+
+		assertThat(this.wheel.expired(START + DURATION + 3, 0)).isEmpty();
+	}
+
+	@Test
+	public void additionalLeaseTimeDelaysExpiry() {
+		this.wheel.register("APP", "a", DURATION, START);
+
+		assertThat(this.wheel.expired(START + DURATION + 1, 5000)).isEmpty();
+		assertThat(ids(this.wheel.expired(START + DURATION + 5001, 5000))).containsExactly("a");
+	}
+
+	@Test
+	public void reRegistrationCanBringExpiryCloser() {
+		this.wheel.register("APP", "a", DURATION, START);
+		this.wheel.renew("APP", "a", START + 1000);
+		this.wheel.register("APP", "a", 10_000, START + 2000);
+
+		assertThat(ids(this.wheel.expired(START + 12_001, 0))).containsExactly("a");
+	}
+
+	@Test
+	public void leasesFarInTheFutureAndLongPausesAreHandled() {
+		this.wheel.register("APP", "far", 400L * 24 * 3600 * 1000, START);
+		this.wheel.register("APP", "near", DURATION, START);
+
+		assertThat(ids(this.wheel.expired(START + 10L * 24 * 3600 * 1000, 0))).containsExactly("near");
+		assertThat(ids(this.wheel.expired(START + 401L * 24 * 3600 * 1000, 0))).containsExactlyInAnyOrder("near",
+				"far");
+	}
+
+	@Test
+	public void matchesFullScanOfLeases() {
+		// expiry time and duration of each lease, following Lease
+		Map<String, long[]> leases = new HashMap<>();
+		Random random = new Random(42);
+		long now = START;
+		for (int round = 0; round < 2000; round++) {
+			now += random.nextInt(20_000);
+			for (int op = 0; op < 20; op++) {
+				String appName = "APP-" + random.nextInt(5);
+				String id = "instance-" + random.nextInt(100);
+				int action = random.nextInt(10);
+				if (action == 0) {
+					long duration = 1000 + random.nextInt(200_000);
+					leases.put(appName + "/" + id, new long[] { now + duration, duration });
+					this.wheel.register(appName, id, duration, now);
+				}
+				else if (action == 1) {
+					leases.remove(appName + "/" + id);
+					this.wheel.cancel(appName, id);
+				}
+				else {
+					long[] lease = leases.get(appName + "/" + id);
+					if (lease != null) {
+						lease[0] = now + 2 * lease[1];
+					}
+					assertThat(this.wheel.renew(appName, id, now)).isEqualTo(lease != null);
+				}
+			}
+			long additionalLeaseMs = random.nextInt(3) * 1000;
+			long scanned = now;
+			assertThat(keys(this.wheel.expired(now, additionalLeaseMs))).isEqualTo(leases.entrySet().stream()
+					.filter(lease -> scanned > lease.getValue()[0] + additionalLeaseMs).map(Map.Entry::getKey)
+					.collect(Collectors.toSet()));
+		}
+	}
+
+	private static List<String> ids(List<? extends LeaseTracker.TrackedLease> leases) {
+		return leases.stream().map(LeaseTracker.TrackedLease::getId).collect(Collectors.toList());
+	}
+
+	private static Set<String> keys(List<? extends LeaseTracker.TrackedLease> leases) {
+		return leases.stream().map(lease -> lease.getAppName() + "/" + lease.getId()).collect(Collectors.toSet());
+	}
+
+}
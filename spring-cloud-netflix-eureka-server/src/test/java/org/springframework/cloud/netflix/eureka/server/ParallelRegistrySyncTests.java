@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ParallelRegistrySync}.
+ *
+ * @author agent agent
+ */
+public class ParallelRegistrySyncTests {
+
+	private final PeerAwareInstanceRegistry registry = mock(PeerAwareInstanceRegistry.class);
+
+	private final Map<String, InstanceInfo> registered = new ConcurrentHashMap<>();
+
+	private final Map<String, EurekaHttpClient> clients = new HashMap<>();
+
+	private final ParallelRegistrySync sync = new ParallelRegistrySync(this.registry, this.clients::get,
+			Duration.ofSeconds(5));
+
+	@Before
+	public void setup() {
+		when(this.registry.getInstanceByAppAndId(anyString(), anyString(), anyBoolean()))
+				.then(invocation -> this.registered.get(invocation.<String>getArgument(1)));
+		doAnswer(invocation -> {
+			InstanceInfo info = invocation.getArgument(0);
+			this.registered.put(info.getId(), info);
+			return null;
+		}).when(this.registry).register(any(InstanceInfo.class), anyInt(), anyBoolean());
+	}
+
+	@Test
+	public void returnsOnFirstCopyAndMergesSlowerPeersByDirtyTimestamp() throws Exception {
+		CountDownLatch slowPeer = new CountDownLatch(1);
+		peer("fast", applications(instance("x", 2)));
+		EurekaHttpClient slow = mock(EurekaHttpClient.class);
+		this.clients.put("slow", slow);
+		when(slow.getApplications()).then(invocation -> {
+			slowPeer.await(5, TimeUnit.SECONDS);
+			return EurekaHttpResponse.anEurekaHttpResponse(200, applications(instance("x", 1), instance("y", 1)))
+					.build();
+		});
+
+		assertThat(this.sync.syncUp(Arrays.asList("fast", "slow"))).isEqualTo(1);
+		assertThat(this.registered).containsOnlyKeys("x");
+
+		slowPeer.countDown();
+		verify(this.registry, timeout(5000).times(2)).register(any(InstanceInfo.class), anyInt(), anyBoolean());
+		// wait for the merge of the slow peer to complete
+		synchronized (this.sync) {
+			assertThat(this.registered).containsOnlyKeys("x", "y");
+			assertThat(this.registered.get("x").getLastDirtyTimestamp()).isEqualTo(2L);
+		}
+		verify(this.registry, times(2)).register(any(InstanceInfo.class), anyInt(), anyBoolean());
+		verify(slow, timeout(5000)).shutdown();
+	}
+
+	@Test
+	public void failingAndEmptyPeersDoNotBlockStartup() throws Exception {
+		EurekaHttpClient failing = mock(EurekaHttpClient.class);
+		when(failing.getApplications()).thenThrow(new IllegalStateException("connection refused"));
+		this.clients.put("failing", failing);
+		peer("empty", new Applications());
+		EurekaHttpClient unavailable = mock(EurekaHttpClient.class);
+		when(unavailable.getApplications())
+				.thenReturn(EurekaHttpResponse.anEurekaHttpResponse(503, Applications.class).build());
+		this.clients.put("unavailable", unavailable);
+
+		assertThat(this.sync.syncUp(Arrays.asList("failing", "empty", "unavailable"))).isZero();
+		assertThat(this.sync.syncUp(Collections.emptyList())).isZero();
+		assertThat(this.registered).isEmpty();
+	}
+
+	private EurekaHttpClient peer(String url, Applications applications) {
+		EurekaHttpClient client = mock(EurekaHttpClient.class);
+		when(client.getApplications()).thenReturn(EurekaHttpResponse.anEurekaHttpResponse(200, applications).build());
+		this.clients.put(url, client);
+		return client;
+	}
+
+	private static Applications applications(InstanceInfo... instances) {
+		Application application = new Application("APP");
+		for (InstanceInfo instance : instances) {
+			application.addInstance(instance);
+		}
+		Applications applications = new Applications();
+		applications.addApplication(application);
+		return applications;
+	}
+
+	private static InstanceInfo instance(String id, long lastDirtyTimestamp) {
+		return InstanceInfo.Builder.newBuilder().setAppName("APP").setInstanceId(id).setHostName(id)
+				.setLastDirtyTimestamp(lastDirtyTimestamp).build();
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.cluster.protocol.ReplicationInstance;
+import com.netflix.eureka.cluster.protocol.ReplicationInstanceResponse;
+import com.netflix.eureka.cluster.protocol.ReplicationList;
+import com.netflix.eureka.cluster.protocol.ReplicationListResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl.Action;
+import org.junit.Test;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link PeerCircuitBreaker}.
+ *
+ * @author agent agent
+ */
+public class PeerCircuitBreakerTests {
+
+	private final PeerAwareInstanceRegistry registry = mock(PeerAwareInstanceRegistry.class);
+
+	private final HttpReplicationClient delegate = mock(HttpReplicationClient.class);
+
+	private final PeerEurekaNode node = mock(PeerEurekaNode.class);
+
+	private PeerCircuitBreaker circuitBreaker;
+
+	@Test
+	public void dropsBatchesAfterConsecutiveFailures() {
+		HttpReplicationClient client = client(Duration.ofHours(1));
+		when(this.delegate.submitBatchUpdates(any())).thenThrow(new IllegalStateException("connection refused"));
+
+		assertThatThrownBy(() -> client.submitBatchUpdates(batch(task("foo-1", Action.Heartbeat))))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> client.submitBatchUpdates(batch(task("foo-1", Action.Heartbeat))))
+				.isInstanceOf(IllegalStateException.class);
+		EurekaHttpResponse<ReplicationListResponse> response = client
+				.submitBatchUpdates(batch(task("foo-1", Action.Heartbeat), task("foo-2", Action.Register)));
+
+		verify(this.delegate, times(2)).submitBatchUpdates(any());
+		assertThat(response.getStatusCode()).isEqualTo(200);
+		assertThat(response.getEntity().getResponseList()).extracting(ReplicationInstanceResponse::getStatusCode)
+				.containsExactly(200, 200);
+		assertThat(this.circuitBreaker.getOpenedCount()).isEqualTo(1);
+		assertThat(this.circuitBreaker.getDroppedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void catchesUpWithDroppedMembershipChangesOnceProbeSucceeds() throws Exception {
+		HttpReplicationClient client = client(Duration.ofMillis(100));
+		InstanceInfo foo1 = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+				.setHostName("foo-1").build();
+		when(this.registry.getInstanceByAppAndId("FOO", "foo-1", false)).thenReturn(foo1);
+		when(this.delegate.submitBatchUpdates(any()))
+				.thenReturn(anEurekaHttpResponse(503, ReplicationListResponse.class).build());
+		client.submitBatchUpdates(batch(task("foo-1", Action.Heartbeat)));
+		client.submitBatchUpdates(batch(task("foo-1", Action.Heartbeat)));
+		client.submitBatchUpdates(batch(task("foo-1", Action.Register), task("foo-2", Action.Register),
+				task("foo-1", Action.Heartbeat), task("foo-2", Action.Cancel)));
+		verify(this.delegate, times(2)).submitBatchUpdates(any());
+
+		Thread.sleep(150);
+		when(this.delegate.submitBatchUpdates(any()))
+				.thenReturn(anEurekaHttpResponse(200, new ReplicationListResponse()).build());
+		client.submitBatchUpdates(batch(task("foo-3", Action.Heartbeat)));
+
+		verify(this.delegate, times(3)).submitBatchUpdates(any());
+		verify(this.node).register(foo1);
+		verify(this.node).cancel("FOO", "foo-2");
+		verifyNoMoreInteractions(this.node);
+		assertThat(this.circuitBreaker.getCaughtUpCount()).isEqualTo(2);
+	}
+
+	private HttpReplicationClient client(Duration openDuration) {
+		this.circuitBreaker = new PeerCircuitBreaker(this.registry, 2, Duration.ofMinutes(1), openDuration);
+		return this.circuitBreaker.guarding("http://peer/eureka/", this.delegate, () -> this.node);
+	}
+
+	private ReplicationList batch(ReplicationInstance... instances) {
+		ReplicationList batch = new ReplicationList();
+		for (ReplicationInstance instance : instances) {
+			batch.addReplicationInstance(instance);
+		}
+		return batch;
+	}
+
+	private ReplicationInstance task(String id, Action action) {
+		return new ReplicationInstance("FOO", id, 1L, null, null, null, action);
+	}
+
+}
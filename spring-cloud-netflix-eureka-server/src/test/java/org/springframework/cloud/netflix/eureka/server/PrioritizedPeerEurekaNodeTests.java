@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.protocol.ReplicationInstanceResponse;
+import com.netflix.eureka.cluster.protocol.ReplicationList;
+import com.netflix.eureka.cluster.protocol.ReplicationListResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl.Action;
+import org.junit.After;
+import org.junit.Test;
+
+import static com.netflix.discovery.shared.transport.EurekaHttpResponse.anEurekaHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link PrioritizedPeerEurekaNode}.
+ *
+ * @author agent agent
+ */
+public class PrioritizedPeerEurekaNodeTests {
+
+	private final HttpReplicationClient client = mock(HttpReplicationClient.class);
+
+	private final CountDownLatch heartbeatsReleased = new CountDownLatch(1);
+
+	private final EurekaServerConfigBean config = new EurekaServerConfigBean();
+
+	private final InstanceInfo instance = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+			.setHostName("foo").build();
+
+	private PrioritizedPeerEurekaNode node;
+
+	@After
+	public void tearDown() {
+		this.heartbeatsReleased.countDown();
+		if (this.node != null) {
+			this.node.shutDown();
+		}
+	}
+
+	@Test
+	public void replicatesMembershipChangesWhileHeartbeatsAreStuck() throws Throwable {
+		this.config.setMaxThreadsForPeerReplication(2);
+		when(this.client.submitBatchUpdates(any())).thenAnswer(invocation -> {
+			ReplicationList batch = invocation.getArgument(0);
+			if (action(batch) == Action.Heartbeat) {
+				this.heartbeatsReleased.await(30, TimeUnit.SECONDS);
+			}
+			return success(batch);
+		});
+		this.node = new PrioritizedPeerEurekaNode(mock(PeerAwareInstanceRegistry.class), "localhost",
+				"http://localhost:8761/eureka/", this.client, this.config, 1, 1);
+
+		this.node.heartbeat("FOO", "foo-1", this.instance, null, false);
+		verify(this.client, timeout(10000)).submitBatchUpdates(argThat(batch -> action(batch) == Action.Heartbeat));
+		this.node.register(this.instance);
+
+		verify(this.client, timeout(10000)).submitBatchUpdates(argThat(batch -> action(batch) == Action.Register));
+	}
+
+	@Test
+	public void doesNotRegisterCancelledInstancesAgainAfterMissedHeartbeats() throws Throwable {
+		when(this.client.submitBatchUpdates(any())).thenAnswer(invocation -> response(invocation.getArgument(0), 404));
+		this.node = new PrioritizedPeerEurekaNode(mock(PeerAwareInstanceRegistry.class), "localhost",
+				"http://localhost:8761/eureka/", this.client, this.config, 1, 1);
+
+		this.node.heartbeat("FOO", "foo-1", this.instance, null, false);
+
+		verify(this.client, timeout(10000)).submitBatchUpdates(argThat(batch -> action(batch) == Action.Heartbeat));
+		verify(this.client, after(1000).never())
+				.submitBatchUpdates(argThat(batch -> action(batch) == Action.Register));
+	}
+
+	@Test
+	public void registersAgainAheadOfLaterCancellationAfterMissedHeartbeats() throws Throwable {
+		this.config.setMaxThreadsForPeerReplication(2);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		List<Action> sent = new CopyOnWriteArrayList<>();
+		when(this.client.submitBatchUpdates(any())).thenAnswer(invocation -> {
+			ReplicationList batch = invocation.getArgument(0);
+			if (action(batch) == Action.Heartbeat) {
+				return response(batch, 404);
+			}
+			cancelled.await(30, TimeUnit.SECONDS);
+			batch.getReplicationList().forEach(task -> sent.add(task.getAction()));
+			return success(batch);
+		});
+		PeerAwareInstanceRegistry registry = mock(PeerAwareInstanceRegistry.class);
+		when(registry.getInstanceByAppAndId(eq("FOO"), eq("foo-1"), anyBoolean())).thenReturn(this.instance);
+		this.node = new PrioritizedPeerEurekaNode(registry, "localhost", "http://localhost:8761/eureka/", this.client,
+				this.config, 1, 1);
+
+		this.node.heartbeat("FOO", "foo-1", this.instance, null, false);
+		verify(registry, timeout(10000)).getInstanceByAppAndId(eq("FOO"), eq("foo-1"), anyBoolean());
+		// cancelled after the 404, while the registration is not sent yet
+		this.node.cancel("FOO", "foo-1");
+		cancelled.countDown();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (sent.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(sent).containsExactly(Action.Register, Action.Cancel);
+	}
+
+	@Test
+	public void shutsSharedClientDownOnce() {
+		new PrioritizedPeerEurekaNode(mock(PeerAwareInstanceRegistry.class), "localhost",
+				"http://localhost:8761/eureka/", this.client, this.config, 1, 1).shutDown();
+
+		verify(this.client, times(1)).shutdown();
+	}
+
+	@Test
+	public void splitsReplicationThreadsByWeight() {
+		this.config.setMaxThreadsForPeerReplication(20);
+		assertThat(PrioritizedPeerEurekaNode.membershipThreads(this.config, 1, 1)).isEqualTo(10);
+		assertThat(PrioritizedPeerEurekaNode.membershipThreads(this.config, 1, 3)).isEqualTo(5);
+		assertThat(PrioritizedPeerEurekaNode.membershipThreads(this.config, 1, 100)).isEqualTo(1);
+		assertThat(PrioritizedPeerEurekaNode.membershipThreads(this.config, 100, 1)).isEqualTo(19);
+	}
+
+	private static Action action(ReplicationList batch) {
+		return batch != null ? batch.getReplicationList().get(0).getAction() : null;
+	}
+
+	private static EurekaHttpResponse<ReplicationListResponse> success(ReplicationList batch) {
+		return response(batch, 200);
+	}
+
+	private static EurekaHttpResponse<ReplicationListResponse> response(ReplicationList batch, int statusCode) {
+		ReplicationListResponse response = new ReplicationListResponse();
+		batch.getReplicationList()
+				.forEach(task -> response.addResponse(new ReplicationInstanceResponse(statusCode, null)));
+		return anEurekaHttpResponse(200, response).build();
+	}
+
+}
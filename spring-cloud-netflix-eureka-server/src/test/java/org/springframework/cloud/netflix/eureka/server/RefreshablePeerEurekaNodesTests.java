@@ -24,6 +24,7 @@ import java.util.List;
 import com.netflix.appinfo.ApplicationInfoManager;
 import com.netflix.discovery.EurekaClientConfig;
 import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.cluster.PeerEurekaNode;
 import com.netflix.eureka.cluster.PeerEurekaNodes;
 import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
 import com.netflix.eureka.resources.ServerCodecs;
@@ -204,6 +205,35 @@ public class RefreshablePeerEurekaNodesTests {
 				.as("DS Replicas not updated in the Eureka Server dashboard").isTrue();
 	}
 
+	@Test
+	public void unchangedPeersKeepTheirNodes() {
+		changeProperty(
+				"eureka.client.service-url.defaultZone=https://defaul-host7:8678/eureka/,https://defaul-host8:8678/eureka/");
+		forceUpdate();
+		PeerEurekaNode unchanged = this.peerEurekaNodes.getPeerEurekaNodes().stream()
+				.filter(node -> node.getServiceUrl().equals("https://defaul-host7:8678/eureka/")).findFirst().get();
+
+		changeProperty(
+				"eureka.client.service-url.defaultZone=https://defaul-host7:8678/eureka/,https://defaul-host9:8678/eureka/");
+		forceUpdate();
+		assertThat(this.peerEurekaNodes.getPeerEurekaNodes()).hasSize(2).contains(unchanged)
+				.extracting(PeerEurekaNode::getServiceUrl)
+				.containsOnly("https://defaul-host7:8678/eureka/", "https://defaul-host9:8678/eureka/");
+
+		changeProperty("eureka.client.service-url.defaultZone=https://DEFAUL-HOST7:8678/eureka/");
+		forceUpdate();
+		assertThat(this.peerEurekaNodes.getPeerEurekaNodes()).containsExactly(unchanged);
+	}
+
+	@Test
+	public void normalizesPeerUrls() {
+		assertThat(RefreshablePeerEurekaNodes.normalizePeerUrl("HTTPS://Peer1:443/eureka"))
+				.isEqualTo("https://peer1/eureka/");
+		assertThat(RefreshablePeerEurekaNodes.normalizePeerUrl("http://peer1:8761/eureka/"))
+				.isEqualTo("http://peer1:8761/eureka/");
+		assertThat(RefreshablePeerEurekaNodes.normalizePeerUrl("http://peer1")).isEqualTo("http://peer1/");
+	}
+
 	@Test
 	public void notUpdatedForRelaxedKeys() {
 		changeProperty("eureka.client.use-dns-for-fetching-service-urls=false",
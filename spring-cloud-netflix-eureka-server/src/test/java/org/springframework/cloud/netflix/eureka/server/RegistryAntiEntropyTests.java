@@ -0,0 +1,224 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.appinfo.LeaseInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpClient;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.cluster.PeerEurekaNode;
+import com.netflix.eureka.cluster.PeerEurekaNodes;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegistryAntiEntropy}.
+ *
+ * @author agent agent
+ */
+public class RegistryAntiEntropyTests {
+
+	private final PeerAwareInstanceRegistry registry = mock(PeerAwareInstanceRegistry.class);
+
+	private final PeerEurekaNodes peerEurekaNodes = mock(PeerEurekaNodes.class);
+
+	private final Applications local = new Applications();
+
+	private final Map<String, Map<String, String>> peerDigests = new HashMap<>();
+
+	private final Map<String, EurekaHttpClient> clients = new HashMap<>();
+
+	private final List<PeerEurekaNode> nodes = new ArrayList<>();
+
+	private RegistryAntiEntropy antiEntropy;
+
+	@Before
+	public void setup() {
+		when(this.registry.getApplicationsFromLocalRegionOnly()).thenReturn(this.local);
+		when(this.peerEurekaNodes.getPeerEurekaNodes()).thenReturn(this.nodes);
+		when(this.registry.getInstanceByAppAndId(anyString(), anyString(), anyBoolean()))
+				.then(invocation -> instance(invocation.getArgument(1)));
+		doAnswer(invocation -> {
+			InstanceInfo info = invocation.getArgument(0);
+			Application application = this.local.getRegisteredApplications(info.getAppName());
+			if (application == null) {
+				application = new Application(info.getAppName());
+				this.local.addApplication(application);
+			}
+			application.addInstance(info);
+			return null;
+		}).when(this.registry).register(any(InstanceInfo.class), anyInt(), anyBoolean());
+		this.antiEntropy = new RegistryAntiEntropy(this.registry, this.peerEurekaNodes,
+				new EurekaServerConfigBean(), new ReplicationClientAdditionalFilters(Collections.emptySet()),
+				this.clients::get, Duration.ofMinutes(1)) {
+			@Override
+			protected Map<String, String> getDigests(String peerUrl) {
+				Map<String, String> digests = peerDigests.get(peerUrl);
+				if (digests == null) {
+					throw new IllegalStateException("connection refused");
+				}
+				return digests;
+			}
+		};
+	}
+
+	@After
+	public void cleanup() {
+		this.antiEntropy.stop();
+	}
+
+	@Test
+	public void digestsChangeWithInstanceTimestamps() {
+		Application application = application("APP", instance("APP", "a", 1), instance("APP", "b", 1));
+		String digest = RegistryDigests.digest(application);
+
+		assertThat(RegistryDigests.digest(application("APP", instance("APP", "b", 1), instance("APP", "a", 1))))
+				.isEqualTo(digest);
+		assertThat(RegistryDigests.digest(application("APP", instance("APP", "a", 1), instance("APP", "b", 2))))
+				.isNotEqualTo(digest);
+		assertThat(RegistryDigests.digest(application("APP", instance("APP", "a", 1), instance("APP", "c", 1))))
+				.isNotEqualTo(digest);
+	}
+
+	@Test
+	public void copiesOnlyDivergingApplications() {
+		this.local.addApplication(application("SAME", instance("SAME", "s", 1)));
+		this.local.addApplication(application("STALE", instance("STALE", "x", 1)));
+		Applications remote = new Applications();
+		remote.addApplication(application("SAME", instance("SAME", "s", 1)));
+		remote.addApplication(application("STALE", instance("STALE", "x", 2), instance("STALE", "y", 1)));
+		remote.addApplication(application("MISSING", instance("MISSING", "m", 1)));
+		EurekaHttpClient client = peer("peer1", remote);
+
+		assertThat(this.antiEntropy.repair()).isEqualTo(3);
+		assertThat(this.antiEntropy.getDivergedCount()).isEqualTo(2);
+		assertThat(this.antiEntropy.getRepairedCount()).isEqualTo(3);
+		verify(client, never()).getApplication("SAME");
+		verify(client).shutdown();
+		assertThat(instance("x").getLastDirtyTimestamp()).isEqualTo(2L);
+
+		assertThat(this.antiEntropy.repair()).isZero();
+	}
+
+	@Test
+	public void keepsNewerLocalInstancesAndSkipsFailingPeers() {
+		this.local.addApplication(application("APP", instance("APP", "x", 3)));
+		Applications remote = new Applications();
+		remote.addApplication(application("APP", instance("APP", "x", 2)));
+		node("failing");
+		peer("peer1", remote);
+
+		assertThat(this.antiEntropy.repair()).isZero();
+		assertThat(this.antiEntropy.getDivergedCount()).isEqualTo(1);
+		assertThat(instance("x").getLastDirtyTimestamp()).isEqualTo(3L);
+	}
+
+	@Test
+	public void doesNotCopyInstancesCancelledAfterTheCopyOfThePeer() {
+		this.antiEntropy.registryChanged(1, ActionType.DELETED, instance("APP", "x", 2));
+		Applications remote = new Applications();
+		remote.addApplication(application("APP", instance("APP", "x", 2)));
+		peer("peer1", remote);
+
+		assertThat(this.antiEntropy.repair()).isZero();
+
+		remote.getRegisteredApplications("APP").getByInstanceId("x").setLastDirtyTimestamp(3L);
+		assertThat(this.antiEntropy.repair()).isEqualTo(1);
+	}
+
+	@Test
+	public void doesNotCopyInstancesThePeerNoLongerRenews() {
+		InstanceInfo stale = instance("APP", "x", 1);
+		stale.setLeaseInfo(LeaseInfo.Builder.newBuilder().setDurationInSecs(90)
+				.setRenewalTimestamp(System.currentTimeMillis() - 600_000L).build());
+		InstanceInfo renewed = instance("APP", "y", 1);
+		renewed.setLeaseInfo(LeaseInfo.Builder.newBuilder().setDurationInSecs(90)
+				.setRenewalTimestamp(System.currentTimeMillis()).build());
+		Applications remote = new Applications();
+		remote.addApplication(application("APP", stale, renewed));
+		peer("peer1", remote);
+
+		assertThat(this.antiEntropy.repair()).isEqualTo(1);
+		assertThat(instance("x")).isNull();
+		assertThat(instance("y")).isNotNull();
+	}
+
+	private EurekaHttpClient peer(String url, Applications applications) {
+		EurekaHttpClient client = mock(EurekaHttpClient.class);
+		for (Application application : applications.getRegisteredApplications()) {
+			when(client.getApplication(application.getName()))
+					.thenReturn(EurekaHttpResponse.anEurekaHttpResponse(200, application).build());
+		}
+		this.clients.put(url, client);
+		this.peerDigests.put(url, RegistryDigests.of(applications));
+		node(url);
+		return client;
+	}
+
+	private void node(String url) {
+		PeerEurekaNode node = mock(PeerEurekaNode.class);
+		when(node.getServiceUrl()).thenReturn(url);
+		this.nodes.add(node);
+	}
+
+	private InstanceInfo instance(String id) {
+		for (Application application : this.local.getRegisteredApplications()) {
+			InstanceInfo info = application.getByInstanceId(id);
+			if (info != null) {
+				return info;
+			}
+		}
+		return null;
+	}
+
+	private static Application application(String name, InstanceInfo... instances) {
+		Application application = new Application(name);
+		for (InstanceInfo instance : instances) {
+			application.addInstance(instance);
+		}
+		return application;
+	}
+
+	private static InstanceInfo instance(String appName, String id, long lastDirtyTimestamp) {
+		return InstanceInfo.Builder.newBuilder().setAppName(appName).setInstanceId(id).setHostName(id)
+				.setLastDirtyTimestamp(lastDirtyTimestamp).build();
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Tests for {@link RegistryChangeJournal}.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeJournalTests {
+
+	private final RegistryChangeJournal journal = new RegistryChangeJournal(3);
+
+	@Test
+	public void returnsLastChangeOfEachInstanceSinceVersion() {
+		this.journal.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		this.journal.registryChanged(2, ActionType.ADDED, instance("foo-2"));
+		this.journal.registryChanged(4, ActionType.DELETED, instance("foo-1"));
+
+		RegistryChangeJournal.Changes changes = this.journal.since(1);
+		assertThat(changes.getVersion()).isEqualTo(4);
+		assertThat(changes.getInstances()).extracting(InstanceInfo::getId, InstanceInfo::getActionType)
+				.containsExactly(tuple("foo-2", ActionType.ADDED), tuple("foo-1", ActionType.DELETED));
+		assertThat(this.journal.since(0).getInstances()).hasSize(2);
+		assertThat(this.journal.since(4).isEmpty()).isTrue();
+	}
+
+	@Test
+	public void returnsNullOnceChangesAreDropped() {
+		for (int version = 1; version <= 5; version++) {
+			this.journal.registryChanged(version, ActionType.MODIFIED, instance("foo-" + version));
+		}
+
+		assertThat(this.journal.getFloor()).isEqualTo(2);
+		assertThat(this.journal.since(1)).isNull();
+		assertThat(this.journal.since(2).getInstances()).hasSize(3);
+		// a version of another server
+		assertThat(this.journal.since(6)).isNull();
+	}
+
+	@Test
+	public void doesNotChangeTheRegistryInstances() {
+		InstanceInfo info = instance("foo-1");
+		this.journal.registryChanged(1, ActionType.DELETED, info);
+
+		assertThat(this.journal.since(0).getInstances().get(0)).isNotSameAs(info);
+		assertThat(info.getActionType()).isNotEqualTo(ActionType.DELETED);
+	}
+
+	private static InstanceInfo instance(String id) {
+		return InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId(id).setHostName(id).build();
+	}
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RegistryChangeStream}.
+ *
+ * @author agent agent
+ */
+public class RegistryChangeStreamTests {
+
+	private final RegistryChangeStream stream = new RegistryChangeStream(new CloudJacksonJson(), 100, 2,
+			Duration.ofMinutes(1));
+
+	@Before
+	public void setup() {
+		this.stream.setRegistryEpoch(() -> "5f");
+	}
+
+	@After
+	public void cleanup() {
+		this.stream.destroy();
+	}
+
+	@Test
+	public void streamsChangesToSubscribers() throws Exception {
+		MockHttpServletResponse response = subscribe(null);
+		assertThat(response.getContentType()).startsWith("text/event-stream");
+		assertThat(this.stream.getSubscriberCount()).isEqualTo(1);
+
+		this.stream.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		this.stream.registryChanged(2, ActionType.DELETED, instance("foo-1"));
+
+		await(response, "id: 5f:2\nevent: DELETED\ndata: ");
+		assertThat(response.getContentAsString()).contains("id: 5f:1\nevent: ADDED\ndata: {")
+				.contains("\"instanceId\":\"foo-1\"");
+		assertThat(this.stream.getPublishedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void resumesFromLastEventIdOrResets() throws Exception {
+		MockHttpServletResponse live = subscribe(null);
+		this.stream.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		this.stream.registryChanged(2, ActionType.ADDED, instance("foo-2"));
+		this.stream.registryChanged(3, ActionType.ADDED, instance("foo-3"));
+		await(live, "id: 5f:3\n");
+
+		MockHttpServletResponse resumed = subscribe("5f:2");
+		assertThat(resumed.getContentAsString()).startsWith("id: 5f:3\nevent: ADDED").doesNotContain("id: 5f:2\n");
+
+		// the event following version 0 is no longer kept
+		MockHttpServletResponse reset = subscribe("5f:0");
+		assertThat(reset.getContentAsString()).isEqualTo("id: 5f:1\nevent: RESET\ndata: {}\n\n");
+
+		MockHttpServletResponse bare = subscribe("2");
+		assertThat(bare.getContentAsString()).isEqualTo("id: 5f:1\nevent: RESET\ndata: {}\n\n");
+	}
+
+	@Test
+	public void resetsSubscribersResumingFromAnotherEpoch() throws Exception {
+		MockHttpServletResponse live = subscribe(null);
+		this.stream.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		this.stream.registryChanged(2, ActionType.ADDED, instance("foo-2"));
+		await(live, "id: 5f:2\n");
+
+		// the same version of another server, or of a previous run of this one
+		MockHttpServletResponse other = subscribe("a0:1");
+		assertThat(other.getContentAsString()).isEqualTo("id: 5f:0\nevent: RESET\ndata: {}\n\n");
+	}
+
+	@Test
+	public void buffersEventsUntilSubscribersCanTakeThem() throws Exception {
+		NonBlockingResponse response = subscribe(null);
+		response.ready = false;
+
+		this.stream.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		await(() -> this.stream.getPublishedCount() == 1);
+		assertThat(response.getContentAsString()).doesNotContain("id: 5f:1\n");
+
+		response.ready = true;
+		response.listener.onWritePossible();
+		await(response, "id: 5f:1\nevent: ADDED");
+	}
+
+	@Test
+	public void disconnectsSubscribersThatDoNotKeepUp() throws Exception {
+		this.stream.setSubscriberBufferSize(1);
+		NonBlockingResponse slow = subscribe(null);
+		slow.ready = false;
+		MockHttpServletResponse live = subscribe(null);
+
+		this.stream.registryChanged(1, ActionType.ADDED, instance("foo-1"));
+		this.stream.registryChanged(2, ActionType.ADDED, instance("foo-2"));
+
+		await(live, "id: 5f:2\n");
+		await(() -> this.stream.getSubscriberCount() == 1);
+		assertThat(this.stream.getDisconnectedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void passesOtherRequestsOn() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/eureka/apps");
+		MockFilterChain chain = new MockFilterChain();
+		this.stream.doFilter(request, new MockHttpServletResponse(), chain);
+		assertThat(chain.getRequest()).isSameAs(request);
+	}
+
+	private NonBlockingResponse subscribe(String lastEventId) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", RegistryChangeStream.PATH);
+		request.setAsyncSupported(true);
+		if (lastEventId != null) {
+			request.addHeader("Last-Event-ID", lastEventId);
+		}
+		NonBlockingResponse response = new NonBlockingResponse();
+		this.stream.doFilter(request, response, new MockFilterChain());
+		assertThat(request.isAsyncStarted()).isTrue();
+		return response;
+	}
+
+	private static void await(MockHttpServletResponse response, String content) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!response.getContentAsString().contains(content) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(response.getContentAsString()).contains(content);
+	}
+
+	private static void await(Condition condition) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.matches() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(condition.matches()).isTrue();
+	}
+
+	private static InstanceInfo instance(String id) {
+		return InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId(id).setHostName(id).build();
+	}
+
+	private interface Condition {
+
+		boolean matches();
+
+	}
+
+	/**
+	 * Response whose output stream supports non-blocking writes, and can be told to be
+	 * unable to take more.
+	 */
+	private static final class NonBlockingResponse extends MockHttpServletResponse {
+
+		private volatile boolean ready = true;
+
+		private volatile WriteListener listener;
+
+		private final ServletOutputStream outputStream = new ServletOutputStream() {
+
+			@Override
+			public boolean isReady() {
+				return ready;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+				listener = writeListener;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				content().write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				content().write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				content().flush();
+			}
+
+		};
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return this.outputStream;
+		}
+
+		private ServletOutputStream content() {
+			return super.getOutputStream();
+		}
+
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.time.Duration;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.ActionType;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.resources.ServerCodecs;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.EurekaConstants;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegistryDeltaLongPollFilter}.
+ *
+ * @author agent agent
+ */
+public class RegistryDeltaLongPollFilterTests {
+
+	private final InstanceRegistry registry = mock(InstanceRegistry.class);
+
+	private final ServerCodecs serverCodecs = mock(ServerCodecs.class);
+
+	private final RegistryDeltaLongPollFilter filter = new RegistryDeltaLongPollFilter(this.registry,
+			new EurekaServerConfigBean(), this.serverCodecs, Duration.ofSeconds(30));
+
+	private final InstanceInfo info = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+			.setHostName("foo").build();
+
+	@Before
+	@SuppressWarnings("deprecation")
+	public void setup() {
+		Applications delta = new Applications();
+		Application application = new Application("FOO");
+		application.addInstance(this.info);
+		delta.addApplication(application);
+		when(this.registry.getApplicationDeltas()).thenReturn(delta);
+		when(this.registry.shouldAllowAccess(anyBoolean())).thenReturn(true);
+		when(this.registry.getRegistryVersion()).thenReturn(7L);
+		when(this.registry.getRegistryEpoch()).thenReturn("a1");
+		when(this.serverCodecs.getFullJsonCodec()).thenReturn(new CloudJacksonJson());
+	}
+
+	@Test
+	public void answersRightAwayWhenAlreadyChanged() throws Exception {
+		MockHttpServletRequest request = request(5);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+
+		assertThat(request.isAsyncStarted()).isFalse();
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:7");
+		assertThat(response.getContentAsString()).contains("foo-1");
+	}
+
+	@Test
+	public void holdsFetchUntilChanged() throws Exception {
+		MockHttpServletRequest request = request(7);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+
+		assertThat(request.isAsyncStarted()).isTrue();
+		assertThat(this.filter.getWaitingCount()).isEqualTo(1);
+		assertThat(response.getContentAsString()).isEmpty();
+
+		when(this.registry.getRegistryVersion()).thenReturn(8L);
+		this.filter.registryChanged(8, ActionType.ADDED, this.info);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (request.isAsyncStarted() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(request.isAsyncStarted()).isFalse();
+		assertThat(this.filter.getWaitingCount()).isZero();
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:8");
+		assertThat(response.getContentAsString()).contains("foo-1");
+	}
+
+	@Test
+	public void answersNotModifiedOnTimeout() throws Exception {
+		MockHttpServletRequest request = request(7);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+
+		MockAsyncContext context = (MockAsyncContext) request.getAsyncContext();
+		for (AsyncListener listener : context.getListeners()) {
+			listener.onTimeout(new AsyncEvent(context));
+		}
+
+		assertThat(this.filter.getWaitingCount()).isZero();
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:7");
+		assertThat(response.getContentAsString()).isEmpty();
+	}
+
+	@Test
+	public void answersHeldFetchesWhenDestroyed() throws Exception {
+		MockHttpServletRequest request = request(7);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+
+		this.filter.destroy();
+
+		assertThat(request.isAsyncStarted()).isFalse();
+		assertThat(this.filter.getWaitingCount()).isZero();
+		assertThat(response.getStatus()).isEqualTo(304);
+	}
+
+	@Test
+	public void answersExactChangesFromJournal() throws Exception {
+		RegistryChangeJournal journal = new RegistryChangeJournal(2);
+		journal.registryChanged(1, ActionType.ADDED, InstanceInfo.Builder.newBuilder().setAppName("BAR")
+				.setInstanceId("bar-1").setHostName("bar").build());
+		journal.registryChanged(2, ActionType.ADDED, this.info);
+		journal.registryChanged(3, ActionType.MODIFIED, this.info);
+		when(this.registry.getApplications()).thenReturn(new Applications());
+		this.filter.setJournal(journal);
+
+		MockHttpServletResponse changed = new MockHttpServletResponse();
+		this.filter.doFilter(request(2), changed, new MockFilterChain());
+		assertThat(changed.getStatus()).isEqualTo(200);
+		assertThat(changed.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:3");
+		assertThat(changed.getContentAsString()).contains("foo-1").contains("MODIFIED").doesNotContain("bar-1");
+
+		MockHttpServletResponse gone = new MockHttpServletResponse();
+		this.filter.doFilter(request(0), gone, new MockFilterChain());
+		assertThat(gone.getStatus()).isEqualTo(410);
+		assertThat(gone.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:3");
+
+		// the same version of a previous run of the server
+		MockHttpServletResponse restarted = new MockHttpServletResponse();
+		this.filter.doFilter(request("b2:2"), restarted, new MockFilterChain());
+		assertThat(restarted.getStatus()).isEqualTo(410);
+		assertThat(restarted.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:3");
+	}
+
+	@Test
+	public void takesChangesAgainWhenJournalMovesDuringHashCode() throws Exception {
+		RegistryChangeJournal journal = new RegistryChangeJournal(10);
+		journal.registryChanged(1, ActionType.ADDED, this.info);
+		InstanceInfo bar = InstanceInfo.Builder.newBuilder().setAppName("BAR").setInstanceId("bar-1")
+				.setHostName("bar").setStatus(InstanceInfo.InstanceStatus.UP).build();
+		Application application = new Application("BAR");
+		application.addInstance(bar);
+		Applications registry = new Applications();
+		registry.addApplication(application);
+		when(this.registry.getApplications()).then(invocation -> {
+			if (journal.getVersion() == 1) {
+				// registered while the hash code is computed
+				journal.registryChanged(2, ActionType.ADDED, bar);
+			}
+			return registry;
+		});
+		this.filter.setJournal(journal);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request(0), response, new MockFilterChain());
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:2");
+		assertThat(response.getContentAsString()).contains("bar-1").contains("UP_1_");
+	}
+
+	@Test
+	public void answersRightAwayVersionsOfAnotherEpoch() throws Exception {
+		MockHttpServletRequest request = request("b2:7");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+
+		assertThat(request.isAsyncStarted()).isFalse();
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader(EurekaConstants.REGISTRY_VERSION_HEADER)).isEqualTo("a1:7");
+
+		MockHttpServletResponse withoutEpoch = new MockHttpServletResponse();
+		this.filter.doFilter(request("7"), withoutEpoch, new MockFilterChain());
+		assertThat(withoutEpoch.getStatus()).isEqualTo(200);
+	}
+
+	@Test
+	public void passesRegularDeltaFetchesOn() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", RegistryDeltaLongPollFilter.PATH);
+		MockFilterChain chain = new MockFilterChain();
+		this.filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(chain.getRequest()).isSameAs(request);
+	}
+
+	private MockHttpServletRequest request(long since) {
+		return request("a1:" + since);
+	}
+
+	private MockHttpServletRequest request(String since) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", RegistryDeltaLongPollFilter.PATH);
+		request.setParameter(RegistryDeltaLongPollFilter.SINCE_PARAMETER, since);
+		request.addHeader(HttpHeaders.ACCEPT, "application/json");
+		request.setAsyncSupported(true);
+		return request;
+	}
+
+}
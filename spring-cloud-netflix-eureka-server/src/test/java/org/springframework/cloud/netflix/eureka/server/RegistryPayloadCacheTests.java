@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.resources.ServerCodecs;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.Format;
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.Payload;
+import org.springframework.cloud.netflix.eureka.server.RegistryPayloadCache.View;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegistryPayloadCache}.
+ *
+ * @author agent agent
+ */
+public class RegistryPayloadCacheTests {
+
+	private final InstanceRegistry registry = mock(InstanceRegistry.class);
+
+	private final EurekaServerConfigBean serverConfig = new EurekaServerConfigBean();
+
+	private final ServerCodecs serverCodecs = mock(ServerCodecs.class);
+
+	private final CloudJacksonJson json = new CloudJacksonJson();
+
+	private final RegistryPayloadCache payloadCache = new RegistryPayloadCache(this.registry, this.serverConfig,
+			this.serverCodecs, new CloudJacksonSmile());
+
+	@Before
+	public void setup() {
+		Application foo = new Application("FOO");
+		foo.addInstance(instance("FOO", "foo-1", "foo,shared"));
+		foo.addInstance(instance("FOO", "foo-2", "foo"));
+		Application bar = new Application("BAR");
+		bar.addInstance(instance("BAR", "bar-1", "shared"));
+		Applications applications = new Applications();
+		applications.addApplication(foo);
+		applications.addApplication(bar);
+		applications.setAppsHashCode(applications.getReconcileHashCode());
+		when(this.registry.getApplications()).thenReturn(applications);
+		when(this.serverCodecs.getFullJsonCodec()).thenReturn(this.json);
+	}
+
+	@Test
+	public void encodesOncePerRegistryVersion() throws Exception {
+		this.serverConfig.setUseReadOnlyResponseCache(false);
+		Payload payload = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false)).isSameAs(payload);
+
+		when(this.registry.getRegistryVersion()).thenReturn(1L);
+		Payload updated = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		assertThat(updated).isNotSameAs(payload);
+		assertThat(updated.getVersion()).isEqualTo(1L);
+		verify(this.registry, times(2)).getApplications();
+	}
+
+	@Test
+	public void keepsPayloadsForUpdateIntervalWithReadOnlyCache() throws Exception {
+		Payload payload = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		when(this.registry.getRegistryVersion()).thenReturn(1L);
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false)).isSameAs(payload);
+	}
+
+	@Test
+	public void vipViewOnlyContainsMatchingInstances() throws Exception {
+		Applications applications = decode(this.payloadCache.get(View.VIP, "shared", null, Format.JSON, false, false));
+		assertThat(applications.getRegisteredApplications()).hasSize(2);
+		assertThat(applications.getRegisteredApplications("FOO").getInstances()).extracting(InstanceInfo::getId)
+				.containsExactly("foo-1");
+		assertThat(applications.getAppsHashCode()).isEqualTo(applications.getReconcileHashCode());
+	}
+
+	@Test
+	public void gzippedPayloadFollowsPlainPayload() throws Exception {
+		this.serverConfig.setUseReadOnlyResponseCache(false);
+		Payload plain = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		Payload gzipped = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, true);
+		assertThat(gzipped.isGzipped()).isTrue();
+		assertThat(StreamUtils.copyToByteArray(new GZIPInputStream(bytes(gzipped)))).isEqualTo(toByteArray(plain));
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, true)).isSameAs(gzipped);
+
+		when(this.registry.getRegistryVersion()).thenReturn(1L);
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, true).getVersion())
+				.isEqualTo(1L);
+	}
+
+	@Test
+	public void encodesDeltaAgainAfterUpdateInterval() throws Exception {
+		this.serverConfig.setUseReadOnlyResponseCache(false);
+		this.serverConfig.setResponseCacheUpdateIntervalMs(0);
+		when(this.registry.getApplicationDeltas()).thenReturn(new Applications());
+		Payload full = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		Payload delta = this.payloadCache.get(View.DELTA, null, null, Format.JSON, false, false);
+
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false)).isSameAs(full);
+		assertThat(this.payloadCache.get(View.DELTA, null, null, Format.JSON, false, false)).isNotSameAs(delta);
+	}
+
+	@Test
+	public void expiresPayloadsAfterAutoExpiration() throws Exception {
+		this.serverConfig.setResponseCacheAutoExpirationInSeconds(0);
+		Payload payload = this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false);
+		assertThat(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false)).isNotSameAs(payload);
+	}
+
+	@Test
+	public void dropsLeastRecentlyUsedViews() throws Exception {
+		this.payloadCache.setMaxEntries(2);
+		Payload foo = this.payloadCache.get(View.VIP, "foo", null, Format.JSON, false, false);
+		Payload shared = this.payloadCache.get(View.VIP, "shared", null, Format.JSON, false, false);
+		assertThat(this.payloadCache.get(View.VIP, "foo", null, Format.JSON, false, false)).isSameAs(foo);
+		this.payloadCache.get(View.VIP, "other", null, Format.JSON, false, false);
+
+		assertThat(this.payloadCache.get(View.VIP, "foo", null, Format.JSON, false, false)).isSameAs(foo);
+		assertThat(this.payloadCache.get(View.VIP, "shared", null, Format.JSON, false, false)).isNotSameAs(shared);
+	}
+
+	@Test
+	public void streamedViewMatchesCachedPayload() throws Exception {
+		assertThat(this.payloadCache.isStreamable(Format.JSON, false)).isTrue();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.payloadCache.writeTo(View.FULL, null, null, Format.JSON, out, 1);
+		assertThat(out.toByteArray())
+				.isEqualTo(toByteArray(this.payloadCache.get(View.FULL, null, null, Format.JSON, false, false)));
+	}
+
+	@Test
+	public void deltaCarriesAppHashCodesSkippedByDecoders() throws Exception {
+		Application foo = new Application("FOO");
+		foo.addInstance(instance("FOO", "foo-3", "foo"));
+		Applications delta = new Applications();
+		delta.addApplication(foo);
+		delta.setAppsHashCode("UP_4_");
+		when(this.registry.getApplicationDeltas()).thenReturn(delta);
+		when(this.registry.getApplicationHashCodes(delta)).thenReturn(Collections.singletonMap("FOO", "UP_3_"));
+		this.payloadCache.setAppHashCodes(true);
+
+		Payload payload = this.payloadCache.get(View.DELTA, null, null, Format.JSON, false, false);
+		assertThat(new String(toByteArray(payload), StandardCharsets.UTF_8))
+				.contains("\"apps__hashcodes\":\"FOO=UP_3_\"");
+		Applications decoded = decode(payload);
+		assertThat(decoded.getAppsHashCode()).isEqualTo("UP_4_");
+		assertThat(decoded.getRegisteredApplications("FOO").getInstances()).extracting(InstanceInfo::getId)
+				.containsExactly("foo-3");
+	}
+
+	private Applications decode(Payload payload) throws Exception {
+		return this.json.decode(bytes(payload), Applications.class);
+	}
+
+	private static ByteArrayInputStream bytes(Payload payload) throws Exception {
+		return new ByteArrayInputStream(toByteArray(payload));
+	}
+
+	private static byte[] toByteArray(Payload payload) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		payload.writeTo(out);
+		return out.toByteArray();
+	}
+
+	private static InstanceInfo instance(String appName, String id, String vipAddress) {
+		return InstanceInfo.Builder.newBuilder().setAppName(appName).setInstanceId(id).setHostName(id)
+				.setVIPAddress(vipAddress).build();
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.converters.wrappers.CodecWrappers;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.resources.ServerCodecs;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegistryPayloadFilter}.
+ *
+ * @author agent agent
+ */
+public class RegistryPayloadFilterTests {
+
+	private final InstanceRegistry registry = mock(InstanceRegistry.class);
+
+	private final EurekaServerConfigBean serverConfig = new EurekaServerConfigBean();
+
+	private final ServerCodecs serverCodecs = mock(ServerCodecs.class);
+
+	private final CloudJacksonSmile smile = new CloudJacksonSmile();
+
+	private final CloudJacksonJson json = new CloudJacksonJson();
+
+	private final RegistryPayloadCache payloadCache = new RegistryPayloadCache(this.registry, this.serverConfig,
+			this.serverCodecs, this.smile);
+
+	private final RegistryPayloadFilter filter = new RegistryPayloadFilter(this.registry, this.serverConfig,
+			this.payloadCache, false);
+
+	@Before
+	public void setup() {
+		Applications applications = new Applications();
+		Application application = new Application("FOO");
+		application.addInstance(InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+				.setHostName("foo").setVIPAddress("foo").build());
+		applications.addApplication(application);
+		when(this.registry.getApplications()).thenReturn(applications);
+		when(this.registry.shouldAllowAccess(anyBoolean())).thenReturn(true);
+		when(this.serverCodecs.getFullJsonCodec()).thenReturn(this.json);
+		when(this.serverCodecs.getFullXmlCodec()).thenReturn(CodecWrappers.getCodec(CodecWrappers.XStreamXml.class));
+		this.filter.setSmile(true);
+	}
+
+	@Test
+	public void servesCachedRegistryInSmile() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			MockFilterChain chain = new MockFilterChain();
+			this.filter.doFilter(request("/eureka/apps/", CloudJacksonSmile.MEDIA_TYPE + ", application/json"),
+					response, chain);
+
+			assertThat(chain.getRequest()).isNull();
+			assertThat(response.getContentType()).isEqualTo(CloudJacksonSmile.MEDIA_TYPE);
+			Applications applications = this.smile.decode(new ByteArrayInputStream(response.getContentAsByteArray()),
+					Applications.class);
+			assertThat(applications.getRegisteredApplications("FOO").getByInstanceId("foo-1")).isNotNull();
+		}
+		verify(this.registry, times(1)).getApplications();
+	}
+
+	@Test
+	public void servesJsonAndXmlWhenEnabled() throws Exception {
+		RegistryPayloadFilter filter = new RegistryPayloadFilter(this.registry, this.serverConfig, this.payloadCache,
+				true);
+		MockHttpServletRequest request = request("/eureka/vips/foo", "application/json");
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+
+		assertThat(response.getContentType()).isEqualTo("application/json");
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		Applications applications = this.json.decode(
+				new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())), Applications.class);
+		assertThat(applications.getRegisteredApplications("FOO").getByInstanceId("foo-1")).isNotNull();
+
+		response = new MockHttpServletResponse();
+		filter.doFilter(request("/eureka/apps", "application/xml"), response, new MockFilterChain());
+		assertThat(response.getContentType()).isEqualTo("application/xml");
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(response.getContentAsString()).contains("<applications>").contains("foo-1");
+	}
+
+	@Test
+	public void streamsFullFetchesWhenEnabled() throws Exception {
+		this.filter.setStreamingFlushInterval(1);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		this.filter.doFilter(request("/eureka/apps/", "application/json"), response, chain);
+
+		assertThat(chain.getRequest()).isNull();
+		assertThat(response.getContentType()).isEqualTo("application/json");
+		Applications applications = this.json.decode(response.getContentAsString(), Applications.class);
+		assertThat(applications.getRegisteredApplications("FOO").getByInstanceId("foo-1")).isNotNull();
+
+		chain = new MockFilterChain();
+		this.filter.doFilter(request("/eureka/apps/delta", "application/json"), new MockHttpServletResponse(), chain);
+		assertThat(chain.getRequest()).isNotNull();
+	}
+
+	@Test
+	public void leavesOtherRequestsToJersey() throws Exception {
+		MockFilterChain chain = new MockFilterChain();
+		this.filter.doFilter(request("/eureka/apps/", "application/json"), new MockHttpServletResponse(), chain);
+		assertThat(chain.getRequest()).isNotNull();
+
+		chain = new MockFilterChain();
+		this.filter.doFilter(request("/eureka/apps/FOO", CloudJacksonSmile.MEDIA_TYPE), new MockHttpServletResponse(),
+				chain);
+		assertThat(chain.getRequest()).isNotNull();
+
+		chain = new MockFilterChain();
+		MockHttpServletRequest request = request("/eureka/apps/", CloudJacksonSmile.MEDIA_TYPE);
+		request.setMethod("POST");
+		this.filter.doFilter(request, new MockHttpServletResponse(), chain);
+		assertThat(chain.getRequest()).isNotNull();
+	}
+
+	@Test
+	public void leavesSmileToJerseyUnlessEnabled() throws Exception {
+		this.filter.setSmile(false);
+		MockFilterChain chain = new MockFilterChain();
+		this.filter.doFilter(request("/eureka/apps/", CloudJacksonSmile.MEDIA_TYPE), new MockHttpServletResponse(),
+				chain);
+		assertThat(chain.getRequest()).isNotNull();
+	}
+
+	@Test
+	public void honoursDisabledDeltaAndAccessRestrictions() throws Exception {
+		this.serverConfig.setDisableDelta(true);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request("/eureka/apps/delta", CloudJacksonSmile.MEDIA_TYPE), response,
+				new MockFilterChain());
+		assertThat(response.getStatus()).isEqualTo(403);
+
+		when(this.registry.shouldAllowAccess(anyBoolean())).thenReturn(false);
+		response = new MockHttpServletResponse();
+		this.filter.doFilter(request("/eureka/apps", CloudJacksonSmile.MEDIA_TYPE), response, new MockFilterChain());
+		assertThat(response.getStatus()).isEqualTo(403);
+	}
+
+	private MockHttpServletRequest request(String uri, String accept) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.addHeader(HttpHeaders.ACCEPT, accept);
+		return request;
+	}
+
+}
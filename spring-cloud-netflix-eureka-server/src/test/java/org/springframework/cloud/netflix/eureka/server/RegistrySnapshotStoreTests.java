@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.LeaseInfo;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link RegistrySnapshotStore}.
+ *
+ * @author agent agent
+ */
+public class RegistrySnapshotStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	private RegistrySnapshotStore store;
+
+	@Before
+	public void setup() throws IOException {
+		this.file = this.folder.getRoot().toPath().resolve("registry.snapshot");
+		this.store = new RegistrySnapshotStore(this.file, new CloudJacksonJson());
+	}
+
+	@Test
+	public void missingSnapshotReadsAsNull() throws IOException {
+		assertThat(this.store.read()).isNull();
+	}
+
+	@Test
+	public void instancesSurviveRoundTrip() throws IOException {
+		Applications applications = new Applications();
+		Application foo = new Application("FOO");
+		foo.addInstance(instance("FOO", "foo-1", "foo.host", 8080));
+		foo.addInstance(instance("FOO", "foo-2", "foo.host", 8081));
+		applications.addApplication(foo);
+		Application bar = new Application("BAR");
+		bar.addInstance(instance("BAR", "bar-1", "bar.host", 9090));
+		applications.addApplication(bar);
+
+		assertThat(this.store.write(applications, 1234L)).isEqualTo(3);
+		RegistrySnapshotStore.Snapshot snapshot = this.store.read();
+
+		assertThat(snapshot.getTimestamp()).isEqualTo(1234L);
+		assertThat(snapshot.getInstances()).extracting(InstanceInfo::getInstanceId)
+				.containsExactlyInAnyOrder("foo-1", "foo-2", "bar-1");
+		InstanceInfo restored = snapshot.getInstances().stream().filter(info -> info.getId().equals("foo-2"))
+				.findFirst().get();
+		assertThat(restored.getAppName()).isEqualTo("FOO");
+		assertThat(restored.getHostName()).isEqualTo("foo.host");
+		assertThat(restored.getPort()).isEqualTo(8081);
+		assertThat(restored.getLeaseInfo().getDurationInSecs()).isEqualTo(15);
+		assertThat(restored.getMetadata()).containsEntry("zone", "zone1");
+	}
+
+	@Test
+	public void newSnapshotReplacesPreviousOne() throws IOException {
+		Applications applications = new Applications();
+		Application foo = new Application("FOO");
+		foo.addInstance(instance("FOO", "foo-1", "foo.host", 8080));
+		applications.addApplication(foo);
+		this.store.write(applications, 1L);
+
+		this.store.write(new Applications(), 2L);
+
+		assertThat(this.store.read().getTimestamp()).isEqualTo(2L);
+		assertThat(this.store.read().getInstances()).isEmpty();
+		assertThat(Files.exists(this.file.resolveSibling("registry.snapshot.tmp"))).isFalse();
+	}
+
+	@Test
+	public void corruptedSnapshotIsRejected() throws IOException {
+		Applications applications = new Applications();
+		Application foo = new Application("FOO");
+		foo.addInstance(instance("FOO", "foo-1", "foo.host", 8080));
+		applications.addApplication(foo);
+		this.store.write(applications, 1L);
+
+		try (RandomAccessFile raf = new RandomAccessFile(this.file.toFile(), "rw")) {
+			raf.seek(raf.length() - 2);
+			raf.write('x');
+		}
+		assertThatThrownBy(this.store::read).isInstanceOf(IOException.class).hasMessageContaining("checksum");
+
+		try (RandomAccessFile raf = new RandomAccessFile(this.file.toFile(), "rw")) {
+			raf.setLength(raf.length() - 10);
+		}
+		assertThatThrownBy(this.store::read).isInstanceOf(IOException.class).hasMessageContaining("truncated");
+	}
+
+	private InstanceInfo instance(String appName, String instanceId, String hostName, int port) {
+		LeaseInfo leaseInfo = LeaseInfo.Builder.newBuilder().setRenewalIntervalInSecs(10).setDurationInSecs(15)
+				.build();
+		return InstanceInfo.Builder.newBuilder().setAppName(appName).setInstanceId(instanceId).setHostName(hostName)
+				.setPort(port).setLeaseInfo(leaseInfo).add("zone", "zone1")
+				.setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn)).build();
+	}
+
+}
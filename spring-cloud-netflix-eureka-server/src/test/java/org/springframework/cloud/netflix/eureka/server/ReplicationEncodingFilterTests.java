@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.core.MediaType;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.converters.wrappers.CodecWrapper;
+import com.netflix.discovery.converters.wrappers.CodecWrappers;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.Filterable;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.server.ReplicationEncodingFilter.Compression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ReplicationEncodingFilter}.
+ *
+ * @author agent agent
+ */
+public class ReplicationEncodingFilterTests {
+
+	private final CodecWrapper codec = new CloudJacksonJson();
+
+	private final InstanceInfo instance = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+			.setHostName("foo").setVIPAddress("foo").build();
+
+	private final AtomicReference<ClientRequest> sent = new AtomicReference<>();
+
+	@Test
+	public void compressesBodiesOfAtLeastMinSize() throws Exception {
+		ClientRequest request = send(new ReplicationEncodingFilter(this.codec, Compression.GZIP, 0));
+
+		assertThat(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(decompress(request, Compression.GZIP)).isEqualTo(encode(this.codec));
+	}
+
+	@Test
+	public void leavesSmallerBodiesUncompressed() throws Exception {
+		ClientRequest request = send(new ReplicationEncodingFilter(this.codec, Compression.GZIP, 1024 * 1024));
+
+		assertThat(request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat((byte[]) request.getEntity()).isEqualTo(encode(this.codec));
+	}
+
+	@Test
+	public void compressesBodiesWithZstd() throws Exception {
+		ClientRequest request = send(new ReplicationEncodingFilter(this.codec, Compression.ZSTD, 0));
+
+		assertThat(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("zstd");
+		assertThat(decompress(request, Compression.ZSTD)).isEqualTo(encode(this.codec));
+	}
+
+	@Test
+	public void encodesBodiesWithGivenCodec() throws Exception {
+		CodecWrapper compact = CodecWrappers.getCodec(CodecWrappers.JacksonJsonMini.class);
+		ClientRequest request = send(new ReplicationEncodingFilter(compact, Compression.NONE, 0));
+
+		assertThat(request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat((byte[]) request.getEntity()).isEqualTo(encode(compact));
+	}
+
+	@Test
+	public void findsCompressionOfContentEncoding() {
+		assertThat(Compression.forContentEncoding("GZIP")).isEqualTo(Compression.GZIP);
+		assertThat(Compression.forContentEncoding("x-gzip")).isEqualTo(Compression.GZIP);
+		assertThat(Compression.forContentEncoding("zstd")).isEqualTo(Compression.ZSTD);
+		assertThat(Compression.forContentEncoding("br")).isNull();
+	}
+
+	private ClientRequest send(ReplicationEncodingFilter filter) {
+		Filterable chain = new Filterable(request -> {
+			this.sent.set(request);
+			return new ClientResponse(204, new InBoundHeaders(), new ByteArrayInputStream(new byte[0]), null);
+		}) {
+		};
+		chain.addFilter(filter);
+		chain.getHeadHandler().handle(ClientRequest.create().type(MediaType.APPLICATION_JSON_TYPE)
+				.entity(this.instance).build(URI.create("http://localhost:8761/eureka/apps/FOO"), "POST"));
+		return this.sent.get();
+	}
+
+	private byte[] encode(CodecWrapper codec) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encode(this.instance, out);
+		return out.toByteArray();
+	}
+
+	private byte[] decompress(ClientRequest request, Compression compression) throws Exception {
+		try (InputStream in = compression.decompress(new ByteArrayInputStream((byte[]) request.getEntity()))) {
+			return StreamUtils.copyToByteArray(in);
+		}
+	}
+
+}
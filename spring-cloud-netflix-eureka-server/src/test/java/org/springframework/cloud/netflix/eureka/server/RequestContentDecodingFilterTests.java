@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import org.springframework.cloud.netflix.eureka.server.ReplicationEncodingFilter.Compression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RequestContentDecodingFilter}.
+ *
+ * @author agent agent
+ */
+public class RequestContentDecodingFilterTests {
+
+	private static final byte[] BODY = "{\"instance\":{\"app\":\"FOO\"}}".getBytes(StandardCharsets.UTF_8);
+
+	private final RequestContentDecodingFilter filter = new RequestContentDecodingFilter();
+
+	@Test
+	public void decodesGzipBodies() throws Exception {
+		assertDecoded(Compression.GZIP);
+	}
+
+	@Test
+	public void decodesZstdBodies() throws Exception {
+		assertDecoded(Compression.ZSTD);
+	}
+
+	@Test
+	public void passesPlainBodiesThrough() throws Exception {
+		MockHttpServletRequest request = request(BODY);
+		MockFilterChain chain = new MockFilterChain();
+
+		this.filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(chain.getRequest()).isSameAs(request);
+	}
+
+	@Test
+	public void passesUnknownEncodingsThrough() throws Exception {
+		MockHttpServletRequest request = request(BODY);
+		request.addHeader(HttpHeaders.CONTENT_ENCODING, "br");
+		MockFilterChain chain = new MockFilterChain();
+
+		this.filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(chain.getRequest()).isSameAs(request);
+	}
+
+	private void assertDecoded(Compression compression) throws Exception {
+		MockHttpServletRequest request = request(compression.compress(BODY));
+		request.addHeader(HttpHeaders.CONTENT_ENCODING, compression.getContentEncoding());
+		MockFilterChain chain = new MockFilterChain();
+
+		this.filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		HttpServletRequest decoded = (HttpServletRequest) chain.getRequest();
+		assertThat(decoded.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(decoded.getContentLength()).isEqualTo(-1);
+		assertThat(decoded.getHeader(HttpHeaders.CONTENT_TYPE)).isEqualTo("application/json");
+		assertThat(StreamUtils.copyToByteArray(decoded.getInputStream())).isEqualTo(BODY);
+	}
+
+	private MockHttpServletRequest request(byte[] body) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/eureka/apps/FOO");
+		request.setContentType("application/json");
+		request.setContent(body);
+		return request;
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.netflix.eureka.server;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.discovery.shared.transport.EurekaHttpResponse;
+import com.netflix.eureka.EurekaServerConfig;
+import com.netflix.eureka.cluster.HttpReplicationClient;
+import com.netflix.eureka.cluster.protocol.ReplicationInstance;
+import com.netflix.eureka.cluster.protocol.ReplicationList;
+import com.netflix.eureka.cluster.protocol.ReplicationListResponse;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl.Action;
+import com.netflix.eureka.resources.ServerCodecs;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.netflix.eureka.server.WebClientReplicationClientTests.Application;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Tests for {@link WebClientReplicationClient}.
+ *
+ * @author agent agent
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = RANDOM_PORT,
+		properties = { "spring.application.name=eureka", "eureka.client.register-with-eureka=false",
+				"eureka.client.fetch-registry=false" })
+public class WebClientReplicationClientTests {
+
+	@LocalServerPort
+	private int port = 0;
+
+	@Autowired
+	private EurekaServerConfig serverConfig;
+
+	@Autowired
+	private ServerCodecs serverCodecs;
+
+	@Autowired
+	private PeerAwareInstanceRegistry registry;
+
+	private final AtomicInteger filtered = new AtomicInteger();
+
+	private WebClientReplicationClientFactory factory;
+
+	private HttpReplicationClient client;
+
+	@Before
+	public void setup() {
+		ClientFilter filter = new ClientFilter() {
+			@Override
+			public ClientResponse handle(ClientRequest request) {
+				filtered.incrementAndGet();
+				return getNext().handle(request);
+			}
+		};
+		this.factory = new WebClientReplicationClientFactory(this.serverConfig, this.serverCodecs,
+				new ReplicationClientAdditionalFilters(Collections.singletonList(filter)));
+		this.client = this.factory.create("http://localhost:" + this.port + "/eureka/");
+	}
+
+	@After
+	public void tearDown() {
+		this.client.shutdown();
+		this.factory.destroy();
+	}
+
+	@Test
+	public void replicatesToPeer() {
+		InstanceInfo instance = InstanceInfo.Builder.newBuilder().setAppName("FOO").setInstanceId("foo-1")
+				.setHostName("foo").setIPAddr("10.0.0.1").setVIPAddress("foo")
+				.setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn)).build();
+
+		assertThat(this.client.register(instance).getStatusCode()).isEqualTo(204);
+		assertThat(this.registry.getInstanceByAppAndId("FOO", "foo-1")).isNotNull();
+		assertThat(this.client.sendHeartBeat("FOO", "foo-1", instance, null).getStatusCode()).isEqualTo(200);
+
+		EurekaHttpResponse<Applications> applications = this.client.getApplications();
+		assertThat(applications.getStatusCode()).isEqualTo(200);
+		assertThat(applications.getEntity().getRegisteredApplications("FOO").getByInstanceId("foo-1")).isNotNull();
+
+		ReplicationList replicationList = new ReplicationList();
+		replicationList.addReplicationInstance(new ReplicationInstance("FOO", "foo-1",
+				instance.getLastDirtyTimestamp(), null, null, null, Action.Cancel));
+		EurekaHttpResponse<ReplicationListResponse> batch = this.client.submitBatchUpdates(replicationList);
+		assertThat(batch.getStatusCode()).isEqualTo(200);
+		assertThat(batch.getEntity().getResponseList()).hasSize(1);
+		assertThat(batch.getEntity().getResponseList().get(0).getStatusCode()).isEqualTo(200);
+		assertThat(this.registry.getInstanceByAppAndId("FOO", "foo-1")).isNull();
+
+		assertThat(this.filtered).hasValue(4);
+	}
+
+	@Test
+	public void replicatesCompressedBodiesToPeer() {
+		this.factory.setEncodingFilters(url -> new ReplicationEncodingFilter(this.serverCodecs.getCompactJsonCodec(),
+				ReplicationEncodingFilter.Compression.ZSTD, 0));
+		HttpReplicationClient compressing = this.factory.create("http://localhost:" + this.port + "/eureka/");
+		InstanceInfo instance = InstanceInfo.Builder.newBuilder().setAppName("BAR").setInstanceId("bar-1")
+				.setHostName("bar").setIPAddr("10.0.0.2").setVIPAddress("bar")
+				.setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn)).build();
+
+		assertThat(compressing.register(instance).getStatusCode()).isEqualTo(204);
+		assertThat(this.registry.getInstanceByAppAndId("BAR", "bar-1")).isNotNull();
+		assertThat(compressing.cancel("BAR", "bar-1").getStatusCode()).isEqualTo(200);
+		assertThat(this.filtered).hasValue(2);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@EnableAutoConfiguration
+	@EnableEurekaServer
+	protected static class Application {
+
+	}
+
+}